@@ -0,0 +1,105 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SavePersonConfiguration의 FlatFileItemReader(DefaultLineMapper + DelimitedLineTokenizer)와
+ * MappedCsvItemReader로 같은 csv 파일을 끝까지 읽는다. 점수는 초당 읽은 줄 수이다.
+ *   ./gradlew jmh
+ * 할당량은 gc 프로파일러의 gc.alloc.rate.norm(줄 하나당 바이트)으로 비교한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvReaderBenchmark {
+
+    private static final int LINES = 1_000_000;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = Files.createTempFile("person-", ".csv");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("이름,나이,거주지\n");
+            for (int i = 0; i < LINES; i++) {
+                writer.write("김지수" + i + "," + (i % 90 + 1) + ",\"안산, 상록구\"\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void flatFileItemReader(Blackhole blackhole) throws Exception {
+        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
+        DelimitedLineTokenizer lineTokenizer = new DelimitedLineTokenizer();
+        lineTokenizer.setNames("name", "age", "address");
+        lineMapper.setLineTokenizer(lineTokenizer);
+        lineMapper.setFieldSetMapper(fieldSet -> new Person(
+                fieldSet.readString(0),
+                fieldSet.readString(1),
+                fieldSet.readString(2)));
+
+        readAll(new FlatFileItemReaderBuilder<Person>()
+                .name("csvFileItemReader")
+                .encoding("UTF-8")
+                .resource(new FileSystemResource(file))
+                .linesToSkip(1)
+                .lineMapper(lineMapper)
+                .build(), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void mappedCsvItemReader(Blackhole blackhole) throws Exception {
+        MappedCsvItemReader<Person> itemReader = new MappedCsvItemReader<>("mappedCsvItemReader",
+                new FileSystemResource(file), 3,
+                (row, rowNumber) -> new Person(row.readString(0), row.readString(1), row.readString(2)));
+        itemReader.setLinesToSkip(1);
+
+        readAll(itemReader, blackhole);
+    }
+
+    private void readAll(ItemStreamReader<Person> itemReader, Blackhole blackhole) throws Exception {
+        itemReader.open(new ExecutionContext());
+
+        for (Person person = itemReader.read(); person != null; person = itemReader.read()) {
+            blackhole.consume(person);
+        }
+
+        itemReader.close();
+    }
+}
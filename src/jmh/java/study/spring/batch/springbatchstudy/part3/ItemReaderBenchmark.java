@@ -0,0 +1,359 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
+import org.springframework.batch.item.database.builder.JpaCursorItemReaderBuilder;
+import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
+import org.springframework.batch.item.database.orm.AbstractJpaQueryProvider;
+import org.springframework.batch.item.database.support.H2PagingQueryProvider;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.spring.batch.springbatchstudy.SpringBatchStudyApplication;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * ItemReaderConfiguration의 리더들로 person 데이터를 처음부터 끝까지 읽는다.
+ * 스텝처럼 chunkSize 건마다 트랜잭션을 하나씩 열고, BulkItemReader는 BulkChunkProvider처럼 readChunk()로 읽는다.
+ *   custom          : CustomItemReader (ReaderBenchmarkDataset.persons()로 만든 목록)
+ *   csv             : FlatFileItemReader (DefaultLineMapper + DelimitedLineTokenizer)
+ *   jdbcCursor      : JdbcCursorItemReader, fetchSize 적용
+ *   jdbcPaging      : JdbcPagingItemReader, pageSize와 fetchSize 적용
+ *   jpaCursor       : JpaCursorItemReader, fetchSize를 Hibernate 쿼리 힌트로 적용
+ *   jpaPaging       : JpaPagingItemReader, pageSize 적용
+ *   jpaKeysetPaging : JpaKeysetPagingItemReader, pageSize 적용
+ *   statelessCursor : StatelessCursorItemReader, fetchSize 적용
+ * 리더가 쓰지 않는 파라미터는 무시된다. 모두 같은 건수를 비교하도록 age 조건 없이 id 순으로 전부 읽는다.
+ *
+ * 결과는 보조 카운터로 본다.
+ *   items        : 초당 읽은 건수
+ *   bytesPerItem : 건당 할당 바이트 (벤치마크 스레드의 할당량 / 읽은 건수)
+ *   peakHeapMb   : 반복(iteration) 동안 힙 메모리 풀 최대 사용량의 합
+ *
+ * person 테이블은 H2 파일 DB에 넣어서 1,000만 건이어도 데이터가 힙에 올라오지 않게 한다.
+ * 전체 조합은 많으므로 jmh jar로 필요한 것만 골라서 돌린다.
+ *   ./gradlew jmhJar
+ *   java -jar build/libs/*-jmh.jar ItemReaderBenchmark -p rows=1000000 -p reader=jdbcCursor,jpaCursor -p chunkSize=1000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ItemReaderBenchmark {
+
+    private static final Path DATASET_DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "item-reader-benchmark");
+
+    @Param({"100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"custom", "csv", "jdbcCursor", "jdbcPaging", "jpaCursor", "jpaPaging", "jpaKeysetPaging", "statelessCursor"})
+    public String reader;
+
+    @Param({"10", "100", "1000"})
+    public int chunkSize;
+
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+
+    @Param({"0", "100", "1000"})
+    public int fetchSize;
+
+    private Path database;
+    private ConfigurableApplicationContext context;
+    private DataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private TransactionTemplate transactionTemplate;
+    private Path csv;
+    private List<Person> persons;
+
+    @Setup
+    public void setUp() throws Exception {
+        ReaderBenchmarkDataset dataset = new ReaderBenchmarkDataset(DATASET_DIRECTORY, rows);
+        csv = dataset.csv();
+
+        database = Files.createTempDirectory("item-reader-benchmark-db-");
+        context = new SpringApplicationBuilder(SpringBatchStudyApplication.class)
+                .web(WebApplicationType.NONE)
+                // application.yml의 show-sql, debug 로그가 측정에 섞이지 않도록 실행 인자로 덮어쓴다.
+                .run("--spring.datasource.url=jdbc:h2:file:" + database.resolve("person").toAbsolutePath(),
+                        "--spring.jpa.show-sql=false", "--logging.level.root=warn", "--logging.level.org.springframework.batch=warn");
+
+        dataSource = context.getBean(DataSource.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        if ("custom".equals(reader)) {
+            persons = dataset.persons();
+        } else if (!"csv".equals(reader)) {
+            dataset.seed(dataSource);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+
+        try (Stream<Path> files = Files.walk(database)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole, ItemCounters itemCounters, MemoryCounters memoryCounters) throws Exception {
+        ItemStreamReader<Person> itemReader = createItemReader();
+        itemReader.open(new ExecutionContext());
+
+        long allocatedBefore = MemoryCounters.allocatedBytes();
+        long items = 0;
+
+        try {
+            int count;
+            do {
+                count = transactionTemplate.execute(status -> readChunk(itemReader, blackhole));
+                items += count;
+            } while (count == chunkSize);
+        } finally {
+            itemReader.close();
+        }
+
+        itemCounters.items += items;
+        memoryCounters.record(items, MemoryCounters.allocatedBytes() - allocatedBefore);
+    }
+
+    /**
+     * 청크 하나만큼 읽고 읽은 건수를 돌려준다. chunkSize보다 적으면 끝까지 읽은 것이다.
+     */
+    private int readChunk(ItemStreamReader<Person> itemReader, Blackhole blackhole) {
+        try {
+            int count = 0;
+
+            if (itemReader instanceof BulkItemReader) {
+                BulkItemReader<Person> bulkItemReader = (BulkItemReader<Person>) itemReader;
+                while (count < chunkSize) {
+                    List<Person> items = bulkItemReader.readChunk(chunkSize - count);
+                    if (items.isEmpty()) {
+                        break;
+                    }
+                    blackhole.consume(items);
+                    count += items.size();
+                }
+            } else {
+                Person person;
+                while (count < chunkSize && (person = itemReader.read()) != null) {
+                    blackhole.consume(person);
+                    count++;
+                }
+            }
+
+            return count;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ItemStreamReader<Person> createItemReader() throws Exception {
+        RowMapper<Person> rowMapper = (rs, rowNum) -> new Person(
+                rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4));
+
+        switch (reader) {
+            case "custom":
+                return new CustomItemReader<>(persons);
+            case "csv":
+                return csvFileItemReader();
+            case "jdbcCursor":
+                return new JdbcCursorItemReaderBuilder<Person>()
+                        .name("jdbcCursorItemReader")
+                        .dataSource(dataSource)
+                        .sql("select id, name, age, address from person order by id")
+                        .fetchSize(fetchSize)
+                        .rowMapper(rowMapper)
+                        .build();
+            case "jdbcPaging": {
+                H2PagingQueryProvider queryProvider = new H2PagingQueryProvider();
+                queryProvider.setSelectClause("id, name, age, address");
+                queryProvider.setFromClause("from person");
+                queryProvider.setSortKeys(Map.of("id", Order.ASCENDING));
+
+                JdbcPagingItemReader<Person> itemReader = new JdbcPagingItemReaderBuilder<Person>()
+                        .name("jdbcPagingItemReader")
+                        .dataSource(dataSource)
+                        .queryProvider(queryProvider)
+                        .pageSize(pageSize)
+                        .fetchSize(fetchSize)
+                        .rowMapper(rowMapper)
+                        .build();
+                itemReader.afterPropertiesSet();
+                return itemReader;
+            }
+            case "jpaCursor":
+                return new JpaCursorItemReaderBuilder<Person>()
+                        .name("jpaCursorItemReader")
+                        .entityManagerFactory(entityManagerFactory)
+                        .queryProvider(jpaQueryProvider("select p from Person p order by p.id"))
+                        .build();
+            case "jpaPaging":
+                return new JpaPagingItemReaderBuilder<Person>()
+                        .name("jpaPagingItemReader")
+                        .entityManagerFactory(entityManagerFactory)
+                        .queryString("select p from Person p order by p.id")
+                        .pageSize(pageSize)
+                        .build();
+            case "jpaKeysetPaging": {
+                JpaKeysetPagingItemReader<Person> itemReader = new JpaKeysetPagingItemReader<>(
+                        "jpaKeysetPagingItemReader",
+                        entityManagerFactory,
+                        "select p from Person p where p.id > :lastKey order by p.id",
+                        Person::getId,
+                        Integer.MIN_VALUE);
+                itemReader.setPageSize(pageSize);
+                return itemReader;
+            }
+            case "statelessCursor": {
+                StatelessCursorItemReader<Person> itemReader = new StatelessCursorItemReader<>(
+                        "statelessCursorItemReader",
+                        entityManagerFactory,
+                        "select p from Person p where p.id > :lastKey order by p.id",
+                        Person::getId,
+                        Integer.MIN_VALUE);
+                itemReader.setFetchSize(fetchSize);
+                return itemReader;
+            }
+            default:
+                throw new IllegalArgumentException("reader: " + reader);
+        }
+    }
+
+    private ItemStreamReader<Person> csvFileItemReader() {
+        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        tokenizer.setNames("id", "name", "age", "address");
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(fieldSet -> new Person(
+                fieldSet.readInt("id"),
+                fieldSet.readString("name"),
+                fieldSet.readString("age"),
+                fieldSet.readString("address")));
+
+        return new FlatFileItemReaderBuilder<Person>()
+                .name("csvFileItemReader")
+                .encoding("UTF-8")
+                .resource(new FileSystemResource(csv))
+                .linesToSkip(1)
+                .lineMapper(lineMapper)
+                .build();
+    }
+
+    /**
+     * JpaCursorItemReader에는 fetch size 설정이 없어서 Hibernate 쿼리 힌트로 넘긴다. 0이면 드라이버 기본값을 쓴다.
+     */
+    private AbstractJpaQueryProvider jpaQueryProvider(String queryString) {
+        return new AbstractJpaQueryProvider() {
+            @Override
+            public Query createQuery() {
+                Query query = getEntityManager().createQuery(queryString);
+                if (fetchSize > 0) {
+                    query.setHint("org.hibernate.fetchSize", fetchSize);
+                }
+                return query;
+            }
+
+            @Override
+            public void afterPropertiesSet() {
+            }
+        };
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ItemCounters {
+
+        public long items;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            items = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MemoryCounters {
+
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        public long bytesPerItem;
+        public long peakHeapMb;
+
+        private long totalItems;
+        private long totalBytes;
+
+        static long allocatedBytes() {
+            return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerItem = 0;
+            peakHeapMb = 0;
+            totalItems = 0;
+            totalBytes = 0;
+            heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        }
+
+        void record(long items, long bytes) {
+            totalItems += items;
+            totalBytes += bytes;
+            bytesPerItem = totalItems == 0 ? 0 : totalBytes / totalItems;
+            peakHeapMb = heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / (1024 * 1024);
+        }
+
+        private static List<MemoryPoolMXBean> heapPools() {
+            return ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .collect(Collectors.toList());
+        }
+    }
+}
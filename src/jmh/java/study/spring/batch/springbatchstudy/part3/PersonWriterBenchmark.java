@@ -0,0 +1,112 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.spring.batch.springbatchstudy.SpringBatchStudyApplication;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 Person 청크를 JpaItemWriter, MultiRowInsertItemWriter, BulkLoadItemWriter로 청크 트랜잭션 안에서 넣는다.
+ * 점수는 초당 넣은 건수이다. 애플리케이션 설정(H2 메모리 DB)을 그대로 띄워서 측정한다.
+ * JpaItemWriter는 merge로 넣으므로 같은 Person 목록을 다시 넣어도 매번 새 행이 된다.
+ *   ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersonWriterBenchmark {
+
+    private static final int CHUNK_SIZE = 1_000;
+
+    @Param({"jpa", "multiRow", "bulkLoad"})
+    public String writer;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private ItemWriter<Person> itemWriter;
+    private List<Person> chunk;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBatchStudyApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=warn", "logging.level.org.springframework.batch=warn")
+                .run();
+
+        DataSource dataSource = context.getBean(DataSource.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        String[] columns = {"name", "age", "address"};
+        switch (writer) {
+            case "jpa":
+                itemWriter = new JpaItemWriterBuilder<Person>()
+                        .entityManagerFactory(context.getBean(EntityManagerFactory.class))
+                        .build();
+                break;
+            case "multiRow":
+                itemWriter = new MultiRowInsertItemWriter<>(dataSource, "person", columns,
+                        person -> new Object[]{person.getName(), person.getAge(), person.getAddress()}, 100);
+                break;
+            default:
+                itemWriter = new BulkLoadItemWriter<>(dataSource, "person", columns,
+                        person -> new Object[]{person.getName(), person.getAge(), person.getAddress()});
+        }
+
+        chunk = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            chunk.add(new Person("김지수" + i, String.valueOf(i % 90 + 1), "안산, 상록구"));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("truncate table person");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public void write() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                itemWriter.write(chunk);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
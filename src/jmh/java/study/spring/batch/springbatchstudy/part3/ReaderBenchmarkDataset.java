@@ -0,0 +1,92 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.spring.batch.springbatchstudy.part4.SyntheticDataGenerator;
+import study.spring.batch.springbatchstudy.part4.Users;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ItemReaderBenchmark가 읽을 Person 데이터를 만든다.
+ * SyntheticDataGenerator로 rows 건을 test.csv와 같은 형식(id,이름,나이,거주지)의 csv 파일로 쓰고,
+ * person 테이블은 그 파일을 H2 CSVREAD로 한 번에 넣는다. 그래서 csv 리더와 DB 리더가 같은 데이터를 읽는다.
+ *
+ * csv 파일은 건수별로 directory에 한 번만 만들고 다음 실행에서 다시 쓴다.
+ */
+public class ReaderBenchmarkDataset {
+
+    private static final long SEED = 42;
+
+    private final Path directory;
+    private final int rows;
+    private final SyntheticDataGenerator generator =
+            new SyntheticDataGenerator(SEED, Map.of(Users.Level.NORMAL, 1), Long.MAX_VALUE);
+
+    public ReaderBenchmarkDataset(Path directory, int rows) {
+        this.directory = directory;
+        this.rows = rows;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public Person person(int index) {
+        Person person = generator.person(index);
+        return new Person(index + 1, person.getName(), person.getAge(), person.getAddress());
+    }
+
+    /**
+     * 만들어 둔 csv 파일이 없으면 임시 파일에 다 쓴 다음 이름을 바꾼다. 중간에 멈춰도 반쯤 쓴 파일이 남지 않는다.
+     */
+    public Path csv() throws Exception {
+        Path file = directory.resolve("person-" + rows + ".csv");
+        if (Files.exists(file)) {
+            return file;
+        }
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "person-", ".csv.tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("id,이름,나이,거주지\n");
+            for (int i = 0; i < rows; i++) {
+                Person person = person(i);
+                writer.write(person.getId() + "," + person.getName() + "," + person.getAge() + "," + person.getAddress() + "\n");
+            }
+        }
+
+        return Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * person 테이블을 비우고 csv 파일의 id 그대로 넣는다.
+     */
+    public void seed(DataSource dataSource) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("truncate table person");
+
+        // H2는 CSVREAD의 컬럼을 문장을 준비할 때 읽으므로 파일 이름을 파라미터로 넘길 수 없다.
+        jdbcTemplate.update("insert into person (id, name, age, address)"
+                + " select * from CSVREAD('" + csv().toAbsolutePath().toString().replace("'", "''") + "', null, 'charset=UTF-8')");
+    }
+
+    /**
+     * CustomItemReader에 넘길 목록, csv 파일과 같은 Person을 메모리에 만든다.
+     */
+    public List<Person> persons() {
+        List<Person> persons = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            persons.add(person(i));
+        }
+        return persons;
+    }
+}
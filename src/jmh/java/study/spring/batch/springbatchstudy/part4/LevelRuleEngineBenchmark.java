@@ -0,0 +1,100 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Users.Level의 if 문 비교와 LevelRuleEngine의 이진 탐색을 10^8번씩 평가해서 비교한다.
+ *   ./gradlew jmh
+ * 금액과 등급은 미리 만든 배열을 돌려가며 사용하므로 측정 중에는 객체를 만들지 않는다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LevelRuleEngineBenchmark {
+
+    private static final int EVALUATIONS = 100_000_000;
+    private static final int SAMPLE_SIZE = 1 << 16;
+    private static final int SAMPLE_MASK = SAMPLE_SIZE - 1;
+
+    private int[] amounts;
+    private Users.Level[] levels;
+    private LevelRuleEngine levelRuleEngine;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Users.Level[] values = Users.Level.values();
+
+        amounts = new int[SAMPLE_SIZE];
+        levels = new Users.Level[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            amounts[i] = random.nextInt(1_000_000);
+            levels[i] = values[random.nextInt(values.length)];
+        }
+
+        levelRuleEngine = new LevelRuleEngine(Users.Level::defaultRules);
+        levelRuleEngine.reload();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVALUATIONS)
+    public int enumNextLevel() {
+        int sum = 0;
+        for (int i = 0; i < EVALUATIONS; i++) {
+            sum += Users.Level.getNextLevel(amounts[i & SAMPLE_MASK]).ordinal();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVALUATIONS)
+    public int engineNextLevel() {
+        int sum = 0;
+        for (int i = 0; i < EVALUATIONS; i++) {
+            sum += levelRuleEngine.nextLevel(amounts[i & SAMPLE_MASK]).ordinal();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVALUATIONS)
+    public int enumAvailableLevelUp() {
+        int count = 0;
+        for (int i = 0; i < EVALUATIONS; i++) {
+            int index = i & SAMPLE_MASK;
+            if (Users.Level.availableLevelUp(levels[index], amounts[index])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVALUATIONS)
+    public int engineAvailableLevelUp() {
+        int count = 0;
+        for (int i = 0; i < EVALUATIONS; i++) {
+            int index = i & SAMPLE_MASK;
+            if (levelRuleEngine.availableLevelUp(levels[index], amounts[index])) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
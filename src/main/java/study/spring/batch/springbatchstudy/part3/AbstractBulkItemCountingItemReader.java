@@ -0,0 +1,50 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AbstractItemCountingItemStreamItemReader에 readChunk()를 더한 리더이다.
+ * 기본 readChunk()는 max 크기로 잡은 리스트에 doRead()로 읽은 아이템을 채운다. (커서 리더)
+ * read()처럼 아이템마다 읽은 건수를 올리고 maxItemCount를 넘겨서 읽지 않으므로 재시작 위치는 read()와 같다.
+ * 페이지를 읽는 리더는 readChunk()를 다시 구현해서 페이지 리스트를 그대로 넘긴다.
+ */
+public abstract class AbstractBulkItemCountingItemReader<T> extends AbstractItemCountingItemStreamItemReader<T>
+        implements BulkItemReader<T> {
+
+    private int maxItemCount = Integer.MAX_VALUE;
+
+    @Override
+    public void setMaxItemCount(int count) {
+        super.setMaxItemCount(count);
+        this.maxItemCount = count;
+    }
+
+    @Override
+    public List<T> readChunk(int max) throws Exception {
+        int count = Math.min(max, remainingItemCount());
+        List<T> items = new ArrayList<>(Math.max(count, 0));
+
+        for (int i = 0; i < count; i++) {
+            // read()처럼 건수를 먼저 올린 다음 doRead()를 호출한다.
+            setCurrentItemCount(getCurrentItemCount() + 1);
+            T item = doRead();
+
+            if (item == null) {
+                break;
+            }
+            items.add(item);
+        }
+
+        return items;
+    }
+
+    /**
+     * maxItemCount까지 더 읽을 수 있는 건수
+     */
+    protected int remainingItemCount() {
+        return maxItemCount - getCurrentItemCount();
+    }
+}
@@ -0,0 +1,199 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * 청크마다 처리량(초당 읽은 건수)과 커밋 시간을 재서 청크 크기를 minChunkSize ~ maxChunkSize 안에서 바꾸는 CompletionPolicy이다.
+ * samplesPerSize 개의 청크를 같은 크기로 실행한 뒤
+ *   처리량이 직전 크기보다 좋아졌으면 같은 방향으로, 나빠졌으면 반대 방향으로 growthFactor 배씩 크기를 바꾼다.
+ *   targetCommitMillis를 주면 평균 커밋 시간이 그보다 길 때는 처리량과 상관없이 크기를 줄인다.
+ * 커밋 시간은 writer가 끝난 뒤부터 커밋이 끝날 때까지(afterWrite ~ afterChunk)이다.
+ *
+ * 청크 크기가 바뀌면 chunkSizeListener로 알려주므로 페이징 리더의 pageSize를 같이 맞출 수 있다.
+ * 현재 청크 크기는 spring.batch.chunk.size 게이지(name 태그는 스텝 이름)로 볼 수 있다.
+ *
+ * 청크 스레드 하나에서만 호출되어야 하므로 파티션 워커나 스텝 실행마다 @StepScope로 따로 만든다.
+ * chunk(policy)와 함께 listener((ChunkListener) policy), listener((ItemWriteListener) policy)로 등록해야 한다.
+ */
+@Slf4j
+public class AdaptiveCompletionPolicy extends SimpleCompletionPolicy implements ChunkListener, ItemWriteListener<Object> {
+
+    public static final String METRIC_NAME = "spring.batch.chunk.size";
+
+    // 게이지는 대상 객체를 약하게 참조하므로 스텝 이름마다 하나씩 계속 들고 있는다.
+    private static final Map<String, AtomicInteger> CHUNK_SIZE_GAUGES = new ConcurrentHashMap<>();
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetCommitNanos;
+    private final List<IntConsumer> chunkSizeListeners = new CopyOnWriteArrayList<>();
+
+    private int samplesPerSize = 3;
+    private double growthFactor = 1.5;
+
+    private AtomicInteger gauge;
+    private int direction = 1;
+    private double previousThroughput = -1;
+
+    // 지금 청크
+    private long chunkStartNanos;
+    private long writeEndNanos;
+    private int readCountAtStart;
+
+    // 지금 크기로 실행한 청크들
+    private int samples;
+    private long sampleItems;
+    private long sampleNanos;
+    private long sampleCommitNanos;
+
+    /**
+     * @param targetCommitMillis 0이면 커밋 시간은 보지 않는다.
+     */
+    public AdaptiveCompletionPolicy(int chunkSize, int minChunkSize, int maxChunkSize, long targetCommitMillis) {
+        super(Math.max(minChunkSize, Math.min(chunkSize, maxChunkSize)));
+        if (minChunkSize < 1 || minChunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("청크 크기 범위가 잘못되었습니다. min : " + minChunkSize + ", max : " + maxChunkSize);
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetCommitNanos = targetCommitMillis * 1_000_000L;
+    }
+
+    public void setSamplesPerSize(int samplesPerSize) {
+        this.samplesPerSize = samplesPerSize;
+    }
+
+    public void setGrowthFactor(double growthFactor) {
+        this.growthFactor = growthFactor;
+    }
+
+    public void addChunkSizeListener(IntConsumer chunkSizeListener) {
+        chunkSizeListeners.add(chunkSizeListener);
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        if (gauge == null) {
+            gauge = chunkSizeGauge(context.getStepContext().getStepName());
+        }
+        gauge.set(getChunkSize());
+
+        chunkStartNanos = System.nanoTime();
+        writeEndNanos = 0;
+        readCountAtStart = context.getStepContext().getStepExecution().getReadCount();
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        long now = System.nanoTime();
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        int items = stepExecution.getReadCount() - readCountAtStart;
+
+        // 마지막 빈 청크나 스캔 중인 청크는 재지 않는다.
+        if (items <= 0 || writeEndNanos == 0) {
+            return;
+        }
+
+        sampleItems += items;
+        sampleNanos += now - chunkStartNanos;
+        sampleCommitNanos += now - writeEndNanos;
+
+        if (++samples < samplesPerSize) {
+            return;
+        }
+
+        double throughput = sampleItems * 1_000_000_000d / Math.max(sampleNanos, 1);
+        long commitNanos = sampleCommitNanos / samples;
+        samples = 0;
+        sampleItems = 0;
+        sampleNanos = 0;
+        sampleCommitNanos = 0;
+
+        int previous = getChunkSize();
+        int next = adjust(throughput, commitNanos);
+
+        if (next != previous) {
+            log.debug("{} 청크 크기 {} -> {}, 초당 {}건, 커밋 {}ms", context.getStepContext().getStepName(),
+                    previous, next, (long) throughput, commitNanos / 1_000_000);
+        }
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        writeEndNanos = 0;
+    }
+
+    @Override
+    public void beforeWrite(List<?> items) {
+
+    }
+
+    @Override
+    public void afterWrite(List<?> items) {
+        writeEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<?> items) {
+
+    }
+
+    /**
+     * 측정한 처리량과 평균 커밋 시간으로 다음 청크 크기를 정해서 적용한다.
+     */
+    int adjust(double throughput, long commitNanos) {
+        int current = getChunkSize();
+
+        if (targetCommitNanos > 0 && commitNanos > targetCommitNanos) {
+            direction = -1;
+        } else if (previousThroughput >= 0 && throughput < previousThroughput) {
+            direction = -direction;
+        }
+        previousThroughput = throughput;
+
+        int next = direction > 0
+                ? (int) Math.ceil(current * growthFactor)
+                : (int) (current / growthFactor);
+        next = Math.max(minChunkSize, Math.min(next, maxChunkSize));
+
+        // 범위 끝에 닿으면 다음에는 반대쪽을 본다.
+        if (next == current) {
+            direction = -direction;
+            return current;
+        }
+
+        setChunkSize(next);
+        if (gauge != null) {
+            gauge.set(next);
+        }
+        for (IntConsumer chunkSizeListener : chunkSizeListeners) {
+            chunkSizeListener.accept(next);
+        }
+        return next;
+    }
+
+    private static AtomicInteger chunkSizeGauge(String stepName) {
+        return CHUNK_SIZE_GAUGES.computeIfAbsent(stepName, name -> {
+            AtomicInteger chunkSize = new AtomicInteger();
+            Gauge.builder(METRIC_NAME, chunkSize, AtomicInteger::get)
+                    .description("AdaptiveCompletionPolicy가 정한 청크 크기")
+                    .tag("name", name)
+                    .register(Metrics.globalRegistry);
+            return chunkSize;
+        });
+    }
+}
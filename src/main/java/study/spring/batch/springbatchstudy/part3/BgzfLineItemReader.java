@@ -0,0 +1,157 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BGZF로 압축된 csv 파일을 줄 단위로 읽어 LineMapper로 변환한다.
+ * 블록 압축 해제는 inflateThreads 개의 스레드가 동시에 하고 줄은 파일 순서대로 읽는다.
+ * DefaultRecordSeparatorPolicy처럼 "로 감싼 필드 안의 줄바꿈은 다음 줄까지 한 레코드로 읽는다.
+ *
+ * 다음에 읽을 줄의 가상 오프셋(블록 위치 + 블록 안 위치)을 ExecutionContext에 저장하므로
+ * 재시작하면 그 블록부터 압축을 풀고 앞 블록은 건너뛴다.
+ */
+public class BgzfLineItemReader<T> extends AbstractItemCountingItemStreamItemReader<T> {
+
+    private static final String VIRTUAL_OFFSET = "virtualOffset";
+    private static final int QUOTE = '"';
+
+    private final Resource resource;
+    private final LineMapper<T> lineMapper;
+    private final int inflateThreads;
+
+    private int linesToSkip;
+    // 재시작이면 ExecutionContext에 저장된 가상 오프셋
+    private Long restartOffset;
+    private ExecutorService executor;
+    private ParallelBgzfInputStream inputStream;
+    private byte[] line = new byte[256];
+
+    public BgzfLineItemReader(String name, Resource resource, LineMapper<T> lineMapper, int inflateThreads) {
+        setName(name);
+        this.resource = resource;
+        this.lineMapper = lineMapper;
+        this.inflateThreads = inflateThreads;
+    }
+
+    public void setLinesToSkip(int linesToSkip) {
+        this.linesToSkip = linesToSkip;
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        int length = readLine();
+        if (length < 0) {
+            return null;
+        }
+
+        return lineMapper.mapLine(new String(line, 0, length, StandardCharsets.UTF_8), getCurrentItemCount());
+    }
+
+    /**
+     * 레코드 하나를 line에 읽고 길이를 돌려준다. 파일 끝이면 -1
+     */
+    private int readLine() throws Exception {
+        int length = 0;
+        boolean quoted = false;
+        int b;
+
+        while ((b = inputStream.read()) >= 0 && (quoted || b != '\n')) {
+            if (b == QUOTE) {
+                quoted = !quoted;
+            }
+            // FlatFileItemReader처럼 " 안의 줄바꿈은 \n으로 읽는다.
+            if (b == '\n' && length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = (byte) b;
+        }
+
+        if (b < 0 && length == 0) {
+            return -1;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return length;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(inflateThreads, runnable -> {
+            Thread thread = new Thread(runnable, "bgzf-inflate-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (restartOffset != null) {
+            openAt(restartOffset);
+            return;
+        }
+
+        openAt(0);
+        for (int i = 0; i < linesToSkip; i++) {
+            readLine();
+        }
+    }
+
+    private void openAt(long virtualOffset) throws Exception {
+        Assert.state(resource.isFile(), "파일 시스템의 파일만 읽을 수 있습니다. resource : " + resource);
+        FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+        inputStream = new ParallelBgzfInputStream(channel, virtualOffset, executor, inflateThreads * 4);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        String key = getExecutionContextKey(VIRTUAL_OFFSET);
+        restartOffset = isSaveState() && executionContext.containsKey(key)
+                ? ((Number) executionContext.get(key)).longValue()
+                : null;
+
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(VIRTUAL_OFFSET), inputStream.getVirtualOffset());
+        }
+    }
+
+    /**
+     * 재시작 위치는 open()에서 가상 오프셋으로 복원하므로 앞에서부터 다시 읽어서 건너뛰지 않는다.
+     */
+    @Override
+    protected void jumpToItem(int itemIndex) {
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (inputStream != null) {
+            inputStream.close();
+            inputStream = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
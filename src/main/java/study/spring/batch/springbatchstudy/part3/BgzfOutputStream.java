@@ -0,0 +1,110 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * BGZF(블록 gzip) 형식으로 압축해서 쓴다. 입력을 최대 MAX_BLOCK_INPUT 바이트씩 잘라 각각 독립된 gzip 멤버로 만든다.
+ * 각 멤버의 헤더 extra 필드(BC)에 블록 전체 크기가 들어 있어서 압축을 풀지 않고도 블록 경계를 알 수 있다.
+ * 일반 gzip 도구로도 그대로 풀린다. 마지막에 빈 블록(EOF 표시)을 붙인다.
+ */
+public class BgzfOutputStream extends OutputStream {
+
+    static final int HEADER_SIZE = 18;
+    static final int FOOTER_SIZE = 8;
+    static final int MAX_BLOCK_SIZE = 64 * 1024;
+    static final int MAX_BLOCK_INPUT = 0xff00;
+
+    private static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+            0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+    };
+
+    private final OutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc32 = new CRC32();
+    private final byte[] input = new byte[MAX_BLOCK_INPUT];
+    private final byte[] compressed = new byte[MAX_BLOCK_SIZE];
+    private int inputLength;
+
+    public BgzfOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (inputLength == input.length) {
+            flushBlock();
+        }
+        input[inputLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (inputLength == input.length) {
+                flushBlock();
+            }
+
+            int length = Math.min(len, input.length - inputLength);
+            System.arraycopy(b, off, input, inputLength, length);
+            inputLength += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        while (inputLength > 0) {
+            flushBlock();
+        }
+        out.write(EOF_BLOCK);
+        out.close();
+        deflater.end();
+    }
+
+    /**
+     * 모은 입력을 블록 하나로 압축해서 쓴다. 압축한 크기가 블록 최대 크기를 넘으면 입력을 줄여서 다시 압축한다.
+     */
+    private void flushBlock() throws IOException {
+        int length = inputLength;
+        int compressedLength;
+
+        while (true) {
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            compressedLength = deflater.deflate(compressed, 0, MAX_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE);
+
+            if (deflater.finished()) {
+                break;
+            }
+            length -= 1024;
+        }
+
+        crc32.reset();
+        crc32.update(input, 0, length);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 4)
+                .putInt(0).put((byte) 0).put((byte) 0xff)
+                .putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2)
+                .putShort((short) (HEADER_SIZE + compressedLength + FOOTER_SIZE - 1));
+
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putInt((int) crc32.getValue()).putInt(length);
+
+        out.write(header.array());
+        out.write(compressed, 0, compressedLength);
+        out.write(footer.array());
+
+        // 압축하지 못하고 남은 입력은 다음 블록으로 넘긴다.
+        System.arraycopy(input, length, input, 0, inputLength - length);
+        inputLength -= length;
+    }
+}
@@ -0,0 +1,197 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.listener.StepListenerFailedException;
+import org.springframework.batch.core.step.item.BatchRetryTemplate;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.ChunkMonitor;
+import org.springframework.batch.core.step.item.FaultTolerantChunkProcessor;
+import org.springframework.batch.core.step.item.ForceRollbackForWriteSkipException;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.classify.Classifier;
+import org.springframework.retry.RetryException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 쓰기가 실패한 청크에서 실패한 아이템을 반씩 나눠 쓰면서 찾는 ChunkProcessor이다.
+ * FaultTolerantChunkProcessor는 청크를 롤백한 뒤 아이템을 하나씩 트랜잭션마다 다시 써서(scan) 청크 크기만큼 트랜잭션이 필요하다.
+ * 여기서는 실패한 구간을 반으로 나눠 트랜잭션마다 한 구간씩 쓰고, 실패한 구간만 다시 반으로 나눈다.
+ * 앞쪽 반을 쓰는 데 성공하면 뒤쪽 반에 실패한 아이템이 있으므로 써 보지 않고 바로 나눈다.
+ * 청크 크기가 n이고 실패한 아이템이 k개면 k * log2(n) 정도의 트랜잭션으로 끝난다.
+ *
+ * 한 건짜리 구간은 scan과 같게 처리하므로 skipLimit, writeSkipCount, SkipListener.onSkipInWrite는 그대로이다.
+ * ItemWriteListener는 scan처럼 beforeWrite 없이 구간마다 afterWrite, onWriteError가 호출된다.
+ * 구간을 다 쓰면 빈 청크로 FaultTolerantChunkProcessor.write()를 한 번 더 호출해서 재시도 상태를 정리하고 SkipListener를 호출한다.
+ *
+ * skip 대상 예외는 retry를 설정해도 다시 쓰지 않고 바로 나눈다.
+ * 리더가 트랜잭션 큐라서 청크를 버퍼링하지 않으면 나누지 않고 FaultTolerantChunkProcessor처럼 처리한다.
+ */
+public class BisectingChunkProcessor<I, O> extends FaultTolerantChunkProcessor<I, O> {
+
+    // 파티션 워커 스텝들이 같이 쓸 수 있어서 청크마다 남은 구간을 따로 둔다.
+    private final Map<Chunk<I>, Deque<Segment>> segments = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private SkipPolicy writeSkipPolicy;
+    private Classifier<Throwable, Boolean> rollbackClassifier;
+    private ChunkMonitor chunkMonitor;
+    private boolean buffering = true;
+
+    public BisectingChunkProcessor(ItemProcessor<? super I, ? extends O> itemProcessor,
+                                   ItemWriter<? super O> itemWriter, BatchRetryTemplate batchRetryTemplate) {
+        super(itemProcessor, itemWriter, batchRetryTemplate);
+    }
+
+    @Override
+    public void setWriteSkipPolicy(SkipPolicy writeSkipPolicy) {
+        super.setWriteSkipPolicy(writeSkipPolicy);
+        this.writeSkipPolicy = writeSkipPolicy;
+    }
+
+    @Override
+    public void setRollbackClassifier(Classifier<Throwable, Boolean> rollbackClassifier) {
+        super.setRollbackClassifier(rollbackClassifier);
+        this.rollbackClassifier = rollbackClassifier;
+    }
+
+    @Override
+    public void setChunkMonitor(ChunkMonitor chunkMonitor) {
+        super.setChunkMonitor(chunkMonitor);
+        this.chunkMonitor = chunkMonitor;
+    }
+
+    @Override
+    public void setBuffering(boolean buffering) {
+        super.setBuffering(buffering);
+        this.buffering = buffering;
+    }
+
+    @Override
+    protected void write(StepContribution contribution, Chunk<I> inputs, Chunk<O> outputs) throws Exception {
+        Deque<Segment> pending = segments.get(inputs);
+
+        if (pending == null) {
+            try {
+                super.write(contribution, inputs, outputs);
+            } catch (Exception e) {
+                if (buffering && outputs.size() > 1 && writeSkipPolicy.shouldSkip(rootCause(e), -1)) {
+                    Deque<Segment> bisected = new ArrayDeque<>();
+                    split(bisected, outputs.size());
+                    segments.put(inputs, bisected);
+                }
+                throw e;
+            }
+            return;
+        }
+
+        // 아이템 처리에서 skip이 생겨서 입력과 출력이 어긋나면 scan에 맡긴다.
+        if (inputs.size() != outputs.size()) {
+            segments.remove(inputs);
+            super.write(contribution, inputs, outputs);
+            return;
+        }
+
+        if (!pending.isEmpty()) {
+            inputs.setBusy(true);
+            writeSegment(contribution, inputs, outputs, pending);
+        }
+
+        if (pending.isEmpty()) {
+            segments.remove(inputs);
+            super.write(contribution, inputs, outputs);
+        }
+    }
+
+    /**
+     * 남은 구간 중 맨 앞 구간을 쓴다. 실패하면 반으로 나누고 예외를 던져서 이 트랜잭션을 롤백한다.
+     */
+    private void writeSegment(StepContribution contribution, Chunk<I> inputs, Chunk<O> outputs,
+                              Deque<Segment> pending) throws Exception {
+        Segment segment = pending.pollFirst();
+        List<O> items = new ArrayList<>(outputs.getItems().subList(0, segment.size));
+        Chunk<I>.ChunkIterator inputIterator = inputs.iterator();
+        Chunk<O>.ChunkIterator outputIterator = outputs.iterator();
+
+        try {
+            writeItems(items);
+            doAfterWrite(items);
+        } catch (Exception e) {
+            doOnWriteError(e, items);
+            Throwable cause = e instanceof StepListenerFailedException ? e.getCause() : e;
+
+            if (segment.size > 1) {
+                split(pending, segment.size);
+                if (rollbackClassifier.classify(cause)) {
+                    throw (Exception) cause;
+                }
+                throw new ForceRollbackForWriteSkipException(
+                        "Force rollback on skippable exception so that skipped item can be located.", cause);
+            }
+
+            inputIterator.next();
+            outputIterator.next();
+            if (!writeSkipPolicy.shouldSkip(cause, -1) && !rollbackClassifier.classify(cause)) {
+                inputIterator.remove();
+                outputIterator.remove();
+            } else if (writeSkipPolicy.shouldSkip(cause, contribution.getStepSkipCount())) {
+                contribution.incrementWriteSkipCount();
+                inputIterator.remove();
+                outputIterator.remove(cause);
+            } else {
+                throw new RetryException("Non-skippable exception in recoverer", cause);
+            }
+            chunkMonitor.incrementOffset();
+
+            if (rollbackClassifier.classify(cause)) {
+                throw (Exception) cause;
+            }
+            return;
+        }
+
+        contribution.incrementWriteCount(segment.size);
+        for (int i = 0; i < segment.size; i++) {
+            inputIterator.next();
+            inputIterator.remove();
+            outputIterator.next();
+            outputIterator.remove();
+            chunkMonitor.incrementOffset();
+        }
+
+        // 앞쪽 반이 성공했으면 실패한 아이템은 뒤쪽 반에 있다.
+        Segment sibling = pending.peekFirst();
+        if (segment.first && sibling != null && sibling.size > 1) {
+            pending.pollFirst();
+            split(pending, sibling.size);
+        }
+    }
+
+    private static void split(Deque<Segment> pending, int size) {
+        int half = size / 2;
+        pending.addFirst(new Segment(size - half, false));
+        pending.addFirst(new Segment(half, true));
+    }
+
+    private static Throwable rootCause(Exception e) {
+        Throwable cause = e instanceof ForceRollbackForWriteSkipException ? e.getCause() : e;
+        return cause instanceof StepListenerFailedException ? cause.getCause() : cause;
+    }
+
+    private static class Segment {
+        private final int size;
+        // 실패한 구간을 나눈 앞쪽 반
+        private final boolean first;
+
+        private Segment(int size, boolean first) {
+            this.size = size;
+            this.first = first;
+        }
+    }
+}
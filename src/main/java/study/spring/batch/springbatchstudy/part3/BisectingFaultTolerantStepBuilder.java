@@ -0,0 +1,64 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.core.StepListener;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.item.ChunkProcessor;
+import org.springframework.batch.core.step.item.KeyGenerator;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * faultTolerant() 대신 사용해서 쓰기 skip을 BisectingChunkProcessor로 찾는 스텝을 만든다.
+ *   new BisectingFaultTolerantStepBuilder<>(stepBuilderFactory.get("step").chunk(1000).reader(..).writer(..))
+ *           .skip(..).skipLimit(..).build();
+ * 나머지 설정은 FaultTolerantStepBuilder와 같다.
+ */
+public class BisectingFaultTolerantStepBuilder<I, O> extends FaultTolerantStepBuilder<I, O> {
+
+    private boolean processorTransactional = true;
+    private KeyGenerator keyGenerator;
+
+    public BisectingFaultTolerantStepBuilder(SimpleStepBuilder<I, O> parent) {
+        super(parent);
+    }
+
+    @Override
+    public FaultTolerantStepBuilder<I, O> processorNonTransactional() {
+        this.processorTransactional = false;
+        return super.processorNonTransactional();
+    }
+
+    @Override
+    public FaultTolerantStepBuilder<I, O> keyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+        return super.keyGenerator(keyGenerator);
+    }
+
+    /**
+     * FaultTolerantStepBuilder.createChunkProcessor()와 같은 설정으로 BisectingChunkProcessor를 만든다.
+     */
+    @Override
+    protected ChunkProcessor<I> createChunkProcessor() {
+        BisectingChunkProcessor<I, O> chunkProcessor = new BisectingChunkProcessor<>(getProcessor(), getWriter(),
+                createRetryOperations());
+        chunkProcessor.setBuffering(!isReaderTransactionalQueue());
+        chunkProcessor.setProcessorTransactional(processorTransactional);
+
+        SkipPolicy writeSkipPolicy = getFatalExceptionAwareProxy(createSkipPolicy());
+        chunkProcessor.setWriteSkipPolicy(writeSkipPolicy);
+        chunkProcessor.setProcessSkipPolicy(writeSkipPolicy);
+        chunkProcessor.setRollbackClassifier(getRollbackClassifier());
+        chunkProcessor.setKeyGenerator(keyGenerator);
+        detectStreamInReader();
+
+        List<StepListener> listeners = new ArrayList<>(getItemListeners());
+        listeners.addAll(getSkipListeners());
+        chunkProcessor.setListeners(listeners);
+        chunkProcessor.setChunkMonitor(getChunkMonitor());
+
+        return chunkProcessor;
+    }
+}
@@ -0,0 +1,141 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 사용하는 heap을 memoryLimit 바이트 안으로 제한하는 KeyPool이다.
+ *   1. off-heap Bloom filter에 없으면 확실히 새 key이므로 바로 저장한다.
+ *   2. Bloom filter가 있을 수도 있다고 하면 정확한 key 집합에서 확인한다.
+ * 정확한 key 집합은 heap의 Set에 모으다가 memoryLimit을 넘으면 디스크 해시 인덱스(DiskHashIndex)로 내보낸다.
+ * 새 key 대부분은 1에서 끝나므로 디스크를 읽는 건 중복 key와 Bloom filter 오탐뿐이다.
+ */
+@Slf4j
+public class BloomFilterKeyPool implements KeyPool {
+
+    private final OffHeapBloomFilter bloomFilter;
+    private final long memoryLimit;
+    private final Path spillDirectory;
+
+    private Set<String> memoryKeys = new HashSet<>();
+    private long memoryKeysSize;
+    private DiskHashIndex diskIndex;
+
+    private long size;
+    private long falsePositives;
+
+    public BloomFilterKeyPool(long expectedKeys, double falsePositiveRate, long memoryLimit) {
+        this.bloomFilter = new OffHeapBloomFilter(expectedKeys, falsePositiveRate);
+        this.memoryLimit = memoryLimit;
+
+        try {
+            this.spillDirectory = Files.createTempDirectory("key-pool-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean add(String key) {
+        long hash = hash(key);
+
+        if (!bloomFilter.put(hash)) {
+            if (containsExact(hash, key)) {
+                return false;
+            }
+            falsePositives++;
+        }
+
+        addExact(hash, key);
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long memoryUsage() {
+        return bloomFilter.byteSize() + memoryKeysSize;
+    }
+
+    @Override
+    public synchronized double falsePositiveRate() {
+        return size == 0 ? 0 : (double) falsePositives / size;
+    }
+
+    @Override
+    public synchronized void close() {
+        log.info("key {}건, 메모리 {}bytes, 디스크 {}bytes, 오탐률 {} (예상 {})",
+                size, memoryUsage(), diskIndex != null ? diskIndex.diskUsage() : 0,
+                falsePositiveRate(), bloomFilter.expectedFalsePositiveRate(size));
+
+        memoryKeys = new HashSet<>();
+        memoryKeysSize = 0;
+
+        if (diskIndex != null) {
+            diskIndex.close();
+            diskIndex = null;
+        }
+
+        try {
+            Files.deleteIfExists(spillDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean containsExact(long hash, String key) {
+        return memoryKeys.contains(key) || (diskIndex != null && diskIndex.contains(hash, key));
+    }
+
+    private void addExact(long hash, String key) {
+        memoryKeys.add(key);
+        memoryKeysSize += InMemoryKeyPool.estimateSize(key);
+
+        if (memoryKeysSize > memoryLimit) {
+            spill();
+        }
+    }
+
+    private void spill() {
+        if (diskIndex == null) {
+            diskIndex = new DiskHashIndex(spillDirectory);
+        }
+
+        for (String key : memoryKeys) {
+            diskIndex.add(hash(key), key);
+        }
+
+        log.debug("key {}건을 디스크로 내보냈습니다. 디스크 {}bytes", memoryKeys.size(), diskIndex.diskUsage());
+        memoryKeys = new HashSet<>();
+        memoryKeysSize = 0;
+    }
+
+    /**
+     * FNV-1a 64비트 해시에 murmur3 finalizer를 더해 비트를 고르게 섞는다.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
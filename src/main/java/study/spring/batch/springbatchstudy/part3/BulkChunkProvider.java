@@ -0,0 +1,67 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.repeat.RepeatOperations;
+
+import java.util.List;
+
+/**
+ * 리더가 BulkItemReader면 readChunk()로 청크를 채우는 ChunkProvider이다.
+ * SimpleChunkProvider는 아이템마다 RepeatTemplate 콜백, 타이머, read() 호출, null 체크를 거치지만
+ * 여기서는 청크 크기만큼 한 번에 받고, 페이지 경계에서 모자라는 만큼만 더 읽는다.
+ * ItemReadListener는 readChunk() 호출마다 beforeRead, 받은 아이템마다 afterRead가 호출된다.
+ *
+ * BulkItemReader가 아니면 SimpleChunkProvider처럼 아이템을 하나씩 읽는다.
+ */
+public class BulkChunkProvider<I> extends SimpleChunkProvider<I> {
+
+    private final int chunkSize;
+
+    public BulkChunkProvider(ItemReader<? extends I> itemReader, RepeatOperations repeatOperations, int chunkSize) {
+        super(itemReader, repeatOperations);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public Chunk<I> provide(StepContribution contribution) throws Exception {
+        if (!(itemReader instanceof BulkItemReader)) {
+            return super.provide(contribution);
+        }
+
+        BulkItemReader<? extends I> bulkItemReader = (BulkItemReader<? extends I>) itemReader;
+        Chunk<I> inputs = new Chunk<>();
+
+        while (inputs.size() < chunkSize) {
+            List<? extends I> items = readChunk(bulkItemReader, chunkSize - inputs.size());
+
+            if (items.isEmpty()) {
+                inputs.setEnd();
+                break;
+            }
+
+            for (I item : items) {
+                inputs.add(item);
+                contribution.incrementReadCount();
+            }
+        }
+
+        return inputs;
+    }
+
+    private List<? extends I> readChunk(BulkItemReader<? extends I> bulkItemReader, int max) throws Exception {
+        try {
+            getListener().beforeRead();
+            List<? extends I> items = bulkItemReader.readChunk(max);
+            for (I item : items) {
+                getListener().afterRead(item);
+            }
+            return items;
+        } catch (Exception e) {
+            getListener().onReadError(e);
+            throw e;
+        }
+    }
+}
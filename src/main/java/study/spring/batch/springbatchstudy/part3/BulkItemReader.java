@@ -0,0 +1,18 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.ItemReader;
+
+import java.util.List;
+
+/**
+ * 아이템을 하나씩이 아니라 여러 건씩 넘겨주는 리더이다. BulkChunkProvider가 청크를 채울 때 사용한다.
+ * 페이징 리더는 읽어 둔 페이지 리스트를, 커서 리더는 미리 크기를 잡아 둔 리스트를 채워서 돌려준다.
+ */
+public interface BulkItemReader<T> extends ItemReader<T> {
+
+    /**
+     * 최대 max 개의 아이템을 돌려준다. 페이지 경계에서는 max보다 적게 돌려줄 수 있고, 다 읽었으면 빈 리스트를 돌려준다.
+     * 돌려준 리스트는 다음 readChunk() 호출 전까지만 바뀌지 않으면 되므로 호출한 쪽에서 복사해서 써야 한다.
+     */
+    List<T> readChunk(int max) throws Exception;
+}
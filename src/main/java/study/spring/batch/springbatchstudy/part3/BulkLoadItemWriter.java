@@ -0,0 +1,197 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 청크를 DB의 대량 적재 경로로 한 번에 넣는 writer이다.
+ *   H2    : 청크를 임시 csv 파일로 쓰고 insert into ... select * from CSVREAD(파일)
+ *   MySQL : 청크를 메모리에서 탭 구분 형식으로 만들어 LOAD DATA LOCAL INFILE 스트림으로 보낸다.
+ *           (Connector/J의 setLocalInfileInputStream, URL에 allowLoadLocalInfile=true 필요)
+ *   그 외 : MultiRowInsertItemWriter로 여러 건을 insert 문 하나로 묶어 넣는다.
+ * 모두 스텝 트랜잭션의 커넥션에서 실행되므로 청크가 롤백되면 같이 롤백된다.
+ * 들어간 건수가 청크 크기와 다르면(MySQL LOCAL은 오류를 경고로 바꾸고 건너뛴다) 예외를 던져 청크를 롤백한다.
+ */
+public class BulkLoadItemWriter<T> implements ItemWriter<T> {
+
+    private static final int ROWS_PER_STATEMENT = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final String[] columns;
+    private final Function<T, Object[]> valuesExtractor;
+    private final MultiRowInsertItemWriter<T> multiRowInsertItemWriter;
+
+    private volatile String databaseName;
+
+    /**
+     * @param valuesExtractor 아이템에서 columns 순서대로 값을 꺼내는 함수
+     */
+    public BulkLoadItemWriter(DataSource dataSource, String table, String[] columns, Function<T, Object[]> valuesExtractor) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.table = table;
+        this.columns = columns;
+        this.valuesExtractor = valuesExtractor;
+        this.multiRowInsertItemWriter = new MultiRowInsertItemWriter<>(dataSource, table, columns, valuesExtractor, ROWS_PER_STATEMENT);
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        String database = databaseName();
+
+        if (database.startsWith("H2")) {
+            writeH2(items);
+        } else if (database.startsWith("MySQL")) {
+            writeMySql(items);
+        } else {
+            multiRowInsertItemWriter.write(items);
+        }
+    }
+
+    private void writeH2(List<? extends T> items) throws Exception {
+        Path file = Files.createTempFile(table + "-", ".csv");
+
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8))) {
+                writer.write(String.join(",", columns));
+                writer.write('\n');
+
+                for (T item : items) {
+                    Object[] values = valuesExtractor.apply(item);
+                    for (int i = 0; i < values.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        // null은 빈 값, 빈 문자열은 ""로 써서 CSVREAD가 구분하게 한다.
+                        if (values[i] != null) {
+                            writer.write('"');
+                            writer.write(values[i].toString().replace("\"", "\"\""));
+                            writer.write('"');
+                        }
+                    }
+                    writer.write('\n');
+                }
+            }
+
+            // H2는 CSVREAD의 컬럼을 문장을 준비할 때 읽으므로 파일 이름을 파라미터로 넘길 수 없다.
+            String sql = "insert into " + table + " (" + String.join(", ", columns) + ")"
+                    + " select * from CSVREAD('" + file.toAbsolutePath().toString().replace("'", "''") + "', null, 'charset=UTF-8')";
+            verify(sql, items.size(), jdbcTemplate.update(sql));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void writeMySql(List<? extends T> items) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(items.size() * 64);
+        StringBuilder line = new StringBuilder();
+
+        for (T item : items) {
+            line.setLength(0);
+            Object[] values = valuesExtractor.apply(item);
+
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append('\t');
+                }
+                appendMySqlValue(line, values[i]);
+            }
+            line.append('\n');
+            out.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        String sql = "load data local infile 'chunk' into table " + table
+                + " character set utf8mb4 (" + String.join(", ", columns) + ")";
+        InputStream inputStream = new ByteArrayInputStream(out.toByteArray());
+
+        int loaded = jdbcTemplate.execute((StatementCallback<Integer>) statement -> {
+            setLocalInfileInputStream(statement, inputStream);
+            return statement.executeUpdate(sql);
+        });
+        verify(sql, items.size(), loaded);
+    }
+
+    /**
+     * LOAD DATA 기본 형식(탭 구분, \ 이스케이프), null은 \N
+     */
+    private static void appendMySqlValue(StringBuilder line, Object value) {
+        if (value == null) {
+            line.append("\\N");
+            return;
+        }
+
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\0':
+                    line.append("\\0");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+    }
+
+    /**
+     * mysql 드라이버는 runtimeOnly 의존성이라서 컴파일 시점에 클래스를 쓸 수 없으므로 리플렉션으로 호출한다.
+     */
+    private static void setLocalInfileInputStream(Statement statement, InputStream inputStream) {
+        try {
+            Class<?> jdbcStatement = Class.forName("com.mysql.cj.jdbc.JdbcStatement");
+            Object mysqlStatement = statement.unwrap(jdbcStatement);
+            Method method = jdbcStatement.getMethod("setLocalInfileInputStream", InputStream.class);
+            method.invoke(mysqlStatement, inputStream);
+        } catch (Exception e) {
+            throw new IllegalStateException("MySQL Connector/J statement에 LOAD DATA 스트림을 설정하지 못했습니다.", e);
+        }
+    }
+
+    private static void verify(String sql, int expected, int actual) {
+        if (expected != actual) {
+            throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(sql, expected, actual);
+        }
+    }
+
+    private String databaseName() {
+        if (databaseName == null) {
+            databaseName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+        }
+        return databaseName;
+    }
+}
@@ -0,0 +1,38 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+
+/**
+ * SimpleStepBuilder와 같은 스텝을 만들지만 청크는 BulkChunkProvider로 읽는다.
+ *   new BulkReadStepBuilder<>(stepBuilderFactory.get("step").chunk(1000).reader(..).writer(..)).build();
+ * 청크 크기만큼 readChunk()를 호출하므로 chunk(CompletionPolicy)가 아니라 chunk(int)로 만들어야 한다.
+ * faultTolerant()를 호출하면 FaultTolerantChunkProvider로 아이템을 하나씩 읽는 스텝이 된다.
+ */
+public class BulkReadStepBuilder<I, O> extends SimpleStepBuilder<I, O> {
+
+    public BulkReadStepBuilder(SimpleStepBuilder<I, O> parent) {
+        super(parent);
+    }
+
+    @Override
+    protected Tasklet createTasklet() {
+        Assert.state(getReader() != null, "ItemReader must be provided");
+        Assert.state(getWriter() != null, "ItemWriter must be provided");
+        Assert.state(getChunkSize() > 0, "bulk read는 chunk(int)로 청크 크기를 정해야 합니다.");
+
+        BulkChunkProvider<I> chunkProvider = new BulkChunkProvider<>(getReader(), createChunkOperations(), getChunkSize());
+        SimpleChunkProcessor<I, O> chunkProcessor = new SimpleChunkProcessor<>(getProcessor(), getWriter());
+        chunkProvider.setListeners(new ArrayList<>(getItemListeners()));
+        chunkProcessor.setListeners(new ArrayList<>(getItemListeners()));
+
+        ChunkOrientedTasklet<I> tasklet = new ChunkOrientedTasklet<>(chunkProvider, chunkProcessor);
+        tasklet.setBuffering(!isReaderTransactionalQueue());
+        return tasklet;
+    }
+}
@@ -0,0 +1,157 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 파일의 startOffset ~ endOffset 바이트 구간에서 시작하는 줄만 읽어서 LineMapper로 변환한다.
+ * startOffset은 줄이 시작하는 위치여야 한다. FileRangePartitioner가 나눈 구간을 파티션마다 읽을 때 사용한다.
+ * DefaultRecordSeparatorPolicy처럼 "로 감싼 필드 안의 줄바꿈은 다음 줄까지 한 레코드로 읽는다.
+ *
+ * 다음에 읽을 줄의 바이트 위치를 ExecutionContext에 저장하므로 재시작하면 앞에서부터 다시 읽지 않고 그 위치로 바로 간다.
+ */
+public class ByteRangeLineItemReader<T> extends AbstractItemCountingItemStreamItemReader<T> {
+
+    private static final String POSITION = "position";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte QUOTE = '"';
+
+    private final Resource resource;
+    private final long startOffset;
+    private final long endOffset;
+    private final LineMapper<T> lineMapper;
+
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // buffer의 첫 바이트가 파일에서 있는 위치
+    private long bufferOffset;
+    private byte[] line = new byte[256];
+
+    // 다음에 읽을 줄이 시작하는 위치
+    private long position;
+
+    public ByteRangeLineItemReader(String name, Resource resource, long startOffset, long endOffset, LineMapper<T> lineMapper) {
+        setName(name);
+        this.resource = resource;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.lineMapper = lineMapper;
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        if (position >= endOffset) {
+            return null;
+        }
+
+        int length = 0;
+        boolean endOfLine = false;
+        boolean quoted = false;
+
+        while (!endOfLine) {
+            int index = (int) (position - bufferOffset);
+
+            if (index >= buffer.limit()) {
+                if (!fill()) {
+                    break;
+                }
+                continue;
+            }
+
+            byte b = buffer.get(index);
+            position++;
+
+            if (b == QUOTE) {
+                quoted = !quoted;
+            }
+
+            if (!quoted && b == '\n') {
+                endOfLine = true;
+            } else {
+                // FlatFileItemReader처럼 " 안의 줄바꿈은 \n으로 읽는다.
+                if (b == '\n' && length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+        }
+
+        if (!endOfLine && length == 0) {
+            return null;
+        }
+
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+
+        return lineMapper.mapLine(new String(line, 0, length, StandardCharsets.UTF_8), getCurrentItemCount());
+    }
+
+    /**
+     * position부터 파일을 다시 읽어 buffer를 채운다. 파일 끝이면 false
+     */
+    private boolean fill() throws Exception {
+        buffer.clear();
+        bufferOffset = position;
+
+        int read = channel.read(buffer, position);
+        buffer.flip();
+        return read > 0;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        Assert.state(resource.isFile(), "파일 시스템의 파일만 읽을 수 있습니다. resource : " + resource);
+        channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+        position = startOffset;
+        bufferOffset = startOffset;
+        buffer.clear().flip();
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        super.open(executionContext);
+
+        String key = getExecutionContextKey(POSITION);
+        if (isSaveState() && executionContext.containsKey(key)) {
+            position = ((Number) executionContext.get(key)).longValue();
+            bufferOffset = position;
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(POSITION), position);
+        }
+    }
+
+    /**
+     * 재시작 위치는 open()에서 position으로 복원하므로 앞에서부터 다시 읽어서 건너뛰지 않는다.
+     */
+    @Override
+    protected void jumpToItem(int itemIndex) {
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.PollableChannel;
+
+import java.util.function.Function;
+
+/**
+ * 매니저 스텝이 청크(ChunkRequest)를 워커에 보내고 결과(ChunkResponse)를 받는 통로이다.
+ * ChunkMessageChannelItemWriter가 requestChannel로 보내고 replyChannel에서 꺼내므로
+ * 브로커(JMS, AMQP 등)의 채널로 바꾸면 워커를 다른 서버에서 실행할 수 있다.
+ *
+ * 매니저 스텝이 실행될 때마다 새로 열고 스텝이 끝나면 닫는다. (RemoteChunkingStepBuilder)
+ */
+public interface ChunkChannel extends AutoCloseable {
+
+    String QUEUE = "queue";
+    String SOCKET = "socket";
+
+    MessageChannel getRequestChannel();
+
+    PollableChannel getReplyChannel();
+
+    @Override
+    void close();
+
+    /**
+     * 한 서버에서 매니저와 워커를 같이 실행하는 채널을 만든다.
+     *   queue  : 같은 JVM의 스레드 workers 개가 처리한다. (QueueChunkChannel)
+     *   socket : localhost 소켓으로 워커 서버에 보낸다. (SocketChunkChannel)
+     */
+    static <I> Function<ChunkWorker<I>, ChunkChannel> local(String type, int workers) {
+        if (QUEUE.equalsIgnoreCase(type)) {
+            return worker -> new QueueChunkChannel(worker, workers);
+        }
+        if (SOCKET.equalsIgnoreCase(type)) {
+            return worker -> SocketChunkChannel.local(worker, workers);
+        }
+
+        throw new IllegalArgumentException("지원하지 않는 청크 채널입니다. type : " + type);
+    }
+}
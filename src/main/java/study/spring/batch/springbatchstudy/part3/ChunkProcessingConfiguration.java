@@ -3,6 +3,8 @@ package study.spring.batch.springbatchstudy.part3;
 import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.Step;
@@ -43,22 +45,36 @@ public class ChunkProcessingConfiguration {
         return jobBuilderFactory.get("chunkProcessingJob")
                 .incrementer(new RunIdIncrementer())
                 .start(this.taskBaseStep())
-                .next(chunkBaseStep(null))
+                .next(chunkBaseStep(null, null, null, null))
                 .build();
     }
 
     /**
      * 100개의 데이터를 10개씩 10번
+     * minChunkSize, maxChunkSize를 주면 그 범위 안에서 처리량이 좋아지는 쪽으로 청크 크기를 바꾼다.
+     * targetCommitMillis를 주면 평균 커밋 시간이 그보다 길 때 청크 크기를 줄인다.
      * @return
      */
     @Bean
     @JobScope
-    public Step chunkBaseStep(@Value("#{jobParameters[chunkSize]}") String chunkSize) {
+    public Step chunkBaseStep(@Value("#{jobParameters[chunkSize]}") String chunkSize,
+                              @Value("#{jobParameters[minChunkSize]}") String minChunkSize,
+                              @Value("#{jobParameters[maxChunkSize]}") String maxChunkSize,
+                              @Value("#{jobParameters[targetCommitMillis]}") String targetCommitMillis) {
+        int size = StringUtils.isNotEmpty(chunkSize) ? Integer.parseInt(chunkSize) : 10;
+
+        AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(size,
+                StringUtils.isNotEmpty(minChunkSize) ? Integer.parseInt(minChunkSize) : size,
+                StringUtils.isNotEmpty(maxChunkSize) ? Integer.parseInt(maxChunkSize) : size,
+                StringUtils.isNotEmpty(targetCommitMillis) ? Long.parseLong(targetCommitMillis) : 0L);
+
         return stepBuilderFactory.get("chunkBaseStep")
-                .<String, String>chunk(StringUtils.isNotEmpty(chunkSize) ? Integer.parseInt(chunkSize) : 10)//100개의 데이터를 10개씩 나눈다.
+                .<String, String>chunk(completionPolicy)//100개의 데이터를 10개씩 나눈다.
                 .reader(itemReader())
                 .processor(itemProcessor())
                 .writer(itemWriter())
+                .listener((ItemWriteListener<Object>) completionPolicy)
+                .listener((ChunkListener) completionPolicy)
                 .build();
     }
 
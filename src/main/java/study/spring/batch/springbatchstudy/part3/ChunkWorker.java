@@ -0,0 +1,181 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.ChunkProcessor;
+import org.springframework.batch.core.step.item.FaultTolerantChunkProcessor;
+import org.springframework.batch.core.step.skip.SkipException;
+import org.springframework.batch.core.step.skip.SkipListenerFailedException;
+import org.springframework.batch.core.step.skip.SkipPolicyFailedException;
+import org.springframework.batch.integration.chunk.ChunkRequest;
+import org.springframework.batch.integration.chunk.ChunkResponse;
+import org.springframework.classify.BinaryExceptionClassifier;
+import org.springframework.retry.RetryException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.util.SerializationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 매니저 스텝이 보낸 청크를 processor, writer로 처리하고 결과를 돌려주는 워커이다.
+ * 청크 하나를 ChunkOrientedTasklet처럼 처리한다.
+ *   트랜잭션마다 chunkProcessor.process()를 호출하고, 실패하면 롤백한 다음 같은 Chunk로 다시 호출한다.
+ *   FaultTolerantChunkProcessor는 다시 호출되면 아이템을 하나씩 쓰면서(스캔) skip할 아이템을 찾는다.
+ *   skip 한도를 넘거나 skip할 수 없는 예외가 나면 실패한 ChunkResponse를 돌려주고 매니저 스텝이 실패한다.
+ * 트랜잭션마다 쓰기, 필터, skip 건수를 모아서 돌려주면 매니저 스텝이 StepExecution에 더한다.
+ * skip 한도는 이 워커가 처리한 청크들의 skip 건수로 확인한다. 동시에 처리 중인 청크의 skip은 서로 모르므로 한도를 조금 넘을 수 있다.
+ *
+ * 워커에는 스텝이 없으므로 청크마다 음수 id의 StepExecution을 만들어 StepSynchronizationManager에 등록하고
+ * ChunkListener를 호출한다. DuplicateValidationProcessor는 이 id로 청크가 가져간 key를 기억하고 놓아준다.
+ * 여러 스레드에서 동시에 handle()을 호출해도 된다.
+ */
+@Slf4j
+public class ChunkWorker<I> {
+
+    private static final BinaryExceptionClassifier FATAL_EXCEPTIONS = new BinaryExceptionClassifier(List.of(
+            SkipException.class, SkipListenerFailedException.class, SkipPolicyFailedException.class,
+            RetryException.class, JobInterruptedException.class, Error.class));
+
+    private final ChunkProcessor<I> chunkProcessor;
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionDefinition transactionDefinition;
+    private final boolean faultTolerant;
+    private final AtomicLong chunkIds = new AtomicLong(Long.MIN_VALUE);
+    // 매니저 StepExecution id별로 워커가 skip한 건수, 매니저 스텝이 끝나면 release()로 지운다.
+    private final Map<Long, AtomicInteger> skipCounts = new ConcurrentHashMap<>();
+
+    private List<ChunkListener> listeners = new ArrayList<>();
+    private int retryLimit = 0;
+
+    public ChunkWorker(ChunkProcessor<I> chunkProcessor, PlatformTransactionManager transactionManager,
+                       TransactionDefinition transactionDefinition) {
+        this.chunkProcessor = chunkProcessor;
+        this.transactionManager = transactionManager;
+        this.transactionDefinition = transactionDefinition;
+        this.faultTolerant = chunkProcessor instanceof FaultTolerantChunkProcessor;
+    }
+
+    public void setListeners(List<ChunkListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * 스텝의 retryLimit, 아이템마다 이 횟수만큼 더 실패해도 청크를 다시 처리한다.
+     */
+    public void setRetryLimit(int retryLimit) {
+        this.retryLimit = retryLimit;
+    }
+
+    /**
+     * 매니저 스텝이 끝나면 그 스텝 실행의 skip 건수를 지운다. 채널을 닫아서 처리 중인 청크가 없을 때 호출한다.
+     */
+    public void release(Long managerStepExecutionId) {
+        skipCounts.remove(managerStepExecutionId);
+    }
+
+    /**
+     * 직렬화된 ChunkRequest를 처리하고 직렬화된 ChunkResponse를 돌려준다. 채널은 이 메소드만 사용한다.
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] handle(byte[] request) {
+        return SerializationUtils.serialize(handle((ChunkRequest<I>) SerializationUtils.deserialize(request)));
+    }
+
+    /**
+     * handle(byte[])이 예외를 던지면 채널은 이 메소드로 만든 실패한 ChunkResponse를 대신 보낸다.
+     * 결과를 보내지 않으면 매니저는 청크 결과를 기다리다가 maxWaitTimeouts가 지나서야 실패한다.
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] failure(byte[] request, Throwable e) {
+        ChunkRequest<I> chunkRequest = (ChunkRequest<I>) SerializationUtils.deserialize(request);
+        StepContribution result = chunkRequest.getStepContribution().getStepExecution().createStepContribution();
+        return SerializationUtils.serialize(failure(chunkRequest, result, e));
+    }
+
+    public ChunkResponse handle(ChunkRequest<I> request) {
+        StepExecution managerStepExecution = request.getStepContribution().getStepExecution();
+        StepExecution stepExecution = new StepExecution(managerStepExecution.getStepName(),
+                managerStepExecution.getJobExecution(), chunkIds.getAndIncrement());
+        // skipLimit은 스텝 전체에 적용되므로 매니저가 읽으면서 skip한 건수와 앞 청크들이 skip한 건수를 넣어 둔다.
+        AtomicInteger skipCount = skipCounts.computeIfAbsent(managerStepExecution.getId(), id -> new AtomicInteger());
+        stepExecution.setReadSkipCount(managerStepExecution.getReadSkipCount());
+        stepExecution.setProcessSkipCount(skipCount.get());
+        StepContribution result = stepExecution.createStepContribution();
+        Chunk<I> inputs = new Chunk<>(request.getItems());
+        // 처음 실패하고 나서 아이템마다 retryLimit + 1 번까지 실패할 수 있다.
+        int maxFailures = (inputs.size() + 1) * (retryLimit + 1);
+        int failures = 0;
+
+        ChunkContext chunkContext = new ChunkContext(StepSynchronizationManager.register(stepExecution));
+        try {
+            while (!chunkContext.isComplete()) {
+                StepContribution contribution = stepExecution.createStepContribution();
+                listeners.forEach(listener -> listener.beforeChunk(chunkContext));
+
+                TransactionStatus transaction = transactionManager.getTransaction(transactionDefinition);
+                try {
+                    chunkProcessor.process(contribution, inputs);
+                } catch (Throwable e) {
+                    transactionManager.rollback(transaction);
+                    chunkContext.setAttribute(ChunkListener.ROLLBACK_EXCEPTION_KEY, e);
+                    listeners.forEach(listener -> listener.afterChunkError(chunkContext));
+                    chunkContext.removeAttribute(ChunkListener.ROLLBACK_EXCEPTION_KEY);
+
+                    if (!faultTolerant || FATAL_EXCEPTIONS.classify(e) || ++failures > maxFailures) {
+                        return failure(request, result, e);
+                    }
+                    continue;
+                } finally {
+                    // TaskletStep처럼 롤백되더라도 skip 건수는 더한다.
+                    stepExecution.apply(contribution);
+                    apply(result, contribution);
+                }
+                transactionManager.commit(transaction);
+
+                // 스캔 중이면 아직 처리하지 않은 아이템이 남아 있다.
+                if (!inputs.isBusy()) {
+                    chunkContext.setComplete();
+                }
+                listeners.forEach(listener -> listener.afterChunk(chunkContext));
+            }
+        } catch (RuntimeException e) {
+            return failure(request, result, e);
+        } finally {
+            StepSynchronizationManager.close();
+        }
+
+        skipCount.addAndGet(result.getSkipCount());
+        return new ChunkResponse(request.getSequence(), request.getJobId(), result);
+    }
+
+    private ChunkResponse failure(ChunkRequest<I> request, StepContribution result, Throwable e) {
+        log.warn("청크 처리에 실패했습니다. sequence : {}", request.getSequence(), e);
+        return new ChunkResponse(false, request.getSequence(), request.getJobId(), result,
+                e.getClass().getName() + ": " + e.getMessage());
+    }
+
+    private static void apply(StepContribution result, StepContribution contribution) {
+        result.incrementFilterCount(contribution.getFilterCount());
+        result.incrementWriteCount(contribution.getWriteCount());
+        result.incrementReadSkipCount(contribution.getReadSkipCount());
+        for (int i = 0; i < contribution.getProcessSkipCount(); i++) {
+            result.incrementProcessSkipCount();
+        }
+        for (int i = 0; i < contribution.getWriteSkipCount(); i++) {
+            result.incrementWriteSkipCount();
+        }
+    }
+}
@@ -1,30 +1,90 @@
 package study.spring.batch.springbatchstudy.part3;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.batch.item.ItemReader;
-import org.springframework.batch.item.NonTransientResourceException;
-import org.springframework.batch.item.ParseException;
-import org.springframework.batch.item.UnexpectedInputException;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.util.ClassUtils;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * 리시트를 생성자로 주입을 받았고 엘리먼트를 하나씩제거하고 리턴하는 클래스이다.
- * 만약 없으면 널은 리턴한다 널의 의미는 정크 반복이 끝났다.
+ * 리스트를 생성자로 주입을 받아서 앞에서부터 하나씩 리턴하는 클래스이다.
+ * 만약 없으면 널은 리턴한다 널의 의미는 청크 반복이 끝났다.
+ *
+ * 리스트에서 꺼내지 않고 인덱스(cursor)만 옮기기 때문에 아이템마다 O(1)이고 리스트는 바뀌지 않는다.
+ * cursor는 AtomicInteger라서 멀티 스레드 스텝에서 같이 읽어도 아이템이 한 번씩만 나온다.
+ * 읽은 위치를 ExecutionContext에 저장하므로 같은 리스트로 재시작하면 다음 아이템부터 읽는다.
+ * 멀티 스레드 스텝은 커밋되지 않은 청크의 아이템까지 읽은 것으로 저장되므로 setSaveState(false)로 쓴다.
  */
+public class CustomItemReader<T> extends ItemStreamSupport implements ItemStreamReader<T>, BulkItemReader<T> {
 
-@RequiredArgsConstructor
-public class CustomItemReader<T> implements ItemReader<T> {
+    private static final String READ_COUNT = "read.count";
 
     private final List<T> items;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private boolean saveState = true;
+
+    public CustomItemReader(List<T> items) {
+        this.items = items;
+        setName(ClassUtils.getShortName(CustomItemReader.class));
+    }
+
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
+    }
+
+    @Override
+    public T read() {
+        int index = advance(1);
+        return index < items.size() ? items.get(index) : null;
+    }
+
+    /**
+     * 최대 count 개의 아이템을 리스트 복사 없이 subList 뷰로 돌려준다. 다 읽었으면 빈 리스트를 돌려준다.
+     * 원본 리스트를 바꾸면 뷰도 같이 바뀌므로 원본은 스텝이 끝날 때까지 바꾸지 않아야 한다.
+     */
+    public List<T> read(int count) {
+        int from = advance(count);
+        int to = Math.min(from + count, items.size());
+        return from < to ? items.subList(from, to) : Collections.emptyList();
+    }
 
     @Override
-    public T read() throws Exception, UnexpectedInputException, ParseException, NonTransientResourceException {
-        if (!items.isEmpty()) {
-            return items.remove(0);
+    public List<T> readChunk(int max) {
+        return read(max);
+    }
+
+    private int advance(int count) {
+        int size = items.size();
+
+        while (true) {
+            int current = cursor.get();
+            if (current >= size) {
+                return current;
+            }
+            if (cursor.compareAndSet(current, Math.min(current + count, size))) {
+                return current;
+            }
         }
+    }
 
-        return null;
+    /**
+     * 스텝은 싱글톤이라 같은 리더로 여러 번 실행되므로 저장된 위치가 없으면 처음부터 읽는다.
+     */
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        String key = getExecutionContextKey(READ_COUNT);
+        cursor.set(saveState && executionContext.containsKey(key) ? executionContext.getInt(key) : 0);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (saveState) {
+            executionContext.putInt(getExecutionContextKey(READ_COUNT), cursor.get());
+        }
     }
 }
@@ -0,0 +1,214 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * key를 디스크에 저장하는 open addressing 해시 테이블이다.
+ *   slots 파일 : 슬롯마다 (해시 8바이트, key 위치 + 1 8바이트), 위치가 0이면 빈 슬롯
+ *   keys 파일  : (길이 4바이트, UTF-8 바이트)를 이어서 붙인다.
+ * 해시가 같을 때만 keys 파일에서 key를 읽어 비교한다.
+ * 슬롯이 절반 넘게 차면 두 배 크기의 slots 파일을 새로 만들어 옮긴다. key는 다시 읽지 않는다.
+ */
+class DiskHashIndex implements Closeable {
+
+    private static final int SLOT_SIZE = 16;
+    private static final long INITIAL_CAPACITY = 1 << 16;
+
+    private final Path directory;
+    private final FileChannel keys;
+    private final ByteBuffer slotBuffer = ByteBuffer.allocate(SLOT_SIZE);
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+
+    private FileChannel slots;
+    private Path slotsFile;
+    private long capacity = INITIAL_CAPACITY;
+    private long size;
+    private long keysSize;
+
+    DiskHashIndex(Path directory) {
+        try {
+            this.directory = directory;
+            this.keys = FileChannel.open(directory.resolve("keys"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.slotsFile = directory.resolve("slots-" + capacity);
+            this.slots = openSlots(slotsFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    boolean contains(long hash, String key) {
+        try {
+            return readSlotOffset(findSlot(hash, key.getBytes(StandardCharsets.UTF_8))) != 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 없던 key면 저장하고 true를 돌려준다.
+     */
+    boolean add(long hash, String key) {
+        try {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            long slot = findSlot(hash, bytes);
+
+            if (readSlotOffset(slot) != 0) {
+                return false;
+            }
+
+            long offset = keysSize;
+            ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+            entry.putInt(bytes.length).put(bytes).flip();
+            writeFully(keys, entry, offset);
+            keysSize += entry.capacity();
+
+            writeSlot(slots, slot, hash, offset + 1);
+            size++;
+
+            if (size * 2 > capacity) {
+                resize();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    long diskUsage() {
+        return capacity * SLOT_SIZE + keysSize;
+    }
+
+    @Override
+    public void close() {
+        try {
+            slots.close();
+            keys.close();
+            Files.deleteIfExists(slotsFile);
+            Files.deleteIfExists(directory.resolve("keys"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * key가 있는 슬롯, 없으면 key가 들어갈 빈 슬롯의 번호를 돌려준다.
+     */
+    private long findSlot(long hash, byte[] key) throws IOException {
+        long mask = capacity - 1;
+
+        for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+            readSlot(slots, slot);
+            long slotHash = slotBuffer.getLong(0);
+            long slotOffset = slotBuffer.getLong(Long.BYTES);
+
+            if (slotOffset == 0) {
+                return slot;
+            }
+            if (slotHash == hash && Arrays.equals(readKey(slotOffset - 1), key)) {
+                return slot;
+            }
+        }
+    }
+
+    private long readSlotOffset(long slot) throws IOException {
+        readSlot(slots, slot);
+        return slotBuffer.getLong(Long.BYTES);
+    }
+
+    private void resize() throws IOException {
+        long newCapacity = capacity * 2;
+        Path newSlotsFile = directory.resolve("slots-" + newCapacity);
+        FileChannel newSlots = openSlots(newSlotsFile);
+        long newMask = newCapacity - 1;
+
+        for (long slot = 0; slot < capacity; slot++) {
+            readSlot(slots, slot);
+            long hash = slotBuffer.getLong(0);
+            long offset = slotBuffer.getLong(Long.BYTES);
+
+            if (offset == 0) {
+                continue;
+            }
+
+            long target = hash & newMask;
+            while (true) {
+                readSlot(newSlots, target);
+                if (slotBuffer.getLong(Long.BYTES) == 0) {
+                    break;
+                }
+                target = (target + 1) & newMask;
+            }
+            writeSlot(newSlots, target, hash, offset);
+        }
+
+        slots.close();
+        Files.deleteIfExists(slotsFile);
+        slots = newSlots;
+        slotsFile = newSlotsFile;
+        capacity = newCapacity;
+    }
+
+    /**
+     * 아직 쓰지 않은 파일 끝 너머는 0으로 읽히도록 채운다.
+     */
+    private void readSlot(FileChannel channel, long slot) throws IOException {
+        slotBuffer.clear();
+        long position = slot * SLOT_SIZE;
+
+        while (slotBuffer.hasRemaining()) {
+            int read = channel.read(slotBuffer, position + slotBuffer.position());
+            if (read < 0) {
+                while (slotBuffer.hasRemaining()) {
+                    slotBuffer.put((byte) 0);
+                }
+            }
+        }
+    }
+
+    private void writeSlot(FileChannel channel, long slot, long hash, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+        buffer.putLong(hash).putLong(offset).flip();
+        writeFully(channel, buffer, slot * SLOT_SIZE);
+    }
+
+    private byte[] readKey(long offset) throws IOException {
+        lengthBuffer.clear();
+        readFully(keys, lengthBuffer, offset);
+        ByteBuffer key = ByteBuffer.allocate(lengthBuffer.getInt(0));
+        readFully(keys, key, offset + Integer.BYTES);
+        return key.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("key 파일이 예상보다 짧습니다. position : " + position);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static FileChannel openSlots(Path file) throws IOException {
+        return FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+}
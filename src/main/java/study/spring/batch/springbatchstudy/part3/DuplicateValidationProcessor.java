@@ -1,20 +1,108 @@
 package study.spring.batch.springbatchstudy.part3;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
-public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T> {
+/**
+ * key가 이미 나온 아이템은 null을 돌려서 필터링한다.
+ * 나온 key는 KeyPool에 저장하고, 스텝이 끝나면 사용한 메모리와 오탐률을 StepExecution에 남긴다.
+ *
+ * checkpointDirectory를 주면 청크가 커밋될 때마다 새로 나온 key를 정렬된 파일(KeySegment)로 남기고
+ * 파일 위치를 스텝의 ExecutionContext에 저장한다. 재시작하면 그 파일을 mmap으로 열어서 이전 실행의 key도 중복으로 거른다.
+ * StepExecutionListener로 등록한 스텝이 COMPLETED 되면 파일을 지운다.
+ * 파티션 워커 스텝들이 하나의 프로세서를 같이 쓰면 KeyPool은 공유하고 체크포인트는 StepExecution마다 따로 남긴다.
+ * 재시작하면 COMPLETED 된 워커는 다시 실행되지 않으므로 jobExplorer를 주면 매니저 스텝의 beforeStep에서
+ * 이전 실행의 모든 워커 파일을 열어서 워커가 아이템을 처리하기 전에 모든 파티션의 key를 찾을 수 있게 한다.
+ *
+ * 쓰기가 실패해서 청크가 롤백되면 같은 아이템으로 process()가 다시 호출된다.
+ * 트랜잭션 안에서 아이템이 가져간 key를 기억해 두고, 롤백되면(afterChunkError) 놓아준다.
+ * 다시 처리할 때는 놓아준 key를 처음 오는 아이템이 한 번만 다시 가져가므로 같은 청크에 같은 key가 두 번 있어도 하나만 통과한다.
+ * 커밋되면(afterChunk) 가져간 key는 KeyPool에만 남는다.
+ * 가져간 아이템이 쓰기나 처리 중에 skip되면(SkipListener) key를 놓아주고 체크포인트에서도 빼서 뒤에 나오는 같은 key의 아이템이 통과한다.
+ * 여러 스레드가 동시에 호출해도 같은 key는 한 아이템만 통과한다. (AsyncItemProcessor)
+ *
+ * CompositeItemProcessor 안에 넣으면 스텝이 찾지 못하므로 stream(), listener()로 직접 등록해야 한다.
+ * ChunkListener, SkipListener는 청크 스텝마다, StepExecutionListener는 모든 워커가 끝난 뒤에 KeyPool을 닫도록 매니저 스텝에 등록한다.
+ * AsyncItemProcessor 뒤에서 쓰기 skip된 아이템은 Future로 오므로 결과를 꺼내서 key를 찾는다.
+ */
+@Slf4j
+public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T>, ItemStream, StepExecutionListener, ChunkListener,
+        SkipListener<T, Object> {
 
-    private final Map<String, Object> keyPool = new ConcurrentHashMap<>();
+    public static final String CHECKPOINT_DIRECTORY = "dedup.checkpointDirectory";
+    public static final String CHECKPOINT_SEGMENTS = "dedup.checkpointSegments";
+
+    private static final Long NO_STEP_EXECUTION = -1L;
+
+    public static final String KEY_COUNT = "dedup.keyCount";
+    public static final String MEMORY_USAGE = "dedup.memoryUsage";
+    public static final String FALSE_POSITIVE_RATE = "dedup.falsePositiveRate";
+
+    private final KeyPool keyPool;
     private final Function<T, String> keyExtractor;
     private final boolean allowDuplicate;
+    private final Path checkpointDirectory;
+    private JobExplorer jobExplorer;
+
+    // 이번 실행과 이전 실행의 모든 워커 스텝이 남긴 key 파일, 디렉토리마다 하나씩 둔다.
+    private final Map<Path, KeySnapshotStore> snapshotStores = new ConcurrentHashMap<>();
+    // 파티션으로 실행되면 워커 스텝마다 자기 ExecutionContext에 체크포인트를 남긴다.
+    private final Map<Long, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+    // 아직 커밋되지 않은 트랜잭션에서 아이템이 가져간 key, StepExecution마다 따로 둔다.
+    private final Map<Long, Set<String>> claims = new ConcurrentHashMap<>();
+    // 롤백되어 놓아준 key, 청크를 다시 처리할 때 한 번만 다시 가져갈 수 있다.
+    private final Map<Long, Set<String>> released = new ConcurrentHashMap<>();
+    // 가져간 아이템이 skip되어 놓아준 key, 어느 청크든 같은 key의 다음 아이템이 한 번만 다시 가져갈 수 있다.
+    private final Set<String> skipped = ConcurrentHashMap.newKeySet();
 
     public DuplicateValidationProcessor(Function<T, String> keyExtractor, boolean allowDuplicate) {
+        this(keyExtractor, allowDuplicate, new InMemoryKeyPool(), null);
+    }
+
+    public DuplicateValidationProcessor(Function<T, String> keyExtractor, boolean allowDuplicate, KeyPool keyPool) {
+        this(keyExtractor, allowDuplicate, keyPool, null);
+    }
+
+    public DuplicateValidationProcessor(Function<T, String> keyExtractor, boolean allowDuplicate, KeyPool keyPool,
+                                        Path checkpointDirectory) {
         this.keyExtractor = keyExtractor;
         this.allowDuplicate = allowDuplicate;
+        this.keyPool = keyPool;
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    /**
+     * 재시작할 때 beforeStep에서 이전 실행의 워커 스텝이 남긴 key 파일을 찾는 데 쓴다.
+     */
+    public void setJobExplorer(JobExplorer jobExplorer) {
+        this.jobExplorer = jobExplorer;
     }
 
     @Override
@@ -26,13 +114,267 @@ public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T> {
 
         //item에서 key를 추출한다.
         String key = keyExtractor.apply(item);
+        Long stepExecutionId = currentStepExecutionId();
+        Set<String> chunkClaims = claims.computeIfAbsent(stepExecutionId, id -> ConcurrentHashMap.newKeySet());
+
+        // 롤백된 청크를 다시 처리하는 경우
+        Set<String> releasedKeys = released.get(stepExecutionId);
+        if (releasedKeys != null && releasedKeys.remove(key)) {
+            chunkClaims.add(key);
+            return item;
+        }
+
+        Checkpoint checkpoint = checkpoints.get(stepExecutionId);
 
-        if (keyPool.containsKey(key)) {
+        // 먼저 가져간 아이템이 skip된 경우
+        if (skipped.remove(key)) {
+            chunkClaims.add(key);
+            if (checkpoint != null) {
+                checkpoint.pendingKeys.add(key);
+            }
+            return item;
+        }
+
+        for (KeySnapshotStore snapshotStore : snapshotStores.values()) {
+            if (snapshotStore.containsRestored(key)) {
+                return null;
+            }
+        }
+
+        if (!keyPool.add(key)) {
             return null;
         }
+        chunkClaims.add(key);
 
-        keyPool.put(key, key);
+        if (checkpoint != null) {
+            checkpoint.pendingKeys.add(key);
+        }
 
         return item;
     }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (allowDuplicate || checkpointDirectory == null) {
+            return;
+        }
+
+        KeySnapshotStore snapshotStore;
+
+        if (executionContext.containsKey(CHECKPOINT_DIRECTORY)) {
+            snapshotStore = restore(executionContext);
+        } else {
+            try {
+                Files.createDirectories(checkpointDirectory);
+                snapshotStore = new KeySnapshotStore(Files.createTempDirectory(checkpointDirectory, "dedup-"));
+            } catch (IOException e) {
+                throw new ItemStreamException("중복 체크 key 디렉토리를 만들지 못했습니다. directory : " + checkpointDirectory, e);
+            }
+            snapshotStores.put(snapshotStore.getDirectory(), snapshotStore);
+        }
+
+        checkpoints.put(currentStepExecutionId(), new Checkpoint(snapshotStore));
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        Checkpoint checkpoint = checkpoints.get(currentStepExecutionId());
+        if (checkpoint == null) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(checkpoint.pendingKeys);
+        checkpoint.snapshotStore.checkpoint(keys);
+        checkpoint.pendingKeys.removeAll(keys);
+
+        executionContext.putString(CHECKPOINT_DIRECTORY, checkpoint.snapshotStore.getDirectory().toString());
+        executionContext.putString(CHECKPOINT_SEGMENTS, checkpoint.snapshotStore.segmentNames());
+    }
+
+    /**
+     * 워커 스텝이 COMPLETED 되어도 다른 파티션이 실패하면 재시작할 때 key가 필요하므로 파일은 afterStep에서 지운다.
+     */
+    @Override
+    public void close() throws ItemStreamException {
+        claims.remove(currentStepExecutionId());
+        released.remove(currentStepExecutionId());
+        checkpoints.remove(currentStepExecutionId());
+    }
+
+    /**
+     * 같은 JobInstance의 이전 실행에서 key 파일을 남긴 스텝마다 마지막 StepExecution의 파일을 연다.
+     * 실패한 워커는 재시작하면 open()에서 같은 디렉토리를 받으므로 여기서 연 파일을 이어서 쓴다.
+     */
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (allowDuplicate || checkpointDirectory == null || jobExplorer == null) {
+            return;
+        }
+
+        Map<String, StepExecution> lastStepExecutions = new HashMap<>();
+        for (JobExecution jobExecution : jobExplorer.getJobExecutions(stepExecution.getJobExecution().getJobInstance())) {
+            if (jobExecution.getId().equals(stepExecution.getJobExecutionId())) {
+                continue;
+            }
+
+            for (StepExecution previous : jobExecution.getStepExecutions()) {
+                if (previous.getExecutionContext().containsKey(CHECKPOINT_DIRECTORY)) {
+                    lastStepExecutions.merge(previous.getStepName(), previous,
+                            (a, b) -> a.getId() > b.getId() ? a : b);
+                }
+            }
+        }
+
+        for (StepExecution previous : lastStepExecutions.values()) {
+            restore(previous.getExecutionContext());
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        stepExecution.getExecutionContext().putLong(KEY_COUNT, keyPool.size());
+        stepExecution.getExecutionContext().putLong(MEMORY_USAGE, keyPool.memoryUsage());
+        stepExecution.getExecutionContext().putDouble(FALSE_POSITIVE_RATE, keyPool.falsePositiveRate());
+        log.info("중복 체크 key {}건, 메모리 {}bytes, 오탐률 {}", keyPool.size(), keyPool.memoryUsage(), keyPool.falsePositiveRate());
+
+        keyPool.close();
+
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            snapshotStores.values().forEach(KeySnapshotStore::deleteAll);
+        }
+        snapshotStores.clear();
+        return stepExecution.getExitStatus();
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+
+    }
+
+    /**
+     * 트랜잭션이 커밋된 다음 호출되므로 가져간 key를 확정하고 체크포인트에서 합쳐진 파일을 지운다.
+     * 스캔(아이템 하나씩 다시 쓰기) 중에는 트랜잭션마다 호출되므로 놓아준 key는 청크가 끝났을 때 버린다.
+     */
+    @Override
+    public void afterChunk(ChunkContext context) {
+        Long stepExecutionId = stepExecutionId(context);
+        claims.remove(stepExecutionId);
+
+        Checkpoint checkpoint = checkpoints.get(stepExecutionId);
+        if (checkpoint != null) {
+            checkpoint.snapshotStore.deleteObsolete();
+        }
+
+        if (context.isComplete()) {
+            released.remove(stepExecutionId);
+        }
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        Long stepExecutionId = stepExecutionId(context);
+        Set<String> chunkClaims = claims.remove(stepExecutionId);
+
+        if (chunkClaims != null) {
+            released.computeIfAbsent(stepExecutionId, id -> ConcurrentHashMap.newKeySet()).addAll(chunkClaims);
+        }
+    }
+
+    @Override
+    public void onSkipInRead(Throwable t) {
+
+    }
+
+    /**
+     * 쓰기까지 온 아이템은 process()를 통과했으므로 key를 가져간 아이템이다.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onSkipInWrite(Object item, Throwable t) {
+        if (allowDuplicate) {
+            return;
+        }
+
+        T output;
+        try {
+            output = item instanceof Future ? ((Future<T>) item).get() : (T) item;
+        } catch (Exception e) {
+            // 결과를 꺼내지 못한 Future는 process()에서 예외가 났으므로 가져간 key가 없다.
+            log.debug("skip된 아이템의 key를 찾지 못했습니다.", e);
+            return;
+        }
+
+        if (output != null) {
+            release(keyExtractor.apply(output));
+        }
+    }
+
+    /**
+     * 검증처럼 process() 앞에서 실패한 아이템은 key를 가져가지 않았으므로 이 청크에서 가져간 key일 때만 놓아준다.
+     */
+    @Override
+    public void onSkipInProcess(T item, Throwable t) {
+        if (allowDuplicate) {
+            return;
+        }
+
+        String key = keyExtractor.apply(item);
+        Long stepExecutionId = currentStepExecutionId();
+        Set<String> chunkClaims = claims.get(stepExecutionId);
+        Set<String> releasedKeys = released.get(stepExecutionId);
+
+        if ((chunkClaims != null && chunkClaims.contains(key)) || (releasedKeys != null && releasedKeys.contains(key))) {
+            release(key);
+        }
+    }
+
+    private void release(String key) {
+        Long stepExecutionId = currentStepExecutionId();
+        Set<String> chunkClaims = claims.get(stepExecutionId);
+        Set<String> releasedKeys = released.get(stepExecutionId);
+        if (chunkClaims != null) {
+            chunkClaims.remove(key);
+        }
+        if (releasedKeys != null) {
+            releasedKeys.remove(key);
+        }
+
+        Checkpoint checkpoint = checkpoints.get(stepExecutionId);
+        if (checkpoint != null) {
+            checkpoint.pendingKeys.remove(key);
+        }
+        skipped.add(key);
+    }
+
+    private KeySnapshotStore restore(ExecutionContext executionContext) {
+        return snapshotStores.computeIfAbsent(Paths.get(executionContext.getString(CHECKPOINT_DIRECTORY)), directory -> {
+            KeySnapshotStore snapshotStore = new KeySnapshotStore(directory);
+            snapshotStore.restore(executionContext.getString(CHECKPOINT_SEGMENTS, ""));
+            return snapshotStore;
+        });
+    }
+
+    private static Long stepExecutionId(ChunkContext context) {
+        Long id = context.getStepContext().getStepExecution().getId();
+        return id != null ? id : NO_STEP_EXECUTION;
+    }
+
+    private static Long currentStepExecutionId() {
+        StepContext stepContext = StepSynchronizationManager.getContext();
+
+        if (stepContext == null || stepContext.getStepExecution().getId() == null) {
+            return NO_STEP_EXECUTION;
+        }
+        return stepContext.getStepExecution().getId();
+    }
+
+    private static class Checkpoint {
+        private final KeySnapshotStore snapshotStore;
+        // 마지막 체크포인트 이후에 새로 나온 key
+        private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+        private Checkpoint(KeySnapshotStore snapshotStore) {
+            this.snapshotStore = snapshotStore;
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 파일을 gridSize 개의 바이트 구간으로 나누어 파티션마다 ExecutionContext에 startOffset, endOffset을 담는다.
+ * 구간 경계는 레코드가 시작하는 위치로 맞추므로 한 레코드가 두 파티션에 나뉘지 않는다.
+ *   "로 감싼 필드 안의 줄바꿈은 레코드 경계로 보지 않는다. (MappedCsvItemReader가 다음 줄까지 한 레코드로 읽는다)
+ *   " 안인지 알려면 앞에서부터 세야 하므로 경계를 찾을 때 파일을 처음부터 끝까지 한 번 읽는다.
+ * 앞의 linesToSkip 줄(헤더)은 첫 파티션에 포함하지 않는다.
+ * 워커 스텝의 리더(ByteRangeLineItemReader)는 startOffset부터 읽고 endOffset 전에 시작하는 줄까지만 읽는다.
+ */
+@RequiredArgsConstructor
+public class FileRangePartitioner implements Partitioner {
+
+    public static final String START_OFFSET = "startOffset";
+    public static final String END_OFFSET = "endOffset";
+
+    private static final byte QUOTE = '"';
+
+    private final Resource resource;
+    private final int linesToSkip;
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> result = new HashMap<>();
+
+        try (FileChannel channel = FileChannel.open(filePath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+
+            for (int i = 0; i < linesToSkip; i++) {
+                start = nextRecordStart(channel, start, start);
+            }
+
+            long targetSize = (size - start) / gridSize + 1;
+            int number = 0;
+
+            while (start < size) {
+                long end = nextRecordStart(channel, start, Math.min(start + targetSize, size) - 1);
+
+                ExecutionContext executionContext = new ExecutionContext();
+                executionContext.putLong(START_OFFSET, start);
+                executionContext.putLong(END_OFFSET, end);
+                result.put("partition" + number, executionContext);
+
+                start = end;
+                number++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return result;
+    }
+
+    private Path filePath() throws IOException {
+        Assert.state(resource.isFile(), "파일 시스템의 파일만 나눌 수 있습니다. resource : " + resource);
+        return resource.getFile().toPath();
+    }
+
+    /**
+     * 레코드가 시작하는 위치(recordStart)부터 "의 짝을 세면서 읽고,
+     * position 이후 " 밖에서 처음 나오는 줄바꿈 다음 위치, 없으면 파일 끝을 돌려준다.
+     */
+    static long nextRecordStart(FileChannel channel, long recordStart, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long offset = recordStart;
+        boolean quoted = false;
+
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                return channel.size();
+            }
+
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == QUOTE) {
+                    quoted = !quoted;
+                } else if (!quoted && b == '\n' && offset + i >= position) {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+    }
+}
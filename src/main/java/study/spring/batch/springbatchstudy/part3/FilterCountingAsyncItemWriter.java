@@ -0,0 +1,76 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.integration.async.AsyncItemWriter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * AsyncItemProcessor는 걸러낸 아이템도 결과가 null인 Future로 돌려주므로 스텝은 filterCount가 아니라 writeCount로 센다.
+ * 쓰고 나서 결과가 null인 Future 개수를 세어 두었다가 트랜잭션이 커밋되면(afterChunk) writeCount에서 빼고 filterCount에 더한다.
+ * 롤백되면(afterChunkError) 센 개수를 버린다. 바뀐 건수는 다음 청크나 스텝이 끝날 때 DB에 저장된다.
+ * 스텝에 ChunkListener로 등록해야 한다. 파티션 워커 스텝들이 같이 쓰면 StepExecution마다 따로 센다.
+ */
+public class FilterCountingAsyncItemWriter<T> extends AsyncItemWriter<T> implements ChunkListener {
+
+    private static final Long NO_STEP_EXECUTION = -1L;
+
+    private final Map<Long, Integer> filtered = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(List<? extends Future<T>> items) throws Exception {
+        // 예외는 AsyncItemWriter가 Future에서 꺼내서 던지므로 쓰기가 성공한 다음에 센다.
+        super.write(items);
+
+        int count = 0;
+        for (Future<T> item : items) {
+            if (item.get() == null) {
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            filtered.merge(currentStepExecutionId(), count, Integer::sum);
+        }
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        filtered.remove(stepExecutionId(context.getStepContext()));
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        Integer count = filtered.remove(stepExecutionId(context.getStepContext()));
+        if (count == null) {
+            return;
+        }
+
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        stepExecution.setWriteCount(stepExecution.getWriteCount() - count);
+        stepExecution.setFilterCount(stepExecution.getFilterCount() + count);
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        filtered.remove(stepExecutionId(context.getStepContext()));
+    }
+
+    private static Long currentStepExecutionId() {
+        return stepExecutionId(StepSynchronizationManager.getContext());
+    }
+
+    private static Long stepExecutionId(StepContext stepContext) {
+        if (stepContext == null || stepContext.getStepExecution().getId() == null) {
+            return NO_STEP_EXECUTION;
+        }
+        return stepContext.getStepExecution().getId();
+    }
+}
@@ -0,0 +1,51 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 모든 key를 heap의 Set에 그대로 저장한다. key 개수가 heap에 들어갈 때만 사용한다.
+ */
+public class InMemoryKeyPool implements KeyPool {
+
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    private final AtomicLong memoryUsage = new AtomicLong();
+
+    @Override
+    public boolean add(String key) {
+        if (!keys.add(key)) {
+            return false;
+        }
+
+        memoryUsage.addAndGet(estimateSize(key));
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return keys.size();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return memoryUsage.get();
+    }
+
+    @Override
+    public double falsePositiveRate() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        keys.clear();
+    }
+
+    /**
+     * String(24) + byte[](16 + 길이) + 해시 테이블 노드와 참조(40) 바이트로 어림한다.
+     */
+    static long estimateSize(String key) {
+        return 80L + key.length();
+    }
+}
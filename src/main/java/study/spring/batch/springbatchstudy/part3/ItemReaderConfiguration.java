@@ -53,15 +53,22 @@ public class ItemReaderConfiguration {
                 .next(this.jdbcCursorItemReaderStep())
                 .next(this.jdbcPagingItemReaderStep())
                 .next(this.jpaCursorItemReaderStep())
+                .next(this.jpaKeysetPagingItemReaderStep())
+                .next(this.statelessCursorItemReaderStep())
+                .next(this.jpqlProjectionItemReaderStep())
+                .next(this.jdbcProjectionItemReaderStep())
                 .build();
     }
 
+    /**
+     * CustomItemReader, JpaKeysetPagingItemReader는 BulkItemReader라서 BulkReadStepBuilder로 청크 단위로 읽는다.
+     */
     @Bean
     public Step customItemReaderStep() {
-        return stepBuilderFactory.get("customItemReaderStep")
+        return new BulkReadStepBuilder<>(stepBuilderFactory.get("customItemReaderStep")
                 .<Person, Person>chunk(10)
                 .reader(new CustomItemReader<>(getItems()))
-                .writer(itemWriter())
+                .writer(itemWriter()))
                 .build();
     }
 
@@ -110,6 +117,62 @@ public class ItemReaderConfiguration {
                 .writer(itemWriter())
                 .build();
     }
+
+    @Bean
+    public Step jpaKeysetPagingItemReaderStep() {
+        return new BulkReadStepBuilder<>(stepBuilderFactory.get("jpaKeysetPagingItemReaderStep")
+                .<Person, Person>chunk(chunkSize)
+                .reader(jpaKeysetPagingItemReader())
+                .writer(itemWriter()))
+                .build();
+    }
+
+    /**
+     * jpaCursorItemReaderStep과 같이 전부 읽지만 StatelessSession으로 읽어서 엔티티가 영속성 컨텍스트에 쌓이지 않는다.
+     */
+    @Bean
+    public Step statelessCursorItemReaderStep() {
+        return new BulkReadStepBuilder<>(stepBuilderFactory.get("statelessCursorItemReaderStep")
+                .<Person, Person>chunk(chunkSize)
+                .reader(statelessCursorItemReader())
+                .writer(itemWriter()))
+                .build();
+    }
+
+    /**
+     * 로그만 남기는 스텝이라 엔티티 대신 PersonDto로 읽는다.
+     */
+    @Bean
+    public Step jpqlProjectionItemReaderStep() throws Exception {
+        return stepBuilderFactory.get("jpqlProjectionItemReaderStep")
+                .<PersonDto, PersonDto>chunk(chunkSize)
+                .reader(new ProjectionItemReaderBuilder<>(PersonDto.class)
+                        .name("jpqlProjectionItemReader")
+                        .select("p.id", "p.name", "p.age", "p.address")
+                        .from("Person p")
+                        .orderBy("p.id")
+                        .buildJpa(entityManagerFactory))
+                .writer(itemWriter())
+                .build();
+    }
+
+    @Bean
+    public Step jdbcProjectionItemReaderStep() throws Exception {
+        return stepBuilderFactory.get("jdbcProjectionItemReaderStep")
+                .<PersonDto, PersonDto>chunk(chunkSize)
+                .reader(new ProjectionItemReaderBuilder<>(PersonDto.class)
+                        .name("jdbcProjectionItemReader")
+                        .select(PersonDto.COLUMNS)
+                        .from("person")
+                        .where("age >= :age")
+                        .parameterValues(Map.of("age", 20))
+                        .fetchSize(chunkSize)
+                        .rowMapper(PersonDto::mapRow)
+                        .buildJdbc(dataSource))
+                .writer(itemWriter())
+                .build();
+    }
+
     private JpaCursorItemReader<Person> jpaCursorItemReader() throws Exception {
         JpaCursorItemReader<Person> itemReader = new JpaCursorItemReaderBuilder<Person>()
                 .name("jpaCursorItemReader")
@@ -130,6 +193,33 @@ public class ItemReaderConfiguration {
                 .build();
     }
 
+    /**
+     * jpaPagingItemReader와 같은 조건이지만 OFFSET 대신 마지막으로 읽은 id 다음부터 읽는다.
+     */
+    @Bean
+    public JpaKeysetPagingItemReader<Person> jpaKeysetPagingItemReader() {
+        JpaKeysetPagingItemReader<Person> itemReader = new JpaKeysetPagingItemReader<>(
+                "jpaKeysetPagingItemReader",
+                entityManagerFactory,
+                "select p from Person p where p.id > :lastKey and p.age >= 20 order by p.id",
+                Person::getId,
+                Integer.MIN_VALUE);
+        itemReader.setPageSize(chunkSize);
+        return itemReader;
+    }
+
+    @Bean
+    public StatelessCursorItemReader<Person> statelessCursorItemReader() {
+        StatelessCursorItemReader<Person> itemReader = new StatelessCursorItemReader<>(
+                "statelessCursorItemReader",
+                entityManagerFactory,
+                "select p from Person p where p.id > :lastKey order by p.id",
+                Person::getId,
+                Integer.MIN_VALUE);
+        itemReader.setFetchSize(chunkSize);
+        return itemReader;
+    }
+
     private JdbcCursorItemReader<Person> jdbcCursorItemReader() throws Exception {
         JdbcCursorItemReader<Person> itemReader = new JdbcCursorItemReaderBuilder<Person>()
                 .name("jdbcCursorItemReader")
@@ -202,8 +292,8 @@ public class ItemReaderConfiguration {
 
         return itemReader;
     }
-    private ItemWriter<? super Person> itemWriter() {
-        return items -> log.info(items.stream().map(Person::getName).collect(Collectors.joining(", ")));
+    private ItemWriter<PersonFields> itemWriter() {
+        return items -> log.info(items.stream().map(PersonFields::getName).collect(Collectors.joining(", ")));
     }
 
 
@@ -1,12 +1,15 @@
 package study.spring.batch.springbatchstudy.part3;
 
+import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourceProvider;
@@ -16,8 +19,8 @@ import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilde
 import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
 import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.FileSystemResource;
@@ -44,7 +47,7 @@ public class ItemWriterConfiguration {
                 .incrementer(new RunIdIncrementer())
                 .start(this.csvItemWriterStep())
 //                .next(this.jdbcBatchItemWriterStep())
-                .next(this.jpaItemWriterStep())
+                .next(this.jpaItemWriterStep(null, null, null))
                 .build();
     }
 
@@ -66,12 +69,28 @@ public class ItemWriterConfiguration {
                 .build();
     }
 
+    /**
+     * remoteChunking : queue 또는 socket이면 스텝은 읽기만 하고 JpaItemWriter는 워커가 실행한다. (RemoteChunkingStepBuilder)
+     *   remoteWorkers : 청크를 동시에 쓸 워커 스레드 개수 (기본 코어 수)
+     *   chunksAhead   : 결과를 받지 못한 채로 보낼 수 있는 청크 개수 (기본 4)
+     */
     @Bean
-    public Step jpaItemWriterStep() throws Exception {
-        return stepBuilderFactory.get("jpaItemWriterStep")
+    @JobScope
+    public Step jpaItemWriterStep(@Value("#{jobParameters[remoteChunking]}") String remoteChunking,
+                                  @Value("#{jobParameters[remoteWorkers]}") String remoteWorkers,
+                                  @Value("#{jobParameters[chunksAhead]}") String chunksAhead) throws Exception {
+        SimpleStepBuilder<Person, Person> stepBuilder = stepBuilderFactory.get("jpaItemWriterStep")
                 .<Person, Person>chunk(10)
                 .reader(itemReader())
-                .writer(jpaItemWriter())
+                .writer(jpaItemWriter());
+
+        if (StringUtils.isEmpty(remoteChunking)) {
+            return stepBuilder.build();
+        }
+
+        return new RemoteChunkingStepBuilder<>(stepBuilder, ChunkChannel.<Person>local(remoteChunking,
+                StringUtils.isNotEmpty(remoteWorkers) ? Integer.parseInt(remoteWorkers) : Runtime.getRuntime().availableProcessors()))
+                .chunksAhead(StringUtils.isNotEmpty(chunksAhead) ? Integer.parseInt(chunksAhead) : 4)
                 .build();
     }
 
@@ -95,15 +114,15 @@ public class ItemWriterConfiguration {
         return itemWriter;
     }
 
-    private ItemWriter<Person> csvFileItemWriter() throws Exception {
-        BeanWrapperFieldExtractor<Person> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[] {"id", "name", "age", "address"});
-
-        DelimitedLineAggregator<Person> lineAggregator = new DelimitedLineAggregator<>();
+    /**
+     * PersonFields로 받아서 Person 엔티티와 PersonDto를 모두 쓸 수 있다.
+     */
+    private ItemWriter<PersonFields> csvFileItemWriter() throws Exception {
+        DelimitedLineAggregator<PersonFields> lineAggregator = new DelimitedLineAggregator<>();
         lineAggregator.setDelimiter(",");
-        lineAggregator.setFieldExtractor(fieldExtractor);
+        lineAggregator.setFieldExtractor(PersonFields.fieldExtractor());
 
-        FlatFileItemWriter<Person> itemWriter = new FlatFileItemWriterBuilder<Person>()
+        FlatFileItemWriter<PersonFields> itemWriter = new FlatFileItemWriterBuilder<PersonFields>()
                 .name("csvFileItemWriter")
                 .encoding("UTF-8")
                 .resource(new FileSystemResource("output/test-output.csv"))
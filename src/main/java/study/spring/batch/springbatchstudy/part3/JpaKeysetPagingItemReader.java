@@ -0,0 +1,165 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * OFFSET 대신 마지막으로 읽은 키 다음부터 pageSize 만큼 읽는 JPA 페이징 리더이다.
+ * 쿼리에는 :lastKey 조건과 키 정렬이 들어가야 한다.
+ *   ex) select p from Person p where p.id > :lastKey order by p.id
+ *
+ * 몇 번째 페이지든 인덱스로 바로 찾아가기 때문에 페이지 비용이 일정하고,
+ * 같은 스텝에서 읽은 데이터를 수정해도 페이지 경계가 밀리지 않는다.
+ * 마지막으로 넘겨준 아이템의 키를 ExecutionContext에 저장하므로 재시작하면 그 다음 키부터 읽는다.
+ * readChunk()는 읽어 둔 페이지에서 남은 부분을 subList로 그대로 넘긴다.
+ */
+public class JpaKeysetPagingItemReader<T> extends AbstractBulkItemCountingItemReader<T> {
+
+    private static final String LAST_KEY = "last.key";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final String queryString;
+    private final Function<T, Object> keyExtractor;
+    private final Object startKey;
+
+    private Map<String, Object> parameterValues = new HashMap<>();
+    // 청크 크기에 맞춰 다른 스레드에서 바꿀 수 있고 다음 페이지부터 적용된다.
+    private volatile int pageSize = 10;
+
+    private EntityManager entityManager;
+    private List<T> results = Collections.emptyList();
+    private int current;
+    private boolean lastPage;
+    private Object lastKey;
+
+    /**
+     * @param keyExtractor 아이템에서 정렬 키(id)를 꺼내는 함수
+     * @param startKey     처음 읽을 때 :lastKey에 들어갈 값, 키 타입과 같은 타입이어야 한다.
+     */
+    public JpaKeysetPagingItemReader(String name, EntityManagerFactory entityManagerFactory, String queryString,
+                                     Function<T, Object> keyExtractor, Object startKey) {
+        setName(name);
+        this.entityManagerFactory = entityManagerFactory;
+        this.queryString = queryString;
+        this.keyExtractor = keyExtractor;
+        this.startKey = startKey;
+    }
+
+    public void setParameterValues(Map<String, Object> parameterValues) {
+        this.parameterValues = parameterValues;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        if (current >= results.size()) {
+            if (lastPage) {
+                return null;
+            }
+
+            readPage();
+
+            if (results.isEmpty()) {
+                return null;
+            }
+        }
+
+        T item = results.get(current++);
+        lastKey = keyExtractor.apply(item);
+
+        return item;
+    }
+
+    @Override
+    public List<T> readChunk(int max) throws Exception {
+        if (current >= results.size()) {
+            if (lastPage) {
+                return Collections.emptyList();
+            }
+
+            readPage();
+        }
+
+        int count = Math.min(Math.min(max, results.size() - current), remainingItemCount());
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<T> page = results.subList(current, current + count);
+        current += count;
+        lastKey = keyExtractor.apply(page.get(count - 1));
+        setCurrentItemCount(getCurrentItemCount() + count);
+
+        return page;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readPage() {
+        // 이전 페이지 엔티티가 영속성 컨텍스트에 계속 쌓이지 않도록 비운다.
+        entityManager.clear();
+
+        Query query = entityManager.createQuery(queryString)
+                .setParameter("lastKey", lastKey)
+                .setMaxResults(pageSize);
+        parameterValues.forEach(query::setParameter);
+
+        results = query.getResultList();
+        current = 0;
+        lastPage = results.size() < pageSize;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        entityManager = entityManagerFactory.createEntityManager();
+        results = Collections.emptyList();
+        current = 0;
+        lastPage = false;
+        lastKey = startKey;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        super.open(executionContext);
+
+        String key = getExecutionContextKey(LAST_KEY);
+        if (isSaveState() && executionContext.containsKey(key)) {
+            lastKey = executionContext.get(key);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.put(getExecutionContextKey(LAST_KEY), lastKey);
+        }
+    }
+
+    /**
+     * 재시작 위치는 open()에서 lastKey로 복원하므로 앞에서부터 다시 읽어서 건너뛰지 않는다.
+     */
+    @Override
+    protected void jumpToItem(int itemIndex) {
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (entityManager != null) {
+            entityManager.close();
+        }
+        results = Collections.emptyList();
+    }
+}
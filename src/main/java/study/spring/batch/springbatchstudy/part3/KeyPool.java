@@ -0,0 +1,27 @@
+package study.spring.batch.springbatchstudy.part3;
+
+/**
+ * DuplicateValidationProcessor가 이미 나온 key를 기억하는 저장소이다.
+ */
+public interface KeyPool extends AutoCloseable {
+
+    /**
+     * 처음 보는 key면 저장하고 true, 이미 있던 key면 false를 돌려준다.
+     */
+    boolean add(String key);
+
+    long size();
+
+    /**
+     * key를 기억하는 데 쓰고 있는 메모리(heap + off-heap) 바이트 수, 디스크로 내보낸 것은 포함하지 않는다.
+     */
+    long memoryUsage();
+
+    /**
+     * 새 key인데 이미 있을 수도 있다고 판단한 비율, 정확한 구현은 0이다.
+     */
+    double falsePositiveRate();
+
+    @Override
+    void close();
+}
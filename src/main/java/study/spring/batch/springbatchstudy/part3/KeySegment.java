@@ -0,0 +1,285 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 정렬된 key(UTF-8 바이트)를 앞부분 공유(front coding)로 줄여 저장한 읽기 전용 파일이다.
+ *   block  : key 16개마다 하나, 첫 key는 전체를 저장하고 나머지는 (앞 key와 같은 바이트 수, 나머지 길이, 나머지 바이트)
+ *   index  : block 시작 위치(long) 목록
+ *   footer : index 위치(long), block 수(int), key 수(long), MAGIC(int)
+ * 파일은 mmap으로 열고, block 첫 key로 이진 탐색한 다음 block 하나만 풀어서 찾는다.
+ */
+class KeySegment {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int MAGIC = 0x4b455953;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final long[] blockOffsets;
+    private final long keyCount;
+
+    private KeySegment(Path file, MappedByteBuffer buffer, long[] blockOffsets, long keyCount) {
+        this.file = file;
+        this.buffer = buffer;
+        this.blockOffsets = blockOffsets;
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * sortedKeys는 Arrays.compareUnsigned 순서로 정렬되어 있고 중복이 없어야 한다.
+     */
+    static KeySegment write(Path file, Iterator<byte[]> sortedKeys) {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            List<Long> blockOffsets = new ArrayList<>();
+            byte[] previous = null;
+            long keyCount = 0;
+
+            while (sortedKeys.hasNext()) {
+                byte[] key = sortedKeys.next();
+                int shared = 0;
+
+                if (keyCount % BLOCK_SIZE == 0) {
+                    blockOffsets.add(out.position);
+                } else {
+                    int max = Math.min(previous.length, key.length);
+                    while (shared < max && previous[shared] == key[shared]) {
+                        shared++;
+                    }
+                }
+
+                writeVarInt(out, shared);
+                writeVarInt(out, key.length - shared);
+                out.write(key, shared, key.length - shared);
+
+                previous = key;
+                keyCount++;
+            }
+
+            long indexOffset = out.position;
+            ByteBuffer tail = ByteBuffer.allocate(blockOffsets.size() * Long.BYTES + FOOTER_SIZE);
+            for (Long blockOffset : blockOffsets) {
+                tail.putLong(blockOffset);
+            }
+            tail.putLong(indexOffset).putInt(blockOffsets.size()).putLong(keyCount).putInt(MAGIC);
+            out.write(tail.array());
+
+            // ExecutionContext에 파일 이름이 저장되기 전에 디스크에 내려간 것을 보장한다.
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return open(file);
+    }
+
+    static KeySegment open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("2GB가 넘는 key 파일은 열 수 없습니다. file : " + file);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int footer = buffer.limit() - FOOTER_SIZE;
+
+            if (footer < 0 || buffer.getInt(footer + Long.BYTES + Integer.BYTES + Long.BYTES) != MAGIC) {
+                throw new IllegalStateException("key 파일 형식이 아닙니다. file : " + file);
+            }
+
+            int indexOffset = (int) buffer.getLong(footer);
+            int blockCount = buffer.getInt(footer + Long.BYTES);
+            long keyCount = buffer.getLong(footer + Long.BYTES + Integer.BYTES);
+
+            long[] blockOffsets = new long[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = buffer.getLong(indexOffset + i * Long.BYTES);
+            }
+
+            return new KeySegment(file, buffer, blockOffsets, keyCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    boolean contains(byte[] key) {
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        int block = -1;
+
+        // 첫 key가 key보다 작거나 같은 마지막 block을 찾는다.
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = Arrays.compareUnsigned(firstKey(mid), key);
+
+            if (compare == 0) {
+                return true;
+            }
+            if (compare < 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (block < 0) {
+            return false;
+        }
+
+        BlockCursor cursor = new BlockCursor(block);
+        while (cursor.hasNext()) {
+            int compare = Arrays.compareUnsigned(cursor.next(), key);
+            if (compare == 0) {
+                return true;
+            }
+            if (compare > 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 저장된 순서(정렬 순서)대로 모든 key를 돌려준다. 세그먼트를 합칠 때 사용한다.
+     */
+    Iterator<byte[]> iterator() {
+        return new Iterator<byte[]>() {
+            private int block;
+            private BlockCursor cursor;
+
+            @Override
+            public boolean hasNext() {
+                while (cursor == null || !cursor.hasNext()) {
+                    if (block >= blockOffsets.length) {
+                        return false;
+                    }
+                    cursor = new BlockCursor(block++);
+                }
+                return true;
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cursor.next();
+            }
+        };
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getKeyCount() {
+        return keyCount;
+    }
+
+    long byteSize() {
+        return buffer.capacity();
+    }
+
+    private byte[] firstKey(int block) {
+        return new BlockCursor(block).next();
+    }
+
+    /**
+     * block 하나의 key를 앞에서부터 푼다.
+     */
+    private class BlockCursor {
+        private int position;
+        private final int end;
+        private byte[] previous = new byte[0];
+
+        private BlockCursor(int block) {
+            this.position = (int) blockOffsets[block];
+            this.end = block + 1 < blockOffsets.length
+                    ? (int) blockOffsets[block + 1]
+                    : buffer.limit() - FOOTER_SIZE - blockOffsets.length * Long.BYTES;
+        }
+
+        boolean hasNext() {
+            return position < end;
+        }
+
+        byte[] next() {
+            int shared = readVarInt();
+            int suffixLength = readVarInt();
+            byte[] key = Arrays.copyOf(previous, shared + suffixLength);
+
+            for (int i = 0; i < suffixLength; i++) {
+                key[shared + i] = buffer.get(position++);
+            }
+
+            previous = key;
+            return key;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            return value;
+        }
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private long position;
+
+        private CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            position += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
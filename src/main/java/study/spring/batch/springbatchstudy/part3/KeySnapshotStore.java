@@ -0,0 +1,234 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * 청크가 끝날 때마다 새로 나온 key를 정렬해서 KeySegment 파일 하나로 쓴다.
+ * 마지막 세그먼트가 바로 앞 세그먼트보다 key가 많아지면 LSM 트리처럼 둘을 합친다.
+ * 세그먼트 크기가 뒤로 갈수록 절반씩 줄어들므로 세그먼트 수는 log(key 수)로 유지되고, key 하나가 다시 쓰이는 횟수도 log로 제한된다.
+ * 합치기 전 파일은 바로 지우지 않고 합친 결과를 기록한 청크가 커밋된 다음 deleteObsolete()로 지운다.
+ * 그 전에 청크가 롤백되면 DB의 ExecutionContext는 아직 이전 파일을 가리키기 때문이다.
+ *
+ * 재시작하면 ExecutionContext에 남은 세그먼트를 mmap으로 열어서 이전 실행의 key를 조회한다.
+ * 입력을 다시 읽지 않으므로 key 개수와 상관없이 파일을 여는 시간만 걸린다.
+ */
+@Slf4j
+class KeySnapshotStore {
+
+    private static final long MAX_COMPACTED_SIZE = 1L << 30;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".keys";
+
+    private final Path directory;
+    private final List<KeySegment> segments = new ArrayList<>();
+    // 다른 워커 스레드가 조회하는 동안 합쳐질 수 있다.
+    private final List<KeySegment> restored = new CopyOnWriteArrayList<>();
+    private final List<Path> obsolete = new ArrayList<>();
+    private long sequence;
+
+    KeySnapshotStore(Path directory) {
+        this.directory = directory;
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * segmentNames는 segmentNames()가 돌려준 값이다.
+     */
+    void restore(String segmentNames) {
+        for (String name : segmentNames.split(",")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            KeySegment segment = KeySegment.open(directory.resolve(name));
+            segments.add(segment);
+            restored.add(segment);
+            sequence = Math.max(sequence, sequenceOf(name));
+        }
+
+        log.info("중복 체크 key 세그먼트 {}개, key {}건을 복구했습니다.",
+                restored.size(), restored.stream().mapToLong(KeySegment::getKeyCount).sum());
+    }
+
+    /**
+     * 이전 실행에서 저장한 key인지 확인한다. 이번 실행의 key는 KeyPool에 있으므로 보지 않는다.
+     */
+    boolean containsRestored(String key) {
+        if (restored.isEmpty()) {
+            return false;
+        }
+
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        for (KeySegment segment : restored) {
+            if (segment.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void checkpoint(Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            List<byte[]> sortedKeys = keys.stream()
+                    .map(key -> key.getBytes(StandardCharsets.UTF_8))
+                    .sorted(Arrays::compareUnsigned)
+                    .collect(Collectors.toList());
+
+            segments.add(KeySegment.write(nextFile(), sortedKeys.iterator()));
+        }
+
+        while (segments.size() >= 2) {
+            KeySegment previous = segments.get(segments.size() - 2);
+            KeySegment last = segments.get(segments.size() - 1);
+
+            if (previous.getKeyCount() > last.getKeyCount()
+                    || previous.byteSize() + last.byteSize() > MAX_COMPACTED_SIZE) {
+                break;
+            }
+            compact(previous, last);
+        }
+    }
+
+    String segmentNames() {
+        return segments.stream()
+                .map(segment -> segment.getFile().getFileName().toString())
+                .collect(Collectors.joining(","));
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 스텝이 COMPLETED 되어 더 이상 재시작하지 않을 때 호출한다.
+     */
+    void deleteAll() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("중복 체크 key 파일을 지우지 못했습니다. directory : {}", directory, e);
+        }
+
+        segments.clear();
+        restored.clear();
+        obsolete.clear();
+    }
+
+    private void compact(KeySegment previous, KeySegment last) {
+        KeySegment merged = KeySegment.write(nextFile(), new MergingIterator(Arrays.asList(previous, last)));
+        log.debug("중복 체크 key 세그먼트 2개를 {}건으로 합쳤습니다.", merged.getKeyCount());
+
+        segments.remove(last);
+        segments.remove(previous);
+        segments.add(merged);
+        obsolete.add(previous.getFile());
+        obsolete.add(last.getFile());
+
+        // 이전 실행의 세그먼트를 합쳤으면 조회 대상도 합친 세그먼트로 바꾼다.
+        boolean restoredMerged = restored.remove(previous) | restored.remove(last);
+        if (restoredMerged) {
+            restored.add(merged);
+        }
+    }
+
+    /**
+     * checkpoint()의 segmentNames()가 저장된 청크가 커밋된 다음에 호출한다.
+     */
+    void deleteObsolete() {
+        for (Path file : obsolete) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("합쳐진 key 파일을 지우지 못했습니다. file : {}", file, e);
+            }
+        }
+        obsolete.clear();
+    }
+
+    private Path nextFile() {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, ++sequence, SUFFIX));
+    }
+
+    private static long sequenceOf(String name) {
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * 정렬된 세그먼트 여러 개를 정렬 순서를 유지하면서 하나로 합친다. 같은 key는 한 번만 돌려준다.
+     */
+    private static class MergingIterator implements Iterator<byte[]> {
+
+        private final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.key, b.key));
+        private byte[] last;
+
+        private MergingIterator(List<KeySegment> segments) {
+            for (KeySegment segment : segments) {
+                Iterator<byte[]> iterator = segment.iterator();
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator.next(), iterator));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!heads.isEmpty() && last != null && Arrays.equals(heads.peek().key, last)) {
+                advance();
+            }
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = advance();
+            return last;
+        }
+
+        private byte[] advance() {
+            Head head = heads.poll();
+            byte[] key = head.key;
+
+            if (head.iterator.hasNext()) {
+                heads.add(new Head(head.iterator.next(), head.iterator));
+            }
+            return key;
+        }
+    }
+
+    private static class Head {
+        private final byte[] key;
+        private final Iterator<byte[]> iterator;
+
+        private Head(byte[] key, Iterator<byte[]> iterator) {
+            this.key = key;
+            this.iterator = iterator;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * csv 파일을 mmap으로 열고 바이트에서 바로 구분자를 찾아 읽는 리더이다.
+ * FlatFileItemReader + DefaultLineMapper는 줄마다 String, 토큰 목록, FieldSet을 만들지만
+ * 이 리더는 필드 위치만 int 배열에 기록하고, RowMapper가 읽는 필드만 String으로 만든다.
+ *
+ * DelimitedLineTokenizer + DefaultFieldSet.readString()과 같은 결과를 내도록 맞췄다.
+ *   - 필드 앞뒤 공백을 자르고, "로 감싼 필드는 "를 벗기고 ""를 "로 바꾼다.
+ *   - " 안의 구분자와 줄바꿈은 값으로 읽는다. (DefaultRecordSeparatorPolicy처럼 다음 줄까지 한 레코드)
+ *   - 필드 수가 columnCount와 다르면 FlatFileParseException
+ *
+ * 파일은 WINDOW_SIZE 크기로 나눠 mmap 하고 레코드가 윈도우 끝에 걸치면 레코드 시작부터 다시 mmap 한다.
+ * 다음에 읽을 레코드의 바이트 위치를 ExecutionContext에 저장하므로 재시작하면 그 위치로 바로 간다.
+ * startOffset, endOffset을 주면 FileRangePartitioner가 나눈 구간에서 시작하는 레코드만 읽는다.
+ */
+public class MappedCsvItemReader<T> extends AbstractBulkItemCountingItemReader<T> {
+
+    private static final String POSITION = "position";
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final byte DELIMITER = ',';
+    private static final byte QUOTE = '"';
+
+    private final Resource resource;
+    private final int columnCount;
+    private final RowMapper<T> rowMapper;
+
+    private int linesToSkip;
+    private long startOffset;
+    private long endOffset = Long.MAX_VALUE;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    // window의 첫 바이트가 파일에서 있는 위치
+    private long windowOffset;
+
+    // 다음에 읽을 레코드가 시작하는 위치
+    private long position;
+    private final Row row;
+
+    public MappedCsvItemReader(String name, Resource resource, int columnCount, RowMapper<T> rowMapper) {
+        setName(name);
+        this.resource = resource;
+        this.columnCount = columnCount;
+        this.rowMapper = rowMapper;
+        this.row = new Row(columnCount);
+    }
+
+    public void setLinesToSkip(int linesToSkip) {
+        this.linesToSkip = linesToSkip;
+    }
+
+    /**
+     * startOffset은 레코드가 시작하는 위치여야 한다. linesToSkip은 startOffset이 0일 때만 적용된다.
+     */
+    public void setRange(long startOffset, long endOffset) {
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        if (position >= Math.min(endOffset, fileSize)) {
+            return null;
+        }
+
+        long start = position;
+        long next = parseRecord();
+        // FlatFileItemReader처럼 잘못된 레코드도 넘어가야 skip한 다음 read()가 다음 레코드를 읽는다.
+        position = next;
+
+        if (row.fieldCount != columnCount) {
+            String record = new String(bytes(start, next), StandardCharsets.UTF_8).trim();
+            throw new FlatFileParseException("필드 수가 " + columnCount + "개가 아닙니다. fieldCount : " + row.fieldCount,
+                    record, getCurrentItemCount() + linesToSkip);
+        }
+
+        return rowMapper.mapRow(row, getCurrentItemCount());
+    }
+
+    /**
+     * position에서 시작하는 레코드의 필드 위치를 row에 기록하고 다음 레코드의 시작 위치를 돌려준다.
+     * 레코드가 window 끝에 걸치면 레코드 시작부터 window를 다시 잡고 처음부터 다시 찾는다.
+     */
+    private long parseRecord() throws Exception {
+        while (true) {
+            if (position < windowOffset || position >= windowOffset + window.limit()) {
+                map(position);
+            }
+
+            int start = (int) (position - windowOffset);
+            int limit = window.limit();
+            boolean lastWindow = windowOffset + limit >= fileSize;
+            int end = scan(start, limit, lastWindow);
+
+            if (end >= 0) {
+                return windowOffset + end;
+            }
+
+            if (start == 0) {
+                throw new FlatFileParseException("레코드가 " + windowSize + "바이트보다 깁니다. position : " + position,
+                        "", getCurrentItemCount() + linesToSkip);
+            }
+            map(position);
+        }
+    }
+
+    /**
+     * window[start, limit)에서 레코드 하나의 필드 경계를 찾는다. 레코드가 끝나지 않았으면 -1
+     */
+    private int scan(int start, int limit, boolean lastWindow) {
+        row.reset(window);
+        boolean quoted = false;
+        int fieldStart = start;
+
+        for (int i = start; i < limit; i++) {
+            byte b = window.get(i);
+
+            if (b == QUOTE) {
+                quoted = !quoted;
+            } else if (!quoted && b == DELIMITER) {
+                row.addField(fieldStart, i);
+                fieldStart = i + 1;
+            } else if (!quoted && b == '\n') {
+                int fieldEnd = i > fieldStart && window.get(i - 1) == '\r' ? i - 1 : i;
+                row.addField(fieldStart, fieldEnd);
+                return i + 1;
+            }
+        }
+
+        if (!lastWindow) {
+            return -1;
+        }
+
+        // 마지막 줄에 줄바꿈이 없는 경우
+        int fieldEnd = limit > fieldStart && window.get(limit - 1) == '\r' ? limit - 1 : limit;
+        row.addField(fieldStart, fieldEnd);
+        return limit;
+    }
+
+    private void map(long offset) throws Exception {
+        long size = Math.min(windowSize, fileSize - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        windowOffset = offset;
+    }
+
+    private byte[] bytes(long from, long to) {
+        byte[] bytes = new byte[(int) (to - from)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = window.get((int) (from - windowOffset) + i);
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        Assert.state(resource.isFile(), "파일 시스템의 파일만 읽을 수 있습니다. resource : " + resource);
+        channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+        fileSize = channel.size();
+        position = startOffset;
+        map(Math.min(position, fileSize));
+
+        if (startOffset == 0) {
+            for (int i = 0; i < linesToSkip && position < fileSize; i++) {
+                position = skipLine();
+            }
+        }
+    }
+
+    private long skipLine() throws Exception {
+        while (true) {
+            if (position < windowOffset || position >= windowOffset + window.limit()) {
+                map(position);
+            }
+
+            int start = (int) (position - windowOffset);
+            for (int i = start; i < window.limit(); i++) {
+                if (window.get(i) == '\n') {
+                    return windowOffset + i + 1;
+                }
+            }
+
+            if (windowOffset + window.limit() >= fileSize) {
+                return fileSize;
+            }
+            position = windowOffset + window.limit();
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        super.open(executionContext);
+
+        String key = getExecutionContextKey(POSITION);
+        if (isSaveState() && executionContext.containsKey(key)) {
+            position = ((Number) executionContext.get(key)).longValue();
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(POSITION), position);
+        }
+    }
+
+    /**
+     * 재시작 위치는 open()에서 position으로 복원하므로 앞에서부터 다시 읽어서 건너뛰지 않는다.
+     */
+    @Override
+    protected void jumpToItem(int itemIndex) {
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        window = null;
+        row.reset(null);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    public interface RowMapper<T> {
+        T mapRow(Row row, int rowNumber) throws Exception;
+    }
+
+    /**
+     * 현재 레코드의 필드, mapRow() 안에서만 유효하다.
+     */
+    public static final class Row {
+
+        private ByteBuffer window;
+        private int[] fieldStarts;
+        private int[] fieldEnds;
+        private int fieldCount;
+        private byte[] scratch = new byte[128];
+
+        private Row(int columnCount) {
+            this.fieldStarts = new int[Math.max(columnCount, 1)];
+            this.fieldEnds = new int[Math.max(columnCount, 1)];
+        }
+
+        public int getFieldCount() {
+            return fieldCount;
+        }
+
+        /**
+         * DefaultFieldSet.readString()처럼 앞뒤 공백을 자른 값
+         */
+        public String readString(int index) {
+            int length = copyValue(index);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        public int readInt(int index) {
+            int length = copyValue(index);
+            if (length == 0) {
+                throw new NumberFormatException("빈 값은 숫자로 읽을 수 없습니다. index : " + index);
+            }
+
+            int i = 0;
+            boolean negative = scratch[0] == '-';
+            if (negative || scratch[0] == '+') {
+                i++;
+            }
+            if (i == length) {
+                throw new NumberFormatException(new String(scratch, 0, length, StandardCharsets.UTF_8));
+            }
+
+            long value = 0;
+            for (; i < length; i++) {
+                int digit = scratch[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException(new String(scratch, 0, length, StandardCharsets.UTF_8));
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw new NumberFormatException(new String(scratch, 0, length, StandardCharsets.UTF_8));
+                }
+            }
+
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException(new String(scratch, 0, length, StandardCharsets.UTF_8));
+            }
+            return (int) value;
+        }
+
+        private void reset(ByteBuffer window) {
+            this.window = window;
+            this.fieldCount = 0;
+        }
+
+        private void addField(int start, int end) {
+            if (fieldCount == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            }
+            fieldStarts[fieldCount] = start;
+            fieldEnds[fieldCount] = end;
+            fieldCount++;
+        }
+
+        /**
+         * 공백을 자르고 "를 벗긴 값을 scratch에 복사하고 길이를 돌려준다.
+         * UTF-8에서 0x20 이하 바이트는 항상 한 글자이므로 바이트로 잘라도 String.trim()과 같다.
+         */
+        private int copyValue(int index) {
+            int start = fieldStarts[index];
+            int end = fieldEnds[index];
+
+            while (start < end && (window.get(start) & 0xff) <= ' ') {
+                start++;
+            }
+            while (end > start && (window.get(end - 1) & 0xff) <= ' ') {
+                end--;
+            }
+
+            boolean quoted = end - start >= 2 && window.get(start) == QUOTE && window.get(end - 1) == QUOTE;
+            if (quoted) {
+                start++;
+                end--;
+            }
+
+            if (scratch.length < end - start) {
+                scratch = new byte[Math.max(end - start, scratch.length * 2)];
+            }
+
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                byte b = window.get(i);
+                scratch[length++] = b;
+                // 감싼 " 안의 ""는 "로 읽는다.
+                if (quoted && b == QUOTE && i + 1 < end && window.get(i + 1) == QUOTE) {
+                    i++;
+                }
+            }
+
+            int from = 0;
+            while (from < length && (scratch[from] & 0xff) <= ' ') {
+                from++;
+            }
+            while (length > from && (scratch[length - 1] & 0xff) <= ' ') {
+                length--;
+            }
+            if (from > 0) {
+                System.arraycopy(scratch, from, scratch, 0, length - from);
+                length -= from;
+            }
+            return length;
+        }
+    }
+}
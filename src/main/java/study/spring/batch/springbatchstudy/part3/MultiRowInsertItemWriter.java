@@ -0,0 +1,93 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 아이템 여러 건을 insert 문 하나로 묶어서 넣는 writer이다.
+ *   insert into person (name, age, address) values (?, ?, ?), (?, ?, ?), ...
+ * rowsPerStatement 건씩 묶은 insert 문을 JDBC batch로 보내고, 남는 건은 한 번 더 insert 한다.
+ * JdbcBatchItemWriter는 건마다 파라미터 묶음을 보내지만 이 writer는 문장 수 자체가 줄어든다.
+ */
+public class MultiRowInsertItemWriter<T> implements ItemWriter<T> {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final String[] columns;
+    private final Function<T, Object[]> valuesExtractor;
+    private final int rowsPerStatement;
+    private final String batchSql;
+
+    /**
+     * @param valuesExtractor 아이템에서 columns 순서대로 값을 꺼내는 함수
+     */
+    public MultiRowInsertItemWriter(DataSource dataSource, String table, String[] columns,
+                                    Function<T, Object[]> valuesExtractor, int rowsPerStatement) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.table = table;
+        this.columns = columns;
+        this.valuesExtractor = valuesExtractor;
+        this.rowsPerStatement = rowsPerStatement;
+        this.batchSql = insertSql(rowsPerStatement);
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        int statements = items.size() / rowsPerStatement;
+        int remainder = items.size() % rowsPerStatement;
+
+        if (statements > 0) {
+            jdbcTemplate.batchUpdate(batchSql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    bind(ps, items.subList(i * rowsPerStatement, (i + 1) * rowsPerStatement));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return statements;
+                }
+            });
+        }
+
+        if (remainder > 0) {
+            jdbcTemplate.update(insertSql(remainder), ps -> bind(ps, items.subList(items.size() - remainder, items.size())));
+        }
+    }
+
+    private void bind(PreparedStatement ps, List<? extends T> rows) throws SQLException {
+        int index = 1;
+
+        for (T row : rows) {
+            for (Object value : valuesExtractor.apply(row)) {
+                StatementCreatorUtils.setParameterValue(ps, index++, SqlTypeValue.TYPE_UNKNOWN, value);
+            }
+        }
+    }
+
+    private String insertSql(int rows) {
+        String placeholders = "(" + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+
+        StringBuilder sql = new StringBuilder("insert into ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") values ");
+
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(placeholders);
+        }
+
+        return sql.toString();
+    }
+}
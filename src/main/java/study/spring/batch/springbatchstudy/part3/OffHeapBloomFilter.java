@@ -0,0 +1,64 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 비트 배열을 heap 밖(direct buffer)에 두는 Bloom filter이다.
+ * 비트 수와 해시 개수는 예상 key 개수와 목표 오탐률로 정한다.
+ *   m = -n * ln(p) / ln(2)^2, k = m / n * ln(2)
+ * 해시는 64비트 해시 하나를 두 개로 나눠 h1 + i * h2로 만든다.
+ */
+class OffHeapBloomFilter {
+
+    // ByteBuffer 용량이 int라서 비트 배열은 2GB를 넘을 수 없다.
+    private static final long MAX_WORDS = Integer.MAX_VALUE / Long.BYTES;
+
+    private final ByteBuffer bits;
+    private final long bitSize;
+    private final int hashCount;
+
+    OffHeapBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long optimalBits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = Math.min(MAX_WORDS, Math.max(1, (optimalBits + 63) / 64));
+
+        this.bits = ByteBuffer.allocateDirect((int) (words * Long.BYTES));
+        this.bitSize = words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    /**
+     * key의 비트를 모두 켜고, 꺼져 있던 비트가 하나라도 있었으면 true(확실히 새 key)를 돌려준다.
+     */
+    boolean put(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+
+        for (int i = 1; i <= hashCount; i++) {
+            long combined = (h1 + (long) i * h2) & Long.MAX_VALUE;
+            long bitIndex = combined % bitSize;
+            int byteIndex = (int) ((bitIndex >>> 6) * Long.BYTES);
+            long word = bits.getLong(byteIndex);
+            long mask = 1L << bitIndex;
+
+            if ((word & mask) == 0) {
+                bits.putLong(byteIndex, word | mask);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * insertions개를 넣었을 때의 이론상 오탐률 (1 - e^(-kn/m))^k
+     */
+    double expectedFalsePositiveRate(long insertions) {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitSize), hashCount);
+    }
+
+    long byteSize() {
+        return bits.capacity();
+    }
+}
@@ -0,0 +1,222 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * BGZF 파일을 블록 단위로 나눠 executor에서 동시에 압축을 풀고, 파일 순서대로 이어서 읽게 해준다.
+ * 압축된 블록은 읽는 스레드가 순서대로 읽어서 최대 readAhead 개까지 미리 압축 해제를 맡긴다.
+ *
+ * 위치는 BGZF의 가상 오프셋으로 표현한다.
+ *   (블록이 시작하는 압축 파일 위치 << 16) | 블록 안에서 압축을 푼 위치
+ * 가상 오프셋으로 열면 그 블록부터 다시 읽으므로 앞 블록의 압축을 풀 필요가 없다.
+ */
+public class ParallelBgzfInputStream extends InputStream {
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final FileChannel channel;
+    private final ExecutorService executor;
+    private final int readAhead;
+    private final Deque<Future<Block>> pending = new ArrayDeque<>();
+
+    private final long startBlockOffset;
+    // 다음에 압축 해제를 맡길 블록의 위치
+    private long nextBlockOffset;
+    private Block current;
+    private int position;
+
+    public ParallelBgzfInputStream(FileChannel channel, long virtualOffset, ExecutorService executor, int readAhead) throws IOException {
+        this.channel = channel;
+        this.executor = executor;
+        this.readAhead = Math.max(1, readAhead);
+        this.startBlockOffset = virtualOffset >>> 16;
+        this.nextBlockOffset = startBlockOffset;
+
+        int skip = (int) (virtualOffset & 0xffff);
+        if (skip > 0) {
+            if (!nextBlock() || skip > current.data.length) {
+                throw new IOException("가상 오프셋이 블록 범위를 벗어났습니다. virtualOffset : " + virtualOffset);
+            }
+            position = skip;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current.data[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+
+        int length = Math.min(len, current.data.length - position);
+        System.arraycopy(current.data, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    /**
+     * 다음에 읽을 바이트의 가상 오프셋, 블록을 다 읽었으면 다음 블록의 시작을 가리킨다.
+     */
+    public long getVirtualOffset() {
+        if (current == null) {
+            return startBlockOffset << 16;
+        }
+        if (position < current.data.length) {
+            return current.offset << 16 | position;
+        }
+        return (current.offset + current.compressedSize) << 16;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pending.forEach(future -> future.cancel(true));
+        pending.clear();
+        channel.close();
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (current == null || position >= current.data.length) {
+            if (!nextBlock()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean nextBlock() throws IOException {
+        submitAhead();
+
+        Future<Block> future = pending.pollFirst();
+        if (future == null) {
+            return false;
+        }
+
+        try {
+            current = future.get();
+            position = 0;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException("BGZF 블록 압축을 풀지 못했습니다.", e.getCause());
+        }
+    }
+
+    private void submitAhead() throws IOException {
+        long size = channel.size();
+
+        while (pending.size() < readAhead && nextBlockOffset < size) {
+            long offset = nextBlockOffset;
+            byte[] block = readBlock(offset);
+            nextBlockOffset += block.length;
+            pending.addLast(executor.submit(() -> inflate(offset, block)));
+        }
+    }
+
+    /**
+     * 헤더의 BC extra 필드에서 블록 크기를 읽고 블록 전체를 읽는다.
+     */
+    private byte[] readBlock(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BgzfOutputStream.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, offset);
+
+        if ((header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b || (header.get(3) & 4) == 0) {
+            throw new IOException("BGZF 블록이 아닙니다. offset : " + offset);
+        }
+
+        int extraLength = header.getShort(10) & 0xffff;
+        ByteBuffer extra = ByteBuffer.allocate(extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(extra, offset + 12);
+
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extraLength; ) {
+            int subfieldLength = extra.getShort(i + 2) & 0xffff;
+            if (extra.get(i) == 'B' && extra.get(i + 1) == 'C' && subfieldLength == 2) {
+                blockSize = (extra.getShort(i + 4) & 0xffff) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+
+        if (blockSize < 0) {
+            throw new IOException("BGZF 블록 크기(BC) 필드가 없습니다. offset : " + offset);
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(blockSize);
+        readFully(block, offset);
+        return block.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("BGZF 블록이 잘렸습니다. offset : " + offset);
+            }
+        }
+    }
+
+    private static Block inflate(long offset, byte[] block) throws DataFormatException {
+        ByteBuffer buffer = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        int extraLength = buffer.getShort(10) & 0xffff;
+        int dataStart = 12 + extraLength;
+        int dataLength = block.length - dataStart - BgzfOutputStream.FOOTER_SIZE;
+        int crc = buffer.getInt(block.length - 8);
+        int inputSize = buffer.getInt(block.length - 4);
+
+        byte[] data = new byte[inputSize];
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(block, dataStart, dataLength);
+
+        int inflated = 0;
+        while (inflated < inputSize && !inflater.finished()) {
+            int count = inflater.inflate(data, inflated, inputSize - inflated);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            inflated += count;
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, inflated);
+        if (inflated != inputSize || (int) crc32.getValue() != crc) {
+            throw new DataFormatException("BGZF 블록 CRC가 맞지 않습니다. offset : " + offset);
+        }
+
+        return new Block(offset, block.length, data);
+    }
+
+    private static class Block {
+        private final long offset;
+        private final int compressedSize;
+        private final byte[] data;
+
+        private Block(long offset, int compressedSize, byte[] data) {
+            this.offset = offset;
+            this.compressedSize = compressedSize;
+            this.data = data;
+        }
+    }
+}
@@ -7,12 +7,16 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import java.io.Serializable;
 import java.util.Objects;
 
 @Getter
 @Entity
 @NoArgsConstructor
-public class Person {
+public class Person implements PersonFields, Serializable {
+
+    // 원격 청킹으로 워커에 직렬화해서 보내므로 매니저와 워커의 클래스가 같은 버전이어야 한다.
+    private static final long serialVersionUID = 1L;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
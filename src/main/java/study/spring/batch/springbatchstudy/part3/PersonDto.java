@@ -0,0 +1,36 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import lombok.Getter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Person을 읽기만 할 때 쓰는 불변 객체이다. 엔티티가 아니라서 영속성 컨텍스트, 스냅샷, 프록시가 없다.
+ *   JPQL : select new study.spring.batch.springbatchstudy.part3.PersonDto(p.id, p.name, p.age, p.address) from Person p
+ *   JDBC : select id, name, age, address from person 를 mapRow로 매핑
+ */
+@Getter
+public class PersonDto implements PersonFields {
+
+    public static final String[] COLUMNS = {"id", "name", "age", "address"};
+
+    private final int id;
+    private final String name;
+    private final String age;
+    private final String address;
+
+    public PersonDto(int id, String name, String age, String address) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.address = address;
+    }
+
+    /**
+     * COLUMNS 순서로 조회한 행을 인덱스로 읽는다. BeanPropertyRowMapper처럼 리플렉션으로 컬럼 이름을 찾지 않는다.
+     */
+    public static PersonDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new PersonDto(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4));
+    }
+}
@@ -0,0 +1,25 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.file.transform.FieldExtractor;
+
+/**
+ * Person 엔티티와 PersonDto가 같이 구현하는 필드 목록이다.
+ * 읽어서 내보내기만 하는 writer는 이 타입으로 받아서 엔티티와 DTO를 모두 쓸 수 있다.
+ */
+public interface PersonFields {
+
+    int getId();
+
+    String getName();
+
+    String getAge();
+
+    String getAddress();
+
+    /**
+     * BeanWrapperFieldExtractor 대신 getter를 직접 불러서 id, name, age, address 순서로 꺼낸다.
+     */
+    static FieldExtractor<PersonFields> fieldExtractor() {
+        return person -> new Object[]{person.getId(), person.getName(), person.getAge(), person.getAddress()};
+    }
+}
@@ -0,0 +1,167 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 별도 스레드가 delegate에서 bufferSize 건까지 미리 읽어두는 리더이다.
+ * writer가 청크를 쓰고 커밋하는 동안 다음 청크를 읽으므로 읽기 시간이 쓰기 시간 뒤로 숨는다.
+ *
+ * delegate는 open(), close()를 빼면 미리 읽는 스레드에서만 호출된다.
+ * 아이템을 읽을 때마다 delegate의 상태를 따로 떠두고, update()에는 청크에 넘겨준 마지막 아이템의 상태를 저장한다.
+ * 그래서 미리 읽었지만 커밋되지 않은 아이템은 재시작하면 delegate가 다시 읽는다.
+ * 미리 읽는 스레드에는 StepExecution을 등록하므로 delegate가 @StepScope 빈이어도 된다.
+ * 트랜잭션에 묶인 커넥션을 쓰는 delegate(JdbcCursorItemReader의 useSharedExtendedConnection 등)에는 쓸 수 없다.
+ */
+public class PrefetchItemReader<T> implements ItemStreamReader<T> {
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final ItemStreamReader<? extends T> delegate;
+    private final int bufferSize;
+
+    private BlockingQueue<Prefetched<T>> buffer;
+    private Thread prefetchThread;
+    private volatile boolean running;
+
+    // 청크에 넘겨준 마지막 아이템까지 읽은 delegate 상태
+    private ExecutionContext consumedState;
+    private boolean exhausted;
+
+    public PrefetchItemReader(ItemStreamReader<? extends T> delegate, int bufferSize) {
+        this.delegate = delegate;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public T read() throws Exception {
+        if (exhausted) {
+            return null;
+        }
+
+        Prefetched<T> prefetched = buffer.take();
+
+        if (prefetched.failure != null) {
+            if (prefetched.failure instanceof Error) {
+                throw (Error) prefetched.failure;
+            }
+            throw (Exception) prefetched.failure;
+        }
+
+        consumedState = prefetched.state;
+        exhausted = prefetched.item == null;
+        return prefetched.item;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        delegate.open(executionContext);
+
+        consumedState = snapshot();
+        exhausted = false;
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+        running = true;
+
+        StepContext stepContext = StepSynchronizationManager.getContext();
+        StepExecution stepExecution = stepContext != null ? stepContext.getStepExecution() : null;
+
+        prefetchThread = new Thread(() -> prefetch(stepExecution), Thread.currentThread().getName() + "-prefetch");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        for (Map.Entry<String, Object> entry : consumedState.entrySet()) {
+            executionContext.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 미리 읽는 스레드가 지금 읽고 있는 아이템까지만 읽고 끝나기를 기다린 다음 delegate를 닫는다.
+     */
+    @Override
+    public void close() throws ItemStreamException {
+        running = false;
+
+        if (prefetchThread != null) {
+            try {
+                prefetchThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ItemStreamException("미리 읽는 스레드가 끝나기를 기다리다가 중단되었습니다.", e);
+            }
+            prefetchThread = null;
+        }
+
+        buffer = null;
+        delegate.close();
+    }
+
+    private void prefetch(StepExecution stepExecution) {
+        if (stepExecution != null) {
+            StepSynchronizationManager.register(stepExecution);
+        }
+
+        try {
+            while (running) {
+                Prefetched<T> prefetched = readNext();
+
+                while (!buffer.offer(prefetched, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (!running) {
+                        return;
+                    }
+                }
+
+                if (prefetched.failure == null && prefetched.item == null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (stepExecution != null) {
+                StepSynchronizationManager.close();
+            }
+        }
+    }
+
+    /**
+     * 읽다가 실패하면 다음 read()에서 그 예외를 던지고, skip 여부는 스텝이 정한다.
+     */
+    private Prefetched<T> readNext() {
+        try {
+            T item = delegate.read();
+            return new Prefetched<>(item, snapshot(), null);
+        } catch (Throwable e) {
+            return new Prefetched<>(null, null, e);
+        }
+    }
+
+    private ExecutionContext snapshot() {
+        ExecutionContext state = new ExecutionContext();
+        delegate.update(state);
+        return state;
+    }
+
+    private static class Prefetched<T> {
+        private final T item;
+        private final ExecutionContext state;
+        private final Throwable failure;
+
+        private Prefetched(T item, ExecutionContext state, Throwable failure) {
+            this.item = item;
+            this.state = state;
+            this.failure = failure;
+        }
+    }
+}
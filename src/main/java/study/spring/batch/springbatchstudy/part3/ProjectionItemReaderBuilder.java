@@ -0,0 +1,168 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.database.JpaCursorItemReader;
+import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.item.database.builder.JpaCursorItemReaderBuilder;
+import org.springframework.batch.item.database.orm.AbstractJpaQueryProvider;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 엔티티 대신 불변 DTO로 읽는 커서 리더를 만든다.
+ * select에 넣은 식(컬럼)의 순서가 DTO 생성자, rowMapper가 읽는 순서와 같아야 한다.
+ *
+ * JPQL 생성자 표현식, 결과가 엔티티가 아니라서 영속성 컨텍스트에 들어가지 않는다.
+ *   new ProjectionItemReaderBuilder<>(PersonDto.class)
+ *           .name("personDtoItemReader")
+ *           .select("p.id", "p.name", "p.age", "p.address")
+ *           .from("Person p")
+ *           .orderBy("p.id")
+ *           .buildJpa(entityManagerFactory);
+ *
+ * JDBC 컬럼 목록, 행은 rowMapper(ex. PersonDto::mapRow)가 인덱스로 읽는다.
+ *   new ProjectionItemReaderBuilder<>(PersonDto.class)
+ *           .name("personDtoItemReader")
+ *           .select(PersonDto.COLUMNS)
+ *           .from("person")
+ *           .rowMapper(PersonDto::mapRow)
+ *           .buildJdbc(dataSource);
+ *
+ * where 조건의 :이름 파라미터는 parameterValues로 넘기고 JPQL, JDBC 모두 같은 방식으로 바인딩한다.
+ */
+public class ProjectionItemReaderBuilder<T> {
+
+    private final Class<T> resultType;
+
+    private String name;
+    private String[] select;
+    private String from;
+    private String where;
+    private String orderBy;
+    private Map<String, Object> parameterValues = new HashMap<>();
+    private int fetchSize;
+    private RowMapper<T> rowMapper;
+
+    public ProjectionItemReaderBuilder(Class<T> resultType) {
+        this.resultType = resultType;
+    }
+
+    public ProjectionItemReaderBuilder<T> name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public ProjectionItemReaderBuilder<T> select(String... select) {
+        this.select = select;
+        return this;
+    }
+
+    public ProjectionItemReaderBuilder<T> from(String from) {
+        this.from = from;
+        return this;
+    }
+
+    public ProjectionItemReaderBuilder<T> where(String where) {
+        this.where = where;
+        return this;
+    }
+
+    public ProjectionItemReaderBuilder<T> orderBy(String orderBy) {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    public ProjectionItemReaderBuilder<T> parameterValues(Map<String, Object> parameterValues) {
+        this.parameterValues = parameterValues;
+        return this;
+    }
+
+    /**
+     * 0이면 드라이버 기본값을 쓴다. JPQL은 Hibernate 쿼리 힌트로 넘긴다.
+     */
+    public ProjectionItemReaderBuilder<T> fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public ProjectionItemReaderBuilder<T> rowMapper(RowMapper<T> rowMapper) {
+        this.rowMapper = rowMapper;
+        return this;
+    }
+
+    public JpaCursorItemReader<T> buildJpa(EntityManagerFactory entityManagerFactory) throws Exception {
+        validate();
+        Assert.isTrue(Arrays.stream(resultType.getConstructors()).anyMatch(constructor -> constructor.getParameterCount() == select.length),
+                () -> resultType.getName() + "에 select 식 " + select.length + "개를 받는 public 생성자가 없습니다.");
+
+        String queryString = "select new " + resultType.getName() + "(" + String.join(", ", select) + ") from " + from + conditions();
+
+        JpaCursorItemReader<T> itemReader = new JpaCursorItemReaderBuilder<T>()
+                .name(name)
+                .entityManagerFactory(entityManagerFactory)
+                .queryProvider(new AbstractJpaQueryProvider() {
+                    @Override
+                    public Query createQuery() {
+                        Query query = getEntityManager().createQuery(queryString, resultType);
+                        if (fetchSize > 0) {
+                            query.setHint("org.hibernate.fetchSize", fetchSize);
+                        }
+                        return query;
+                    }
+
+                    @Override
+                    public void afterPropertiesSet() {
+                    }
+                })
+                .parameterValues(parameterValues)
+                .build();
+        itemReader.afterPropertiesSet();
+
+        return itemReader;
+    }
+
+    public JdbcCursorItemReader<T> buildJdbc(DataSource dataSource) throws Exception {
+        validate();
+        Assert.notNull(rowMapper, "rowMapper는 필수입니다.");
+
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(
+                "select " + String.join(", ", select) + " from " + from + conditions());
+        MapSqlParameterSource parameterSource = new MapSqlParameterSource(parameterValues);
+
+        JdbcCursorItemReader<T> itemReader = new JdbcCursorItemReaderBuilder<T>()
+                .name(name)
+                .dataSource(dataSource)
+                .sql(NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSource))
+                .preparedStatementSetter(new ArgumentPreparedStatementSetter(
+                        NamedParameterUtils.buildValueArray(parsedSql, parameterSource, null)))
+                .fetchSize(fetchSize)
+                .rowMapper(rowMapper)
+                .build();
+        itemReader.afterPropertiesSet();
+
+        return itemReader;
+    }
+
+    private void validate() {
+        Assert.hasText(name, "name은 필수입니다.");
+        Assert.notEmpty(select, "select는 필수입니다.");
+        Assert.hasText(from, "from은 필수입니다.");
+    }
+
+    private String conditions() {
+        return (StringUtils.hasText(where) ? " where " + where : "")
+                + (StringUtils.hasText(orderBy) ? " order by " + orderBy : "");
+    }
+}
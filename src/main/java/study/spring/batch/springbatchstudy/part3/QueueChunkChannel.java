@@ -0,0 +1,71 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.integration.chunk.ChunkResponse;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.PollableChannel;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.SerializationUtils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 JVM의 워커 스레드에 청크를 보내는 채널, 브로커 대신 큐를 사용한다.
+ * 브로커를 거치는 것처럼 청크와 결과를 직렬화해서 넘기므로 매니저와 워커가 같은 객체를 공유하지 않는다.
+ * 보낸 청크는 스레드 풀의 큐에 쌓이고 workers 개의 스레드가 꺼내서 ChunkWorker로 처리한다.
+ */
+public class QueueChunkChannel implements ChunkChannel {
+
+    private final ThreadPoolExecutor executorService;
+    private final QueueChannel replyChannel = new QueueChannel();
+    private final MessageChannel requestChannel;
+
+    public QueueChunkChannel(ChunkWorker<?> worker, int workers) {
+        this.executorService = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("chunk-worker-"));
+        this.requestChannel = (message, timeout) -> {
+            byte[] request = SerializationUtils.serialize(message.getPayload());
+            executorService.execute(() -> replyChannel.send(new GenericMessage<>(
+                    (ChunkResponse) SerializationUtils.deserialize(handle(worker, request)))));
+            return true;
+        };
+    }
+
+    /**
+     * 예외가 나도 결과를 보내야 매니저가 기다리지 않고 실패한다.
+     */
+    private static byte[] handle(ChunkWorker<?> worker, byte[] request) {
+        try {
+            return worker.handle(request);
+        } catch (Throwable e) {
+            return worker.failure(request, e);
+        }
+    }
+
+    @Override
+    public MessageChannel getRequestChannel() {
+        return requestChannel;
+    }
+
+    @Override
+    public PollableChannel getReplyChannel() {
+        return replyChannel;
+    }
+
+    /**
+     * 처리 중인 청크가 끝날 때까지 기다린다. 매니저 스텝이 실패해서 남은 청크는 처리하지 않는다.
+     */
+    @Override
+    public void close() {
+        executorService.getQueue().clear();
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
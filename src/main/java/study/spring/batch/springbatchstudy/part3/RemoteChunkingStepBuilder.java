@@ -0,0 +1,134 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.step.FatalStepExecutionException;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.item.ChunkProcessor;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.integration.chunk.AsynchronousFailureException;
+import org.springframework.batch.integration.chunk.ChunkMessageChannelItemWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.function.Function;
+
+/**
+ * faultTolerant() 대신 사용해서 매니저 스텝이 읽기만 하고 처리, 쓰기는 워커가 하는 스텝을 만든다.
+ *   new RemoteChunkingStepBuilder<>(stepBuilderFactory.get("step").chunk(10).reader(..).processor(..).writer(..),
+ *           ChunkChannel.local("queue", 4))
+ *           .chunksAhead(8).skip(..).skipLimit(..).build();
+ *
+ * 스텝에 준 processor, writer, skip, retry, 트랜잭션 설정과 ChunkListener로 ChunkWorker를 만들고,
+ * 매니저 스텝은 읽은 청크를 ChunkMessageChannelItemWriter로 channelFactory가 만든 채널에 보낸다.
+ * 채널은 스텝이 시작될 때 열고 모든 결과를 받은 다음 닫는다.
+ *
+ * 매니저는 결과를 받지 못한 청크가 chunksAhead 개가 되면 결과가 올 때까지 다음 청크를 보내지 않는다.
+ * 그래서 워커가 느려도 채널에 쌓이는 청크와 메모리는 chunksAhead 개를 넘지 않는다.
+ * 읽은 건수는 매니저가 세고, 쓰기, 필터, skip 건수는 워커가 보낸 결과를 스텝이 끝날 때 더한다.
+ * 워커가 청크를 처리하지 못하면 매니저 스텝은 다음 청크를 보낼 때나 스텝이 끝날 때 실패한다.
+ */
+public class RemoteChunkingStepBuilder<I, O> extends FaultTolerantStepBuilder<I, O> {
+
+    private static final long RECEIVE_TIMEOUT = 1_000L;
+    private static final int MAX_WAIT_TIMEOUTS = 600;
+
+    private final Function<ChunkWorker<I>, ChunkChannel> channelFactory;
+
+    private int chunksAhead = 4;
+    private int retryLimit = 0;
+    private ChunkWorker<I> worker;
+    private ChunkChannelItemWriter managerWriter;
+
+    /**
+     * @param channelFactory 워커에 보낼 채널을 만든다. 다른 서버의 워커에 보낼 때는 워커를 쓰지 않고 접속만 한다.
+     *                         ex) worker -> new SocketChunkChannel(host, port)
+     */
+    public RemoteChunkingStepBuilder(SimpleStepBuilder<I, O> parent, Function<ChunkWorker<I>, ChunkChannel> channelFactory) {
+        super(parent);
+        this.channelFactory = channelFactory;
+    }
+
+    /**
+     * 결과를 받지 못한 채로 보낼 수 있는 청크 개수, 1 이상이어야 한다.
+     */
+    public RemoteChunkingStepBuilder<I, O> chunksAhead(int chunksAhead) {
+        Assert.isTrue(chunksAhead >= 1, () -> "chunksAhead는 1 이상이어야 합니다. chunksAhead : " + chunksAhead);
+        this.chunksAhead = chunksAhead;
+        return this;
+    }
+
+    @Override
+    public FaultTolerantStepBuilder<I, O> retryLimit(int retryLimit) {
+        this.retryLimit = retryLimit;
+        return super.retryLimit(retryLimit);
+    }
+
+    @Override
+    public TaskletStep build() {
+        managerWriter = new ChunkChannelItemWriter();
+        // ChunkMessageChannelItemWriter의 throttleLimit보다 하나 더 보낼 수 있다.
+        managerWriter.setThrottleLimit(chunksAhead - 1L);
+        managerWriter.setMaxWaitTimeouts(MAX_WAIT_TIMEOUTS);
+        stream(managerWriter);
+        listener((StepExecutionListener) managerWriter);
+
+        return super.build();
+    }
+
+    /**
+     * FaultTolerantStepBuilder가 만든 ChunkProcessor는 워커가 사용하고,
+     * 매니저는 청크를 그대로 보내기만 해서 쓰기 건수를 세지 않는다.
+     */
+    @Override
+    protected ChunkProcessor<I> createChunkProcessor() {
+        worker = new ChunkWorker<>(super.createChunkProcessor(), getTransactionManager(), getTransactionAttribute());
+        worker.setListeners(new ArrayList<>(chunkListeners));
+        worker.setRetryLimit(retryLimit);
+
+        ItemWriter<I> itemWriter = managerWriter;
+        return (contribution, chunk) -> {
+            try {
+                itemWriter.write(new ArrayList<>(chunk.getItems()));
+            } catch (AsynchronousFailureException e) {
+                // 그냥 던지면 FaultTolerantStepBuilder가 다시 시도할 예외로 보고 다음 청크를 계속 읽는다.
+                throw new FatalStepExecutionException("워커가 청크를 처리하지 못했습니다.", e);
+            }
+        };
+    }
+
+    /**
+     * 스텝이 실행될 때마다 채널을 새로 열어서 싱글톤 스텝도 여러 번 실행할 수 있다.
+     */
+    private class ChunkChannelItemWriter extends ChunkMessageChannelItemWriter<I> {
+
+        private ChunkChannel channel;
+
+        @Override
+        public void beforeStep(StepExecution stepExecution) {
+            channel = channelFactory.apply(worker);
+
+            MessagingTemplate messagingTemplate = new MessagingTemplate();
+            messagingTemplate.setDefaultChannel(channel.getRequestChannel());
+            messagingTemplate.setReceiveTimeout(RECEIVE_TIMEOUT);
+            setMessagingOperations(messagingTemplate);
+            setReplyChannel(channel.getReplyChannel());
+
+            super.beforeStep(stepExecution);
+        }
+
+        @Override
+        public ExitStatus afterStep(StepExecution stepExecution) {
+            try {
+                return super.afterStep(stepExecution);
+            } finally {
+                channel.close();
+                worker.release(stepExecution.getId());
+            }
+        }
+    }
+}
@@ -1,21 +1,32 @@
 package study.spring.batch.springbatchstudy.part3;
 
+import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.SkipListener;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.builder.AbstractTaskletStepBuilder;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.integration.async.AsyncItemProcessor;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JpaItemWriter;
 import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.separator.DefaultRecordSeparatorPolicy;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.batch.item.support.CompositeItemProcessor;
 import org.springframework.batch.item.support.CompositeItemWriter;
@@ -25,8 +36,17 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.unit.DataSize;
 
 import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
 
 /**
  * 요구 사항 csv 파일 데이터를 읽어 H2 DB에 데이터 저장하는 배치 개발
@@ -48,15 +68,19 @@ import javax.persistence.EntityManagerFactory;
 @RequiredArgsConstructor
 public class SavePersonConfiguration {
 
+    private static final int CHUNK_SIZE = 10;
+
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final JobExplorer jobExplorer;
 
     @Bean
     public Job savePersonJob() throws Exception {
         return this.jobBuilderFactory.get("savePersonJob")
                 .incrementer(new RunIdIncrementer())
-                .start(this.savePersonStep(null))
+                .start(this.savePersonStep())
                 .listener(new SavePersonListener.SavePersonJobExecutionListener())
                 .listener(new SavePersonListener.SavePersonAnnotationJobExecutionListener())
                 .build();
@@ -64,34 +88,228 @@ public class SavePersonConfiguration {
 
     @Bean
     @JobScope
-    public Step savePersonStep(@Value("#{jobParameters[allow_duplicate]}") String allowDuplicate) throws Exception {
+    public SavePersonJobParameters savePersonJobParameters() {
+        return new SavePersonJobParameters();
+    }
+
+    /**
+     * 받는 잡 파라미터는 SavePersonJobParameters를 참고한다.
+     */
+    @Bean
+    @JobScope
+    public Step savePersonStep() throws Exception {
+        SavePersonJobParameters parameters = this.savePersonJobParameters();
+
+        DuplicateValidationProcessor<Person> duplicateValidationProcessor = new DuplicateValidationProcessor<>(
+                Person::getName,
+                parameters.isAllowDuplicate(),
+                keyPool(parameters),
+                parameters.getDedupCheckpointDir());
+        duplicateValidationProcessor.setJobExplorer(jobExplorer);
+
+        Resource resource = inputResource(parameters.getInputFile());
+        int grid = parameters.getGridSize();
+        // 바이트 위치로 읽는 리더는 FileChannel이 필요하다.
+        boolean fileSystem = resource.isFile();
+        boolean mapped = fileSystem && parameters.isMappedReader();
+        boolean bulk = parameters.isBulkLoad();
+        int threads = parameters.getProcessorThreads();
+        boolean bisect = parameters.isBisectSkip();
+        int ahead = parameters.getChunksAhead();
+
+        // BGZF 파일은 바이트 구간으로 나눌 수 없으므로 파티션 없이 압축 해제만 병렬로 한다.
+        if (grid <= 1 || isBgzf(resource) || !fileSystem) {
+            ItemStreamReader<? extends Person> itemReader;
+            if (isBgzf(resource)) {
+                itemReader = bgzfItemReader(resource, parameters.getInflateThreads());
+            } else if (mapped) {
+                itemReader = mappedItemReader(resource, 0, Long.MAX_VALUE);
+            } else {
+                itemReader = itemReader(resource);
+            }
+            if (parameters.getPrefetch() > 0) {
+                itemReader = new PrefetchItemReader<>(itemReader, parameters.getPrefetch());
+            }
+
+            Function<ChunkWorker<Person>, ChunkChannel> chunkChannel = parameters.getRemoteChunking() != null
+                    ? ChunkChannel.local(parameters.getRemoteChunking(), parameters.getRemoteWorkers())
+                    : null;
+
+            return chunkStep("savePersonStep", itemReader, duplicateValidationProcessor, bulk, threads, bisect, chunkChannel, ahead)
+                    .listener((StepExecutionListener) duplicateValidationProcessor)
+                    .build();
+        }
+
+        ItemReader<? extends Person> workerItemReader = mapped
+                ? this.personMappedRangeItemReader(null, null, null)
+                : this.personByteRangeItemReader(null, null, null);
+
+        Step workerStep = chunkStep("savePersonWorkerStep", workerItemReader, duplicateValidationProcessor, bulk, threads, bisect, null, ahead)
+                .build();
+
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("save-person-");
+        taskExecutor.setConcurrencyLimit(grid);
+
         return this.stepBuilderFactory.get("savePersonStep")
-                .<Person, Person>chunk(10)
-                .reader(itemReader())
-//                .processor(new DuplicateValidationProcessor<>(Person::getName, Boolean.parseBoolean(allowDuplicate)))
-                .processor(itemProcessor(allowDuplicate))
-                .writer(itemWrite())
-                .listener(new SavePersonListener.SavePersonStepExecutionListener())
-                .faultTolerant()
+                .partitioner("savePersonWorkerStep", new FileRangePartitioner(resource, 1))
+                .step(workerStep)
+                .gridSize(grid)
+                .taskExecutor(taskExecutor)
+                .listener((StepExecutionListener) duplicateValidationProcessor)
+                .build();
+    }
+
+    /**
+     * processorThreads가 0이면 청크 스레드에서 검증, 중복 체크를 차례로 실행한다.
+     * 1 이상이면 검증은 청크 스레드에서 하고, 중복 체크만 AsyncItemProcessor가 아이템마다 Future를 만들어 스레드 풀에서 처리한다.
+     * AsyncItemWriter가 읽은 순서대로 Future의 결과를 꺼내서 writer에 넘긴다.
+     *   NotFoundNameException은 processor에서 나오므로 processorThreads가 없을 때와 같이 process skip이 된다.
+     *   중복으로 걸러진 아이템은 Future 결과가 null이라 writer에 넘어가지 않는다.
+     *   스텝은 Future를 쓴 것으로 세므로 FilterCountingAsyncItemWriter가 청크가 커밋되면 filterCount로 옮긴다.
+     *   같은 청크 안의 중복 이름은 먼저 처리된 아이템이 남는다.
+     * bisectSkip이면 쓰기가 실패한 청크를 아이템 하나씩이 아니라 반씩 나눠 다시 쓰면서 skip할 아이템을 찾는다.
+     * chunkChannel이 있으면 processorThreads와 상관없이 청크를 채널로 보내고 워커가 processor, writer를 실행한다.
+     */
+    private AbstractTaskletStepBuilder<?> chunkStep(String stepName, ItemReader<? extends Person> itemReader,
+                                                    DuplicateValidationProcessor<Person> duplicateValidationProcessor,
+                                                    boolean bulkLoad, int processorThreads, boolean bisectSkip,
+                                                    Function<ChunkWorker<Person>, ChunkChannel> chunkChannel,
+                                                    int chunksAhead) throws Exception {
+        if (processorThreads <= 0 || chunkChannel != null) {
+            SimpleStepBuilder<Person, Person> stepBuilder = this.stepBuilderFactory.get(stepName)
+                    .<Person, Person>chunk(CHUNK_SIZE)
+                    .reader(itemReader)
+//                    .processor(new DuplicateValidationProcessor<>(Person::getName, Boolean.parseBoolean(allowDuplicate)))
+                    .processor(itemProcessor(duplicateValidationProcessor))
+                    .writer(itemWrite(bulkLoad))
+                    .listener(new SavePersonListener.SavePersonStepExecutionListener());
+
+            return faultTolerant(stepBuilder, bisectSkip, chunkChannel, chunksAhead)
+                    .skip(NotFoundNameException.class)
+                    .skipLimit(2)
+                    // stream() 뒤에 등록하면 SkipListener로 등록되지 않는다.
+                    .listener((SkipListener<Person, Object>) duplicateValidationProcessor)
+                    .stream(duplicateValidationProcessor)
+                    .listener((ChunkListener) duplicateValidationProcessor);
+        }
+
+        AsyncItemProcessor<Person, Person> asyncItemProcessor = new AsyncItemProcessor<>();
+        asyncItemProcessor.setDelegate(duplicateValidationProcessor);
+        asyncItemProcessor.setTaskExecutor(processorTaskExecutor(processorThreads));
+        asyncItemProcessor.afterPropertiesSet();
+
+        CompositeItemProcessor<Person, Future<Person>> itemProcessor = new CompositeItemProcessorBuilder()
+                .delegates(validationProcessor(), asyncItemProcessor)
+                .build();
+        itemProcessor.afterPropertiesSet();
+
+        FilterCountingAsyncItemWriter<Person> asyncItemWriter = new FilterCountingAsyncItemWriter<>();
+        asyncItemWriter.setDelegate(itemWrite(bulkLoad));
+        asyncItemWriter.afterPropertiesSet();
+
+        SimpleStepBuilder<Person, Future<Person>> stepBuilder = this.stepBuilderFactory.get(stepName)
+                .<Person, Future<Person>>chunk(CHUNK_SIZE)
+                .reader(itemReader)
+                .processor(itemProcessor)
+                .writer(asyncItemWriter)
+                .listener(new SavePersonListener.SavePersonStepExecutionListener());
+
+        return faultTolerant(stepBuilder, bisectSkip, null, chunksAhead)
                 .skip(NotFoundNameException.class)
                 .skipLimit(2)
-                .build();
+                .listener((SkipListener<Person, Object>) duplicateValidationProcessor)
+                .stream(duplicateValidationProcessor)
+                .listener((ChunkListener) duplicateValidationProcessor)
+                .listener((ChunkListener) asyncItemWriter);
     }
 
-    private ItemProcessor<? super Person, ? extends Person> itemProcessor(String allowDuplicate) throws Exception {
-        DuplicateValidationProcessor<Person> personDuplicateValidationProcessor =
-                new DuplicateValidationProcessor<>(Person::getName, Boolean.parseBoolean(allowDuplicate));
+    private <I, O> FaultTolerantStepBuilder<I, O> faultTolerant(SimpleStepBuilder<I, O> stepBuilder, boolean bisectSkip,
+                                                                Function<ChunkWorker<I>, ChunkChannel> chunkChannel,
+                                                                int chunksAhead) {
+        if (chunkChannel != null) {
+            return new RemoteChunkingStepBuilder<>(stepBuilder, chunkChannel).chunksAhead(chunksAhead);
+        }
+        return bisectSkip ? new BisectingFaultTolerantStepBuilder<>(stepBuilder) : stepBuilder.faultTolerant();
+    }
 
-        ItemProcessor<Person, Person> validationProcessor = item -> {
-            if (item.isNotEmptyName()) {
-                return item;
-            }
+    /**
+     * 파티션 워커 스레드에서도 쓰이므로 @JobScope 빈으로 만들지 않는다.
+     * 큐가 차면 청크 스레드가 직접 처리해서 한 번에 쌓이는 Future 개수를 제한하고, 쉬는 스레드는 스스로 종료된다.
+     */
+    private ThreadPoolTaskExecutor processorTaskExecutor(int threads) {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(threads);
+        taskExecutor.setMaxPoolSize(threads);
+        taskExecutor.setQueueCapacity(CHUNK_SIZE);
+        taskExecutor.setAllowCoreThreadTimeOut(true);
+        taskExecutor.setDaemon(true);
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        taskExecutor.setThreadNamePrefix("save-person-processor-");
+        taskExecutor.initialize();
+        return taskExecutor;
+    }
 
-            throw new NotFoundNameException();
-        };
+    /**
+     * FileRangePartitioner가 나눈 바이트 구간만 읽는 워커 스텝의 리더이다.
+     */
+    @Bean
+    @StepScope
+    public ByteRangeLineItemReader<Person> personByteRangeItemReader(@Value("#{jobParameters[inputFile]}") String inputFile,
+                                                                     @Value("#{stepExecutionContext[startOffset]}") Long startOffset,
+                                                                     @Value("#{stepExecutionContext[endOffset]}") Long endOffset) {
+        return new ByteRangeLineItemReader<>("personByteRangeItemReader",
+                inputResource(inputFile), startOffset, endOffset, lineMapper());
+    }
+
+    @Bean
+    @StepScope
+    public MappedCsvItemReader<Person> personMappedRangeItemReader(@Value("#{jobParameters[inputFile]}") String inputFile,
+                                                                   @Value("#{stepExecutionContext[startOffset]}") Long startOffset,
+                                                                   @Value("#{stepExecutionContext[endOffset]}") Long endOffset) {
+        return mappedItemReader(inputResource(inputFile), startOffset, endOffset);
+    }
+
+    /**
+     * itemReader()와 같은 Person을 만들지만 줄마다 String, FieldSet을 만들지 않는다.
+     */
+    private MappedCsvItemReader<Person> mappedItemReader(Resource resource, long startOffset, long endOffset) {
+        MappedCsvItemReader<Person> itemReader = new MappedCsvItemReader<>("mappedCsvItemReader", resource, 3,
+                (row, rowNumber) -> new Person(row.readString(0), row.readString(1), row.readString(2)));
+        itemReader.setLinesToSkip(1);
+        itemReader.setRange(startOffset, endOffset);
+        return itemReader;
+    }
+
+    private BgzfLineItemReader<Person> bgzfItemReader(Resource resource, int inflateThreads) {
+        BgzfLineItemReader<Person> itemReader = new BgzfLineItemReader<>("bgzfItemReader", resource, lineMapper(), inflateThreads);
+        itemReader.setLinesToSkip(1);
+        return itemReader;
+    }
+
+    private boolean isBgzf(Resource resource) {
+        return resource.getFilename() != null && resource.getFilename().endsWith(".gz");
+    }
+
+    private Resource inputResource(String inputFile) {
+        return StringUtils.isNotEmpty(inputFile) ? new FileSystemResource(inputFile) : new ClassPathResource("person.csv");
+    }
+
+    private KeyPool keyPool(SavePersonJobParameters parameters) {
+        if (parameters.getDedupMemoryLimit() == null) {
+            return new InMemoryKeyPool();
+        }
+
+        return new BloomFilterKeyPool(
+                parameters.getDedupExpectedKeys(),
+                parameters.getDedupFalsePositiveRate(),
+                DataSize.parse(parameters.getDedupMemoryLimit()).toBytes());
+    }
+
+    private ItemProcessor<Person, Person> itemProcessor(
+            DuplicateValidationProcessor<Person> personDuplicateValidationProcessor) throws Exception {
 
         CompositeItemProcessor<Person, Person> itemProcessor = new CompositeItemProcessorBuilder()
-                .delegates(validationProcessor, personDuplicateValidationProcessor)
+                .delegates(validationProcessor(), personDuplicateValidationProcessor)
                 .build();
 
         itemProcessor.afterPropertiesSet();
@@ -99,24 +317,37 @@ public class SavePersonConfiguration {
         return itemProcessor;
     }
 
-    private ItemWriter<? super Person> itemWrite() throws Exception {
+    private ItemProcessor<Person, Person> validationProcessor() {
+        return item -> {
+            if (item.isNotEmptyName()) {
+                return item;
+            }
+
+            throw new NotFoundNameException();
+        };
+    }
+
+    private ItemWriter<Person> itemWrite(boolean bulkLoad) throws Exception {
 //        return items -> items.forEach(x -> log.info("저는 {} 입니다.", x.getName()));
-        JpaItemWriter<Person> jpaItemWriter = new JpaItemWriterBuilder<Person>()
-                .entityManagerFactory(entityManagerFactory)
-                .build();
+        ItemWriter<Person> personItemWriter = bulkLoad
+                ? new BulkLoadItemWriter<Person>(dataSource, "person", new String[]{"name", "age", "address"},
+                        person -> new Object[]{person.getName(), person.getAge(), person.getAddress()})
+                : new JpaItemWriterBuilder<Person>()
+                        .entityManagerFactory(entityManagerFactory)
+                        .build();
 
         ItemWriter<Person> logItemWriter = items -> log.info("person.size {}", items.size());
 
         //delegates로 추가한 itemWriter는 추가한 순서대로 실행된다.
         CompositeItemWriter<Person> itemWriter = new CompositeItemWriterBuilder<Person>()
-                .delegates(jpaItemWriter, logItemWriter)
+                .delegates(personItemWriter, logItemWriter)
                 .build();
 
         itemWriter.afterPropertiesSet();
         return itemWriter;
     }
 
-    private ItemReader<? extends Person> itemReader() throws Exception {
+    private DefaultLineMapper<Person> lineMapper() {
         DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
         DelimitedLineTokenizer lineTokenizer = new DelimitedLineTokenizer();
         lineTokenizer.setNames("name", "age", "address");
@@ -125,13 +356,17 @@ public class SavePersonConfiguration {
                 fieldSet.readString(0),
                 fieldSet.readString(1),
                 fieldSet.readString(2)));
+        return lineMapper;
+    }
 
+    private FlatFileItemReader<Person> itemReader(Resource resource) throws Exception {
         FlatFileItemReader<Person> itemReader = new FlatFileItemReaderBuilder<Person>()
                 .name("csvFileItemReader")
                 .encoding("UTF-8")
-                .resource(new ClassPathResource("person.csv")) //ClassPathResource spring에서 제공하는 클래스 resources 밑의 파일을 읽을수있다.
+                .resource(resource) //ClassPathResource spring에서 제공하는 클래스 resources 밑의 파일을 읽을수있다.
                 .linesToSkip(1)  //test.csv를 가면 첫번째라인은 필드명을 정의해놓은거라 두번쨰 라인부터 읽겠다는 의미
-                .lineMapper(lineMapper)
+                .recordSeparatorPolicy(new DefaultRecordSeparatorPolicy()) //"로 감싼 필드 안의 줄바꿈은 다음 줄까지 한 레코드로 읽는다.
+                .lineMapper(lineMapper())
                 .build();
         itemReader.afterPropertiesSet();
         return itemReader;
@@ -0,0 +1,153 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * savePersonStep이 받는 잡 파라미터를 모아서 타입을 바꾸고 기본값을 채운다. @JobScope 빈으로 등록해서 잡 실행마다 새로 만든다.
+ *
+ * allow_duplicate : true면 이름이 중복된 person도 저장한다.
+ * dedupMemoryLimit 잡 파라미터(예: 64MB)를 주면 중복 체크 key를 Bloom filter와 디스크로 내보내는 정확한 집합으로 저장한다.
+ *   dedupExpectedKeys        : 예상 key 개수, Bloom filter 크기를 정한다. (기본 1,000,000)
+ *   dedupFalsePositiveRate   : Bloom filter 목표 오탐률 (기본 0.01)
+ * 파라미터가 없으면 모든 key를 heap에 저장한다.
+ * dedupCheckpointDir : 재시작할 때 이전 실행의 key를 복구하기 위해 key 파일을 남길 디렉토리
+ *                      청크마다 파일을 쓰고 fsync 하므로 파라미터를 준 경우에만 남긴다. 없으면 재시작할 때 이전 실행의 key를 모른다.
+ *
+ * inputFile : 읽을 csv 파일 경로 (기본 classpath의 person.csv)
+ *             jar 안의 classpath 파일처럼 파일 시스템의 파일이 아니면 gridSize, csvReader와 상관없이 FlatFileItemReader로 읽는다.
+ * gridSize  : 2 이상이면 파일을 gridSize 개의 바이트 구간으로 나눠서 워커 스텝(savePersonWorkerStep)이 동시에 읽는다.
+ *             중복 체크 프로세서는 모든 워커가 같이 쓰고, skipLimit은 워커마다 적용된다.
+ * csvReader : mapped면 FlatFileItemReader 대신 mmap으로 바이트를 바로 읽는 MappedCsvItemReader를 사용한다.
+ * inputFile이 .gz로 끝나면 BGZF(블록 gzip) 파일로 보고 inflateThreads 개(기본 코어 수)의 스레드로 블록 압축을 동시에 푼다.
+ * bulkLoad : true면 JpaItemWriter 대신 DB의 대량 적재 경로(H2 CSVREAD, MySQL LOAD DATA)로 청크를 넣는 BulkLoadItemWriter를 사용한다.
+ * processorThreads : 1 이상이면 청크의 아이템을 processorThreads 개의 스레드에서 동시에 처리한다. (SavePersonConfiguration.chunkStep 참고)
+ * prefetch : writer가 청크를 쓰는 동안 별도 스레드가 다음 아이템을 prefetch 건까지 미리 읽는다.
+ *            파티션으로 실행하면 워커끼리 읽기와 쓰기가 이미 겹치므로 적용하지 않는다.
+ * bisectSkip : true면 쓰기가 실패한 청크를 아이템 하나씩이 아니라 반씩 나눠 다시 쓰면서 skip할 아이템을 찾는다. (BisectingChunkProcessor)
+ * remoteChunking : queue 또는 socket이면 savePersonStep은 읽기만 하고 검증, 중복 체크, 저장은 워커가 한다. (RemoteChunkingStepBuilder)
+ *                  queue는 같은 JVM의 워커 스레드에, socket은 localhost에 띄운 워커 서버에 직렬화한 청크를 보낸다.
+ *                  파티션으로 실행하면 적용하지 않고, 적용하면 processorThreads와 bisectSkip은 사용하지 않는다.
+ *                  중복 체크 key는 워커에서 저장되므로 재시작용 key 파일(dedupCheckpointDir)에 남지 않는다.
+ *   remoteWorkers : 청크를 동시에 처리할 워커 스레드 개수 (기본 코어 수)
+ *   chunksAhead   : 결과를 받지 못한 채로 보낼 수 있는 청크 개수 (기본 4)
+ */
+public class SavePersonJobParameters {
+
+    private static final String MAPPED_READER = "mapped";
+
+    @Value("#{jobParameters[allow_duplicate]}")
+    private String allowDuplicate;
+    @Value("#{jobParameters[dedupMemoryLimit]}")
+    private String dedupMemoryLimit;
+    @Value("#{jobParameters[dedupExpectedKeys]}")
+    private String dedupExpectedKeys;
+    @Value("#{jobParameters[dedupFalsePositiveRate]}")
+    private String dedupFalsePositiveRate;
+    @Value("#{jobParameters[dedupCheckpointDir]}")
+    private String dedupCheckpointDir;
+    @Value("#{jobParameters[inputFile]}")
+    private String inputFile;
+    @Value("#{jobParameters[gridSize]}")
+    private String gridSize;
+    @Value("#{jobParameters[csvReader]}")
+    private String csvReader;
+    @Value("#{jobParameters[inflateThreads]}")
+    private String inflateThreads;
+    @Value("#{jobParameters[bulkLoad]}")
+    private String bulkLoad;
+    @Value("#{jobParameters[processorThreads]}")
+    private String processorThreads;
+    @Value("#{jobParameters[prefetch]}")
+    private String prefetch;
+    @Value("#{jobParameters[bisectSkip]}")
+    private String bisectSkip;
+    @Value("#{jobParameters[remoteChunking]}")
+    private String remoteChunking;
+    @Value("#{jobParameters[remoteWorkers]}")
+    private String remoteWorkers;
+    @Value("#{jobParameters[chunksAhead]}")
+    private String chunksAhead;
+
+    public boolean isAllowDuplicate() {
+        return Boolean.parseBoolean(allowDuplicate);
+    }
+
+    /**
+     * 없으면 null, key를 heap에 저장한다.
+     */
+    public String getDedupMemoryLimit() {
+        return StringUtils.isNotEmpty(dedupMemoryLimit) ? dedupMemoryLimit : null;
+    }
+
+    public long getDedupExpectedKeys() {
+        return StringUtils.isNotEmpty(dedupExpectedKeys) ? Long.parseLong(dedupExpectedKeys) : 1_000_000L;
+    }
+
+    public double getDedupFalsePositiveRate() {
+        return StringUtils.isNotEmpty(dedupFalsePositiveRate) ? Double.parseDouble(dedupFalsePositiveRate) : 0.01;
+    }
+
+    /**
+     * 없으면 null, key 파일을 남기지 않는다.
+     */
+    public Path getDedupCheckpointDir() {
+        return StringUtils.isNotEmpty(dedupCheckpointDir) ? Paths.get(dedupCheckpointDir) : null;
+    }
+
+    /**
+     * 없으면 null, classpath의 person.csv를 읽는다.
+     */
+    public String getInputFile() {
+        return StringUtils.isNotEmpty(inputFile) ? inputFile : null;
+    }
+
+    public int getGridSize() {
+        return StringUtils.isNotEmpty(gridSize) ? Integer.parseInt(gridSize) : 1;
+    }
+
+    public boolean isMappedReader() {
+        return MAPPED_READER.equalsIgnoreCase(csvReader);
+    }
+
+    public int getInflateThreads() {
+        return StringUtils.isNotEmpty(inflateThreads) ? Integer.parseInt(inflateThreads) : Runtime.getRuntime().availableProcessors();
+    }
+
+    public boolean isBulkLoad() {
+        return Boolean.parseBoolean(bulkLoad);
+    }
+
+    public int getProcessorThreads() {
+        return StringUtils.isNotEmpty(processorThreads) ? Integer.parseInt(processorThreads) : 0;
+    }
+
+    /**
+     * 0이면 미리 읽지 않는다.
+     */
+    public int getPrefetch() {
+        return StringUtils.isNotEmpty(prefetch) ? Integer.parseInt(prefetch) : 0;
+    }
+
+    public boolean isBisectSkip() {
+        return Boolean.parseBoolean(bisectSkip);
+    }
+
+    /**
+     * 없으면 null, 청크를 스텝 안에서 처리한다.
+     */
+    public String getRemoteChunking() {
+        return StringUtils.isNotEmpty(remoteChunking) ? remoteChunking : null;
+    }
+
+    public int getRemoteWorkers() {
+        return StringUtils.isNotEmpty(remoteWorkers) ? Integer.parseInt(remoteWorkers) : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getChunksAhead() {
+        return StringUtils.isNotEmpty(chunksAhead) ? Integer.parseInt(chunksAhead) : 4;
+    }
+}
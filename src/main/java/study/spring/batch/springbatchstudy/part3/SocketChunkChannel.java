@@ -0,0 +1,127 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.integration.chunk.ChunkResponse;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.PollableChannel;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.SerializationUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * 소켓으로 워커 서버(SocketChunkWorkerServer)에 청크를 보내는 채널이다.
+ * 청크는 직렬화해서 길이와 같이 보내고, 워커 서버가 보낸 결과는 읽기 스레드가 replyChannel에 넣는다.
+ * local()은 같은 JVM에 워커 서버를 띄우고 접속해서 한 서버에서 소켓 전송까지 확인할 수 있다.
+ */
+@Slf4j
+public class SocketChunkChannel implements ChunkChannel {
+
+    private final Socket socket;
+    private final DataOutputStream output;
+    private final QueueChannel replyChannel = new QueueChannel();
+    private final MessageChannel requestChannel;
+
+    private SocketChunkWorkerServer server;
+
+    public SocketChunkChannel(String host, int port) {
+        try {
+            this.socket = new Socket(host, port);
+            this.socket.setTcpNoDelay(true);
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("워커 서버에 접속하지 못했습니다. " + host + ":" + port, e);
+        }
+        this.requestChannel = (message, timeout) -> {
+            try {
+                writeFrame(output, SerializationUtils.serialize(message.getPayload()));
+                return true;
+            } catch (IOException e) {
+                throw new MessageDeliveryException(message, "청크를 보내지 못했습니다.", e);
+            }
+        };
+
+        Thread reader = new Thread(this::receive, "chunk-reply-" + socket.getLocalPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public static SocketChunkChannel local(ChunkWorker<?> worker, int workers) {
+        SocketChunkWorkerServer server = new SocketChunkWorkerServer(worker, 0, workers);
+        SocketChunkChannel channel = new SocketChunkChannel(InetAddress.getLoopbackAddress().getHostAddress(), server.getPort());
+        channel.server = server;
+        return channel;
+    }
+
+    private void receive() {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            byte[] response;
+            while ((response = readFrame(input)) != null) {
+                replyChannel.send(new GenericMessage<>((ChunkResponse) SerializationUtils.deserialize(response)));
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                log.warn("워커 서버와의 연결이 끊어졌습니다.", e);
+            }
+        }
+    }
+
+    @Override
+    public MessageChannel getRequestChannel() {
+        return requestChannel;
+    }
+
+    @Override
+    public PollableChannel getReplyChannel() {
+        return replyChannel;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.close();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 여러 스레드가 같은 연결로 보내므로 한 메시지를 다 쓸 때까지 잠근다.
+     */
+    static void writeFrame(DataOutputStream output, byte[] bytes) throws IOException {
+        synchronized (output) {
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            output.flush();
+        }
+    }
+
+    /**
+     * 연결이 닫혔으면 null을 돌려준다.
+     */
+    static byte[] readFrame(DataInputStream input) throws IOException {
+        int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,130 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 소켓으로 받은 청크를 ChunkWorker로 처리하는 워커 서버이다. SocketChunkChannel이 접속한다.
+ * 매니저와 같은 processor, writer를 가진 ChunkWorker만 있으면 다른 JVM에서도 실행할 수 있다.
+ *
+ * 메시지는 길이(int)와 직렬화한 ChunkRequest, ChunkResponse 바이트로 주고받는다. (SocketChunkChannel.writeFrame)
+ * 접속마다 스레드 하나가 청크를 읽어서 workers 개의 스레드에 넘기고, 처리가 끝난 순서대로 결과를 보낸다.
+ */
+@Slf4j
+public class SocketChunkWorkerServer implements AutoCloseable {
+
+    private final ChunkWorker<?> worker;
+    private final ServerSocket serverSocket;
+    private final ThreadPoolExecutor executor;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param port 0이면 비어 있는 포트를 사용한다. (getPort())
+     */
+    public SocketChunkWorkerServer(ChunkWorker<?> worker, int port, int workers) {
+        this.worker = worker;
+        try {
+            this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException("워커 서버를 열지 못했습니다. port : " + port, e);
+        }
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("chunk-worker-"));
+
+        Thread acceptor = new Thread(this::accept, "chunk-worker-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+
+                Thread reader = new Thread(() -> receive(socket), "chunk-worker-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("워커 서버 접속을 받지 못했습니다.", e);
+                }
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            byte[] request;
+            while ((request = SocketChunkChannel.readFrame(input)) != null) {
+                byte[] chunk = request;
+                executor.execute(() -> send(output, handle(chunk)));
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                log.warn("매니저와의 연결이 끊어졌습니다.", e);
+            }
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    /**
+     * 예외가 나도 결과를 보내야 매니저가 기다리지 않고 실패한다.
+     */
+    private byte[] handle(byte[] request) {
+        try {
+            return worker.handle(request);
+        } catch (Throwable e) {
+            return worker.failure(request, e);
+        }
+    }
+
+    private void send(DataOutputStream output, byte[] response) {
+        try {
+            SocketChunkChannel.writeFrame(output, response);
+        } catch (IOException e) {
+            log.warn("청크 결과를 보내지 못했습니다.", e);
+        }
+    }
+
+    /**
+     * 처리 중인 청크가 끝날 때까지 기다린 다음 접속을 닫는다.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+            executor.getQueue().clear();
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.Query;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hibernate StatelessSession으로 쿼리 결과를 FORWARD_ONLY 커서로 끝까지 읽는 읽기 전용 리더이다.
+ * 쿼리에는 :lastKey 조건과 키 정렬이 들어가야 한다.
+ *   ex) select p from Person p where p.id > :lastKey order by p.id
+ *
+ * StatelessSession은 영속성 컨텍스트가 없어서 읽은 엔티티를 보관하지 않고 dirty checking용 스냅샷도 만들지 않는다.
+ * 그래서 테이블 크기와 상관없이 메모리는 fetchSize 만큼의 행만 사용한다.
+ * 대신 읽은 엔티티는 준영속 상태이고 지연 로딩 연관관계는 읽을 수 없으므로 fetch join으로 같이 읽어야 한다.
+ *
+ * JpaKeysetPagingItemReader처럼 마지막으로 넘겨준 아이템의 키를 ExecutionContext에 저장하고,
+ * 재시작하면 그 다음 키부터 커서를 연다.
+ * MySQL(Connector/J)은 fetchSize를 Integer.MIN_VALUE로 주거나 URL에 useCursorFetch=true를 줘야 행을 나눠서 가져온다.
+ */
+public class StatelessCursorItemReader<T> extends AbstractBulkItemCountingItemReader<T> {
+
+    private static final String LAST_KEY = "last.key";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final String queryString;
+    private final Function<T, Object> keyExtractor;
+    private final Object startKey;
+
+    private Map<String, Object> parameterValues = new HashMap<>();
+    private int fetchSize = 1_000;
+
+    private StatelessSession session;
+    private ScrollableResults results;
+    private Object lastKey;
+
+    /**
+     * @param keyExtractor 아이템에서 정렬 키(id)를 꺼내는 함수
+     * @param startKey     처음 읽을 때 :lastKey에 들어갈 값, 키 타입과 같은 타입이어야 한다.
+     */
+    public StatelessCursorItemReader(String name, EntityManagerFactory entityManagerFactory, String queryString,
+                                     Function<T, Object> keyExtractor, Object startKey) {
+        setName(name);
+        this.entityManagerFactory = entityManagerFactory;
+        this.queryString = queryString;
+        this.keyExtractor = keyExtractor;
+        this.startKey = startKey;
+    }
+
+    public void setParameterValues(Map<String, Object> parameterValues) {
+        this.parameterValues = parameterValues;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T doRead() throws Exception {
+        if (results == null) {
+            results = createQuery().scroll(ScrollMode.FORWARD_ONLY);
+        }
+
+        if (!results.next()) {
+            return null;
+        }
+
+        T item = (T) results.get(0);
+        lastKey = keyExtractor.apply(item);
+
+        return item;
+    }
+
+    /**
+     * 커서는 재시작 위치(lastKey)가 정해진 다음 처음 읽을 때 연다.
+     * StatelessSession은 2차 캐시를 쓰지 않고 CacheMode를 바꾸면 예외가 나므로 캐시 설정은 하지 않는다.
+     */
+    private Query<?> createQuery() {
+        Query<?> query = session.createQuery(queryString)
+                .setParameter("lastKey", lastKey)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true);
+        parameterValues.forEach(query::setParameter);
+
+        return query;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        session = entityManagerFactory.unwrap(SessionFactory.class).openStatelessSession();
+        results = null;
+        lastKey = startKey;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        super.open(executionContext);
+
+        String key = getExecutionContextKey(LAST_KEY);
+        if (isSaveState() && executionContext.containsKey(key)) {
+            lastKey = executionContext.get(key);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+
+        if (isSaveState()) {
+            executionContext.put(getExecutionContextKey(LAST_KEY), lastKey);
+        }
+    }
+
+    /**
+     * 재시작 위치는 open()에서 lastKey로 복원하므로 앞에서부터 다시 읽어서 건너뛰지 않는다.
+     */
+    @Override
+    protected void jumpToItem(int itemIndex) {
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (results != null) {
+            results.close();
+            results = null;
+        }
+        if (session != null) {
+            session.close();
+            session = null;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.spring.batch.springbatchstudy.part3.BulkReadStepBuilder;
+import study.spring.batch.springbatchstudy.part3.MultiRowInsertItemWriter;
+import study.spring.batch.springbatchstudy.part3.Person;
+
+import javax.sql.DataSource;
+
+/**
+ * 부하 테스트용 데이터를 만드는 배치
+ * userCount      : 만들 Users 건수 (기본 0, 0이면 만들지 않는다)
+ * personCount    : 만들 Person 건수 (기본 0)
+ * levelWeights   : Users 금액의 등급 구간별 비율 (기본 NORMAL:25,SILVER:25,GOLD:25,VIP:25)
+ * personNames    : Person 이름 종류 수 (기본 제한 없음, 작게 주면 중복 이름이 많아진다)
+ * gridSize       : 나눌 파티션 수 (기본 1)
+ * poolSize       : 파티션을 실행할 스레드 수 (기본 1)
+ * seed           : 같은 seed면 같은 데이터가 만들어진다 (기본 0)
+ *
+ * 리더는 인덱스로 아이템을 만들고 writer는 청크를 multi-row insert로 넣기 때문에
+ * 건수와 상관없이 메모리는 청크 크기만큼만 사용한다.
+ * 워커 스텝은 BulkReadStepBuilder로 만들어서 리더가 청크 크기만큼 한 번에 만들어 넘긴다.
+ */
+@Configuration
+@Slf4j
+@RequiredArgsConstructor
+public class DataGeneratorConfiguration {
+
+    private static final int CHUNK_SIZE = 1_000;
+    private static final int ROWS_PER_STATEMENT = 100;
+
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final DataSource dataSource;
+
+    @Bean
+    public Job generateDataJob() throws Exception {
+        return this.jobBuilderFactory.get("generateDataJob")
+                .incrementer(new RunIdIncrementer())
+                .start(this.generateUsersStep())
+                .next(this.generatePersonStep())
+                .build();
+    }
+
+    @Bean
+    public Step generateUsersStep() throws Exception {
+        return this.stepBuilderFactory.get("generateUsersStep")
+                .partitioner("generateUsersWorkerStep", this.usersIndexPartitioner(null))
+                .partitionHandler(this.generateUsersPartitionHandler(null))
+                .build();
+    }
+
+    @Bean
+    public Step generatePersonStep() throws Exception {
+        return this.stepBuilderFactory.get("generatePersonStep")
+                .partitioner("generatePersonWorkerStep", this.personIndexPartitioner(null))
+                .partitionHandler(this.generatePersonPartitionHandler(null))
+                .build();
+    }
+
+    @Bean
+    public Step generateUsersWorkerStep() {
+        return new BulkReadStepBuilder<>(this.stepBuilderFactory.get("generateUsersWorkerStep")
+                .<Users, Users>chunk(CHUNK_SIZE)
+                .reader(this.usersGeneratedItemReader(null, null))
+                .writer(usersInsertItemWriter()))
+                .build();
+    }
+
+    @Bean
+    public Step generatePersonWorkerStep() {
+        return new BulkReadStepBuilder<>(this.stepBuilderFactory.get("generatePersonWorkerStep")
+                .<Person, Person>chunk(CHUNK_SIZE)
+                .reader(this.personGeneratedItemReader(null, null))
+                .writer(personInsertItemWriter()))
+                .build();
+    }
+
+    /**
+     * 0 ~ userCount - 1 인덱스를 gridSize 개의 구간으로 나눈다.
+     */
+    @Bean
+    @JobScope
+    public IdRangePartitioner usersIndexPartitioner(@Value("#{jobParameters[userCount]}") String userCount) {
+        long count = StringUtils.isNotEmpty(userCount) ? Long.parseLong(userCount) : 0L;
+        return new IdRangePartitioner(() -> 0L, () -> count - 1);
+    }
+
+    @Bean
+    @JobScope
+    public IdRangePartitioner personIndexPartitioner(@Value("#{jobParameters[personCount]}") String personCount) {
+        long count = StringUtils.isNotEmpty(personCount) ? Long.parseLong(personCount) : 0L;
+        return new IdRangePartitioner(() -> 0L, () -> count - 1);
+    }
+
+    @Bean
+    @JobScope
+    public TaskExecutorPartitionHandler generateUsersPartitionHandler(@Value("#{jobParameters[gridSize]}") String gridSize) {
+        return partitionHandler(this.generateUsersWorkerStep(), gridSize);
+    }
+
+    @Bean
+    @JobScope
+    public TaskExecutorPartitionHandler generatePersonPartitionHandler(@Value("#{jobParameters[gridSize]}") String gridSize) {
+        return partitionHandler(this.generatePersonWorkerStep(), gridSize);
+    }
+
+    private TaskExecutorPartitionHandler partitionHandler(Step step, String gridSize) {
+        TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+        partitionHandler.setStep(step);
+        partitionHandler.setTaskExecutor(this.generatorTaskExecutor(null));
+        partitionHandler.setGridSize(StringUtils.isNotEmpty(gridSize) ? Integer.parseInt(gridSize) : 1);
+        return partitionHandler;
+    }
+
+    @Bean
+    @JobScope
+    public ThreadPoolTaskExecutor generatorTaskExecutor(@Value("#{jobParameters[poolSize]}") String poolSize) {
+        int size = StringUtils.isNotEmpty(poolSize) ? Integer.parseInt(poolSize) : 1;
+
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(size);
+        taskExecutor.setMaxPoolSize(size);
+        taskExecutor.setThreadNamePrefix("data-generator-");
+        taskExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        return taskExecutor;
+    }
+
+    @Bean
+    @StepScope
+    public GeneratedItemReader<Users> usersGeneratedItemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
+                                                               @Value("#{stepExecutionContext[maxId]}") Long maxId) {
+        SyntheticDataGenerator generator = this.syntheticDataGenerator(null, null, null);
+        return new GeneratedItemReader<>("usersGeneratedItemReader", minId, maxId, generator::users);
+    }
+
+    @Bean
+    @StepScope
+    public GeneratedItemReader<Person> personGeneratedItemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
+                                                                 @Value("#{stepExecutionContext[maxId]}") Long maxId) {
+        SyntheticDataGenerator generator = this.syntheticDataGenerator(null, null, null);
+        return new GeneratedItemReader<>("personGeneratedItemReader", minId, maxId, generator::person);
+    }
+
+    /**
+     * 워커 스레드에서는 @JobScope 빈을 쓸 수 없어서 워커 스텝마다 @StepScope로 만든다.
+     */
+    @Bean
+    @StepScope
+    public SyntheticDataGenerator syntheticDataGenerator(@Value("#{jobParameters[seed]}") String seed,
+                                                         @Value("#{jobParameters[levelWeights]}") String levelWeights,
+                                                         @Value("#{jobParameters[personNames]}") String personNames) {
+        return new SyntheticDataGenerator(
+                StringUtils.isNotEmpty(seed) ? Long.parseLong(seed) : 0L,
+                SyntheticDataGenerator.parseLevelWeights(
+                        StringUtils.isNotEmpty(levelWeights) ? levelWeights : "NORMAL:25,SILVER:25,GOLD:25,VIP:25"),
+                StringUtils.isNotEmpty(personNames) ? Long.parseLong(personNames) : Long.MAX_VALUE);
+    }
+
+    private ItemWriter<Users> usersInsertItemWriter() {
+        return new MultiRowInsertItemWriter<>(dataSource, "users",
+                new String[]{"username", "level", "total_amount", "modified_date"},
+                user -> new Object[]{user.getUsername(), user.getLevel().name(), user.getTotalAmount(), user.getModifiedDate()},
+                ROWS_PER_STATEMENT);
+    }
+
+    private ItemWriter<Person> personInsertItemWriter() {
+        return new MultiRowInsertItemWriter<>(dataSource, "person",
+                new String[]{"name", "age", "address"},
+                person -> new Object[]{person.getName(), person.getAge(), person.getAddress()},
+                ROWS_PER_STATEMENT);
+    }
+}
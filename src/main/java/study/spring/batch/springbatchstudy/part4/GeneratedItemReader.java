@@ -0,0 +1,48 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import study.spring.batch.springbatchstudy.part3.AbstractBulkItemCountingItemReader;
+
+import java.util.function.LongFunction;
+
+/**
+ * fromIndex ~ toIndex 번째 아이템을 generator로 하나씩 만들어서 돌려주는 리더이다.
+ * 미리 리스트로 만들어 두지 않으므로 건수가 많아도 메모리는 청크 크기만큼만 사용한다.
+ * 아이템은 인덱스만으로 만들어지므로 재시작하면 저장된 읽은 건수 다음 인덱스부터 다시 만든다.
+ */
+public class GeneratedItemReader<T> extends AbstractBulkItemCountingItemReader<T> {
+
+    private final long fromIndex;
+    private final long toIndex;
+    private final LongFunction<T> generator;
+
+    public GeneratedItemReader(String name, long fromIndex, long toIndex, LongFunction<T> generator) {
+        setName(name);
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.generator = generator;
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        // read()에서 currentItemCount를 먼저 올린 다음 doRead()를 호출한다.
+        long index = fromIndex + getCurrentItemCount() - 1;
+
+        if (index > toIndex) {
+            return null;
+        }
+
+        return generator.apply(index);
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+    }
+}
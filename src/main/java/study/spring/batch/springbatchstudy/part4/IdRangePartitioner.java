@@ -0,0 +1,50 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * minId ~ maxId 범위를 gridSize 개의 구간으로 나누어 파티션마다 ExecutionContext에 minId, maxId를 담는다.
+ * 워커 스텝의 리더는 stepExecutionContext에서 자기 구간을 꺼내서 읽는다.
+ */
+@RequiredArgsConstructor
+public class IdRangePartitioner implements Partitioner {
+
+    public static final String MIN_ID = "minId";
+    public static final String MAX_ID = "maxId";
+
+    private final LongSupplier minIdSupplier;
+    private final LongSupplier maxIdSupplier;
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        long minId = minIdSupplier.getAsLong();
+        long maxId = maxIdSupplier.getAsLong();
+        long targetSize = (maxId - minId) / gridSize + 1;
+
+        Map<String, ExecutionContext> result = new HashMap<>();
+
+        long start = minId;
+        int number = 0;
+
+        // 데이터가 없으면 maxId < minId 이므로 파티션이 만들어지지 않는다.
+        while (start <= maxId) {
+            long end = Math.min(start + targetSize - 1, maxId);
+
+            ExecutionContext executionContext = new ExecutionContext();
+            executionContext.putLong(MIN_ID, start);
+            executionContext.putLong(MAX_ID, end);
+            result.put("partition" + number, executionContext);
+
+            start = end + 1;
+            number++;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * level_rule 테이블에서 등급 기준을 읽는다.
+ * 테이블이 없거나 비어 있으면 Users.Level에 정의된 기준을 사용한다.
+ */
+@Slf4j
+public class JdbcLevelRuleLoader implements Supplier<List<LevelRule>> {
+
+    private static final String SELECT_SQL = "select level, next_amount, next_level from level_rule";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcLevelRuleLoader(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public List<LevelRule> get() {
+        List<LevelRule> rules;
+
+        try {
+            rules = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new LevelRule(
+                    Users.Level.valueOf(rs.getString("level")),
+                    rs.getInt("next_amount"),
+                    rs.getString("next_level") != null ? Users.Level.valueOf(rs.getString("next_level")) : null));
+        } catch (DataAccessException e) {
+            log.warn("level_rule 테이블을 읽지 못해서 기본 등급 기준을 사용합니다. {}", e.getMessage());
+            return Users.Level.defaultRules();
+        }
+
+        if (rules.isEmpty()) {
+            return Users.Level.defaultRules();
+        }
+
+        return rules;
+    }
+}
@@ -0,0 +1,26 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import lombok.Getter;
+
+/**
+ * 등급 상향 기준 한 줄, level 회원의 totalAmount가 nextAmount 이상이면 nextLevel로 올라간다.
+ * nextLevel이 없으면 최고 등급이다.
+ *
+ * level_rule 테이블은 JPA 엔티티로 만들지 않고 schema.sql, data.sql로 만든다.
+ * ddl-auto: create가 잡을 시작할 때마다 테이블을 지우지 않게 하기 위해서다.
+ * 기준을 바꾸려면 level_rule 행을 update 하면 된다. 다음 잡 실행부터 코드 변경 없이 반영되고,
+ * data.sql은 없는 등급만 넣으므로 애플리케이션을 다시 시작해도 바뀐 기준이 남는다.
+ */
+@Getter
+public class LevelRule {
+
+    private final Users.Level level;
+    private final int nextAmount;
+    private final Users.Level nextLevel;
+
+    public LevelRule(Users.Level level, int nextAmount, Users.Level nextLevel) {
+        this.level = level;
+        this.nextAmount = nextAmount;
+        this.nextLevel = nextLevel;
+    }
+}
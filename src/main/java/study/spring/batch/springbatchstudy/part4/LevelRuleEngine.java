@@ -0,0 +1,137 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * 등급 기준(LevelRule)을 정렬된 int 배열로 컴파일해두고 등급 상향 여부와 올라갈 등급을 구한다.
+ *   thresholds : 기준 금액 오름차순, targets : 같은 위치의 기준 금액 이상이면 올라갈 등급의 ordinal
+ * 조회는 배열 이진 탐색만 하므로 객체를 만들지 않는다.
+ *
+ * 기준은 생성할 때 Users.Level에 정의된 값으로 시작하고 reload()를 호출하면 ruleLoader에서 다시 읽는다.
+ * 컴파일된 배열은 통째로 바꾸므로 실행 중인 스텝은 항상 한 가지 기준으로만 판단한다.
+ */
+public class LevelRuleEngine {
+
+    private static final Users.Level[] LEVELS = Users.Level.values();
+
+    private final Supplier<List<LevelRule>> ruleLoader;
+    private volatile CompiledRules rules;
+
+    public LevelRuleEngine(Supplier<List<LevelRule>> ruleLoader) {
+        this.ruleLoader = ruleLoader;
+        this.rules = compile(Users.Level.defaultRules());
+    }
+
+    /**
+     * 잡이 시작할 때마다 호출해서 바뀐 기준을 반영한다.
+     */
+    public void reload() {
+        this.rules = compile(ruleLoader.get());
+    }
+
+    public boolean availableLevelUp(Users.Level level, int totalAmount) {
+        if (level == null) {
+            return false;
+        }
+
+        CompiledRules current = this.rules;
+        int ordinal = level.ordinal();
+        return current.hasNextLevel[ordinal] && totalAmount >= current.nextAmounts[ordinal];
+    }
+
+    /**
+     * totalAmount 이하인 기준 금액 중 가장 큰 것의 등급, 어느 기준에도 못 미치면 가장 낮은 등급이다.
+     */
+    public Users.Level nextLevel(int totalAmount) {
+        CompiledRules current = this.rules;
+        int index = Arrays.binarySearch(current.thresholds, totalAmount);
+        int position = index >= 0 ? index : -index - 2;
+
+        if (position < 0) {
+            return LEVELS[current.baseLevel];
+        }
+        return LEVELS[current.targets[position]];
+    }
+
+    /**
+     * 다음 등급이 있는 등급별 상향 기준 금액, SQL 조건을 만들 때 사용한다.
+     */
+    public Map<Users.Level, Integer> levelUpThresholds() {
+        CompiledRules current = this.rules;
+        Map<Users.Level, Integer> thresholds = new EnumMap<>(Users.Level.class);
+
+        for (Users.Level level : LEVELS) {
+            if (current.hasNextLevel[level.ordinal()]) {
+                thresholds.put(level, current.nextAmounts[level.ordinal()]);
+            }
+        }
+
+        return thresholds;
+    }
+
+    static CompiledRules compile(List<LevelRule> levelRules) {
+        int[] nextAmounts = new int[LEVELS.length];
+        boolean[] hasNextLevel = new boolean[LEVELS.length];
+        TreeMap<Integer, Users.Level> targetByAmount = new TreeMap<>();
+        Set<Users.Level> baseLevels = EnumSet.noneOf(Users.Level.class);
+        Set<Users.Level> nextLevels = EnumSet.noneOf(Users.Level.class);
+
+        for (LevelRule rule : levelRules) {
+            baseLevels.add(rule.getLevel());
+
+            if (rule.getNextLevel() == null) {
+                continue;
+            }
+
+            Users.Level previous = targetByAmount.put(rule.getNextAmount(), rule.getNextLevel());
+            if (previous != null && previous != rule.getNextLevel()) {
+                throw new IllegalArgumentException("같은 기준 금액에 다른 등급이 있습니다. amount : " + rule.getNextAmount());
+            }
+
+            nextAmounts[rule.getLevel().ordinal()] = rule.getNextAmount();
+            hasNextLevel[rule.getLevel().ordinal()] = true;
+            nextLevels.add(rule.getNextLevel());
+        }
+
+        // 다른 등급에서 올라올 수 없는 등급이 가장 낮은 등급이다.
+        baseLevels.removeAll(nextLevels);
+        if (baseLevels.isEmpty()) {
+            throw new IllegalArgumentException("가장 낮은 등급을 찾을 수 없습니다. rules : " + levelRules.size());
+        }
+
+        int[] thresholds = new int[targetByAmount.size()];
+        int[] targets = new int[targetByAmount.size()];
+        int index = 0;
+
+        for (Map.Entry<Integer, Users.Level> entry : targetByAmount.entrySet()) {
+            thresholds[index] = entry.getKey();
+            targets[index] = entry.getValue().ordinal();
+            index++;
+        }
+
+        return new CompiledRules(thresholds, targets, baseLevels.iterator().next().ordinal(), nextAmounts, hasNextLevel);
+    }
+
+    static final class CompiledRules {
+        private final int[] thresholds;
+        private final int[] targets;
+        private final int baseLevel;
+        private final int[] nextAmounts;
+        private final boolean[] hasNextLevel;
+
+        private CompiledRules(int[] thresholds, int[] targets, int baseLevel, int[] nextAmounts, boolean[] hasNextLevel) {
+            this.thresholds = thresholds;
+            this.targets = targets;
+            this.baseLevel = baseLevel;
+            this.nextAmounts = nextAmounts;
+            this.hasNextLevel = hasNextLevel;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * LevelRuleEngine의 기준 금액으로 등급 상향 대상만 조회하는 JPQL 조건을 만든다.
+ *   (u.level = :level0 and u.totalAmount >= :amount0) or (u.level = :level1 and u.totalAmount >= :amount1) ...
+ * 대상이 아닌 회원은 DB에서 걸러지므로 엔티티로 만들어지지 않는다.
+ * DB에서 바로 등급을 바꾸는 update 문에 쓸 SQL 조건과 case 식도 같은 기준으로 만든다.
+ */
+public class LevelUpCondition {
+
+    private LevelUpCondition() {
+    }
+
+    public static String jpql(String alias, LevelRuleEngine levelRuleEngine) {
+        StringBuilder condition = new StringBuilder();
+        int index = 0;
+
+        for (Users.Level level : levelRuleEngine.levelUpThresholds().keySet()) {
+            if (index > 0) {
+                condition.append(" or ");
+            }
+            condition.append("(").append(alias).append(".level = :level").append(index)
+                    .append(" and ").append(alias).append(".totalAmount >= :amount").append(index).append(")");
+            index++;
+        }
+
+        return condition.toString();
+    }
+
+    public static Map<String, Object> parameterValues(LevelRuleEngine levelRuleEngine) {
+        Map<String, Object> parameterValues = new HashMap<>();
+        int index = 0;
+
+        for (Map.Entry<Users.Level, Integer> threshold : levelRuleEngine.levelUpThresholds().entrySet()) {
+            parameterValues.put("level" + index, threshold.getKey());
+            parameterValues.put("amount" + index, threshold.getValue());
+            index++;
+        }
+
+        return parameterValues;
+    }
+
+    /**
+     * jpql()과 같은 조건의 SQL, 값은 등급 기준에서 나온 상수라서 바로 넣는다.
+     *   (level = 'NORMAL' and total_amount >= 200000) or ...
+     */
+    public static String sql(LevelRuleEngine levelRuleEngine) {
+        StringBuilder condition = new StringBuilder();
+
+        for (Map.Entry<Users.Level, Integer> threshold : levelRuleEngine.levelUpThresholds().entrySet()) {
+            if (condition.length() > 0) {
+                condition.append(" or ");
+            }
+            condition.append("(level = '").append(threshold.getKey().name())
+                    .append("' and total_amount >= ").append(threshold.getValue()).append(")");
+        }
+
+        return condition.toString();
+    }
+
+    /**
+     * LevelRuleEngine.nextLevel()을 SQL case 식으로 옮긴다.
+     * 기준 금액이 큰 것부터 비교하고, 기준 금액마다 올라갈 등급은 nextLevel()로 구한다.
+     *   case when total_amount >= 500000 then 'VIP' when total_amount >= 300000 then 'GOLD' ... else level end
+     */
+    public static String nextLevelCaseSql(LevelRuleEngine levelRuleEngine) {
+        TreeSet<Integer> amounts = new TreeSet<>(levelRuleEngine.levelUpThresholds().values());
+        StringBuilder caseSql = new StringBuilder("case");
+
+        for (Integer amount : amounts.descendingSet()) {
+            caseSql.append(" when total_amount >= ").append(amount)
+                    .append(" then '").append(levelRuleEngine.nextLevel(amount).name()).append("'");
+        }
+
+        return caseSql.append(" else level end").toString();
+    }
+}
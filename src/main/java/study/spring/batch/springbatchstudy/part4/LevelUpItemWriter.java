@@ -0,0 +1,73 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 청크의 회원을 올라갈 등급별로 묶어서 등급마다 update 문 하나로 반영한다.
+ *   update users set level = ?, updated_date = ?, modified_date = ? where id in (...)
+ * userRepository.save()처럼 엔티티를 merge 하지 않으므로 회원마다 select, update가 나가지 않는다.
+ * 스텝의 트랜잭션 매니저가 커넥션을 공유하므로 청크 트랜잭션 안에서 실행된다.
+ */
+public class LevelUpItemWriter implements ItemWriter<Users> {
+
+    private static final String UPDATE_SQL = "update users set level = :level, updated_date = :updatedDate, modified_date = :updatedDate where id in (:ids)";
+
+    // DB마다 in 절에 넣을 수 있는 값의 개수 제한이 있어서 나눠서 실행한다.
+    private static final int MAX_IN_SIZE = 1000;
+
+    private static final Users.Level[] LEVELS = Users.Level.values();
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final LevelRuleEngine levelRuleEngine;
+    private final LevelUpStatistics levelUpStatistics;
+
+    public LevelUpItemWriter(DataSource dataSource, LevelRuleEngine levelRuleEngine, LevelUpStatistics levelUpStatistics) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.levelRuleEngine = levelRuleEngine;
+        this.levelUpStatistics = levelUpStatistics;
+    }
+
+    @Override
+    public void write(List<? extends Users> items) throws Exception {
+        Map<Users.Level, List<Long>> idsByLevel = new EnumMap<>(Users.Level.class);
+        long[] transitions = new long[LEVELS.length * LEVELS.length];
+
+        for (Users user : items) {
+            Users.Level from = user.getLevel();
+            Users.Level nextLevel = levelRuleEngine.nextLevel(user.getTotalAmount());
+            idsByLevel.computeIfAbsent(nextLevel, level -> new ArrayList<>()).add(user.getId());
+            transitions[from.ordinal() * LEVELS.length + nextLevel.ordinal()]++;
+        }
+
+        LocalDateTime updatedDate = LocalDateTime.now();
+
+        for (Map.Entry<Users.Level, List<Long>> entry : idsByLevel.entrySet()) {
+            List<Long> ids = entry.getValue();
+
+            for (int from = 0; from < ids.size(); from += MAX_IN_SIZE) {
+                MapSqlParameterSource parameterSource = new MapSqlParameterSource()
+                        .addValue("level", entry.getKey().name())
+                        .addValue("updatedDate", updatedDate)
+                        .addValue("ids", ids.subList(from, Math.min(from + MAX_IN_SIZE, ids.size())));
+
+                jdbcTemplate.update(UPDATE_SQL, parameterSource);
+            }
+        }
+
+        // 청크가 커밋되어야 LevelUpStatistics의 합계에 들어간다.
+        for (int i = 0; i < transitions.length; i++) {
+            if (transitions[i] > 0) {
+                levelUpStatistics.add(LEVELS[i / LEVELS.length], LEVELS[i % LEVELS.length], transitions[i]);
+            }
+        }
+    }
+}
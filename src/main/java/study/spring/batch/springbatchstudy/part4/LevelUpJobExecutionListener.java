@@ -5,26 +5,39 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionListener;
 
-import java.time.LocalDateTime;
-import java.util.Collection;
+import java.util.Map;
 
+/**
+ * 업데이트된 회원을 다시 조회하지 않고 LevelUpStatistics가 JobExecution에 올려둔 건수로 결과를 출력한다.
+ * 잡이 시작할 때 등급 기준을 다시 읽어서 잡 실행마다 바뀐 기준이 반영되게 한다.
+ */
 @Slf4j
 @RequiredArgsConstructor
 public class LevelUpJobExecutionListener implements JobExecutionListener {
 
-    private final UserRepository userRepository;
+    private final LevelRuleEngine levelRuleEngine;
+
     @Override
     public void beforeJob(JobExecution jobExecution) {
-
+        levelRuleEngine.reload();
     }
 
     @Override
     public void afterJob(JobExecution jobExecution) {
-        Collection<Users> users = userRepository.findAllByUpdatedDate(LocalDateTime.now());
+        long total = 0;
 
         long time = jobExecution.getEndTime().getTime() - jobExecution.getStartTime().getTime();
         log.info("회원등금 업데이트 배치 프로그램");
         log.info("---------------------------");
-        log.info("총 데이터 처리 {}건, 처리시간 {}millis", users.size(), time);
+
+        for (Map.Entry<String, Object> entry : jobExecution.getExecutionContext().entrySet()) {
+            if (entry.getKey().startsWith(LevelUpStatistics.KEY_PREFIX)) {
+                long count = ((Number) entry.getValue()).longValue();
+                log.info("{} : {}건", entry.getKey(), count);
+                total += count;
+            }
+        }
+
+        log.info("총 데이터 처리 {}건, 처리시간 {}millis", total, time);
     }
 }
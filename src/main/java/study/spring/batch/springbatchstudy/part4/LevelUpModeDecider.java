@@ -0,0 +1,29 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+
+/**
+ * mode 잡 파라미터로 회원등급 업데이트를 어떤 스텝으로 실행할지 결정한다.
+ * 파라미터가 없으면 기존처럼 단일 스레드 chunk 스텝으로 실행한다.
+ */
+public class LevelUpModeDecider implements JobExecutionDecider {
+
+    public static final String CHUNK = "CHUNK";
+    public static final String PARTITION = "PARTITION";
+    public static final String SQL = "SQL";
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        String mode = jobExecution.getJobParameters().getString("mode");
+
+        if (StringUtils.isNotEmpty(mode)) {
+            return new FlowExecutionStatus(mode.toUpperCase());
+        }
+
+        return new FlowExecutionStatus(CHUNK);
+    }
+}
@@ -0,0 +1,78 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+
+/**
+ * 회원을 읽지 않고 DB에서 바로 등급을 올리는 tasklet이다.
+ * id를 windowSize 만큼씩 나눠서 구간마다 아래 update 문을 한 트랜잭션으로 실행한다.
+ *   update users set level = case ... end, updated_date = ?, modified_date = ? where id between ? and ? and (등급 상향 조건)
+ *
+ * 구간이 끝날 때마다 마지막 id를 StepExecution의 ExecutionContext에 저장하므로 실패하면 다음 구간부터 재시작한다.
+ * 업데이트된 건수는 스텝의 writeCount에 더한다.
+ * watermark가 있으면 그 이후에 바뀐 회원만 대상으로 하고, id 범위도 그 회원들 안에서 구한다.
+ */
+public class LevelUpSqlTasklet implements Tasklet {
+
+    private static final String LAST_ID = "levelUpSql.lastId";
+    private static final String MAX_ID = "levelUpSql.maxId";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int windowSize;
+    private final String updateSql;
+    private final String idRangeCondition;
+    private final Object[] idRangeArgs;
+    private final LevelUpStatistics levelUpStatistics;
+
+    public LevelUpSqlTasklet(DataSource dataSource, int windowSize, LocalDateTime watermark, LevelRuleEngine levelRuleEngine,
+                             LevelUpStatistics levelUpStatistics) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.windowSize = windowSize;
+        this.levelUpStatistics = levelUpStatistics;
+        this.idRangeCondition = watermark != null ? " where modified_date > ?" : "";
+        this.idRangeArgs = watermark != null ? new Object[]{watermark} : new Object[0];
+        this.updateSql = "update users set level = " + LevelUpCondition.nextLevelCaseSql(levelRuleEngine) + ", updated_date = ?, modified_date = ?"
+                + " where id between ? and ? and (" + LevelUpCondition.sql(levelRuleEngine) + ")"
+                + (watermark != null ? " and modified_date > ?" : "");
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        ExecutionContext executionContext = contribution.getStepExecution().getExecutionContext();
+
+        // 처음 실행될 때만 id 범위를 구하고, 재시작이면 저장해둔 범위를 그대로 사용한다.
+        if (!executionContext.containsKey(MAX_ID)) {
+            Long minId = jdbcTemplate.queryForObject("select min(id) from users" + idRangeCondition, Long.class, idRangeArgs);
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from users" + idRangeCondition, Long.class, idRangeArgs);
+
+            if (minId == null || maxId == null) {
+                return RepeatStatus.FINISHED;
+            }
+
+            executionContext.putLong(LAST_ID, minId - 1);
+            executionContext.putLong(MAX_ID, maxId);
+        }
+
+        long lastId = executionContext.getLong(LAST_ID);
+        long maxId = executionContext.getLong(MAX_ID);
+        long toId = Math.min(lastId + windowSize, maxId);
+
+        LocalDateTime now = LocalDateTime.now();
+        int updated = idRangeArgs.length > 0
+                ? jdbcTemplate.update(updateSql, now, now, lastId + 1, toId, idRangeArgs[0])
+                : jdbcTemplate.update(updateSql, now, now, lastId + 1, toId);
+
+        contribution.incrementWriteCount(updated);
+        levelUpStatistics.addBulk(updated);
+        executionContext.putLong(LAST_ID, toId);
+
+        return RepeatStatus.continueIf(toId < maxId);
+    }
+}
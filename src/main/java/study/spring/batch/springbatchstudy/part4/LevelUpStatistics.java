@@ -0,0 +1,118 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.Arrays;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 스텝이 실행되는 동안 등급 변경(from -> to) 건수를 모은다.
+ * writer가 청크마다 더하고, 스텝이 끝나면 JobExecution의 ExecutionContext에
+ * "levelUp.NORMAL.SILVER" 같은 키로 건수를 더해 둔다.
+ * 청크에서 더한 건수는 청크가 커밋된 다음(afterChunk) 합계에 옮기고, 롤백되면(afterChunkError) 버린다.
+ * 그래서 재시도나 skip 스캔으로 같은 회원을 다시 써도 커밋된 건수만 남는다.
+ * 스텝에 StepExecutionListener와 ChunkListener로 모두 등록해야 한다.
+ * 파티션 워커는 각자 @StepScope 인스턴스를 가지므로 스텝 실행 중에는 스레드끼리 경합하지 않는다.
+ */
+public class LevelUpStatistics implements StepExecutionListener, ChunkListener {
+
+    public static final String KEY_PREFIX = "levelUp.";
+
+    // mode=sql 처럼 어느 등급에서 올라갔는지 모르고 건수만 아는 경우
+    public static final String BULK_KEY = KEY_PREFIX + "bulk";
+
+    private static final Users.Level[] LEVELS = Users.Level.values();
+
+    private final LongAdder[] transitions = new LongAdder[LEVELS.length * LEVELS.length];
+    private final LongAdder bulk = new LongAdder();
+
+    // 아직 커밋되지 않은 청크의 건수
+    private final long[] chunkTransitions = new long[LEVELS.length * LEVELS.length];
+    private long chunkBulk;
+
+    public LevelUpStatistics() {
+        for (int i = 0; i < transitions.length; i++) {
+            transitions[i] = new LongAdder();
+        }
+    }
+
+    public void add(Users.Level from, Users.Level to, long count) {
+        chunkTransitions[from.ordinal() * LEVELS.length + to.ordinal()] += count;
+    }
+
+    public void addBulk(long count) {
+        chunkBulk += count;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        clearChunk();
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        for (int i = 0; i < chunkTransitions.length; i++) {
+            if (chunkTransitions[i] > 0) {
+                transitions[i].add(chunkTransitions[i]);
+            }
+        }
+        bulk.add(chunkBulk);
+        clearChunk();
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        clearChunk();
+    }
+
+    private void clearChunk() {
+        Arrays.fill(chunkTransitions, 0L);
+        chunkBulk = 0L;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    /**
+     * 파티션 워커들이 같은 JobExecution에 동시에 더할 수 있어서 ExecutionContext 단위로 동기화한다.
+     */
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        ExecutionContext jobExecutionContext = stepExecution.getJobExecution().getExecutionContext();
+
+        synchronized (jobExecutionContext) {
+            for (Users.Level from : LEVELS) {
+                for (Users.Level to : LEVELS) {
+                    long count = transitions[from.ordinal() * LEVELS.length + to.ordinal()].sum();
+
+                    if (count > 0) {
+                        addTo(jobExecutionContext, KEY_PREFIX + from.name() + "." + to.name(), count);
+                    }
+                }
+            }
+
+            if (bulk.sum() > 0) {
+                addTo(jobExecutionContext, BULK_KEY, bulk.sum());
+            }
+        }
+
+        return stepExecution.getExitStatus();
+    }
+
+    /**
+     * 재시작한 잡은 ExecutionContext가 역직렬화되면서 작은 값이 Integer로 돌아올 수 있어서 Number로 읽는다.
+     */
+    private void addTo(ExecutionContext executionContext, String key, long count) {
+        Object previous = executionContext.get(key);
+        long sum = previous == null ? count : ((Number) previous).longValue() + count;
+
+        executionContext.putLong(key, sum);
+    }
+}
@@ -0,0 +1,81 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 증분 모드에서 읽을 회원 범위(워터마크)를 잡의 ExecutionContext에 정한다.
+ *   levelUpWatermark.from : 마지막으로 COMPLETED 된 실행의 to, 없으면 저장하지 않는다(전체 조회)
+ *   levelUpWatermark.to   : 이번 실행 시작 시각, 이번 실행이 COMPLETED 되면 다음 실행의 from이 된다.
+ * 실패한 실행의 to는 다음 실행에서 사용하지 않으므로 실패하면 워터마크가 앞으로 가지 않는다.
+ * 재시작이면 이전 실행의 ExecutionContext가 그대로 넘어오므로 처음 정한 범위를 유지한다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LevelUpWatermarkListener implements JobExecutionListener {
+
+    public static final String FROM = "levelUpWatermark.from";
+    public static final String TO = "levelUpWatermark.to";
+
+    private static final int PAGE_SIZE = 20;
+
+    private final JobExplorer jobExplorer;
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        ExecutionContext executionContext = jobExecution.getExecutionContext();
+
+        if (executionContext.containsKey(TO)) {
+            return;
+        }
+
+        String from = findLastCompletedWatermark(jobExecution.getJobInstance());
+        if (from != null) {
+            executionContext.putString(FROM, from);
+        }
+        executionContext.putString(TO, LocalDateTime.now().toString());
+
+        log.info("회원등급 업데이트 워터마크 {} ~ {}", from, executionContext.getString(TO));
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+
+    }
+
+    /**
+     * 최근 잡 인스턴스부터 거꾸로 찾으면서 워터마크가 있는 COMPLETED 실행을 찾는다.
+     */
+    private String findLastCompletedWatermark(JobInstance currentInstance) {
+        String jobName = currentInstance.getJobName();
+
+        for (int start = 0; ; start += PAGE_SIZE) {
+            List<JobInstance> jobInstances = jobExplorer.getJobInstances(jobName, start, PAGE_SIZE);
+
+            for (JobInstance jobInstance : jobInstances) {
+                if (jobInstance.getInstanceId() == currentInstance.getInstanceId()) {
+                    continue;
+                }
+
+                for (JobExecution execution : jobExplorer.getJobExecutions(jobInstance)) {
+                    if (execution.getStatus() == BatchStatus.COMPLETED && execution.getExecutionContext().containsKey(TO)) {
+                        return execution.getExecutionContext().getString(TO);
+                    }
+                }
+            }
+
+            if (jobInstances.size() < PAGE_SIZE) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import study.spring.batch.springbatchstudy.part3.Person;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 부하 테스트용 Users, Person을 인덱스로부터 만든다.
+ * 같은 seed와 인덱스면 항상 같은 데이터가 나오므로 여러 스레드로 나눠서 만들거나 재시작해도 결과가 같다.
+ *
+ * Users의 totalAmount는 등급 구간별 비율을 따른다.
+ *   NORMAL : 0 ~ 200,000 미만, SILVER : 200,000 ~ 300,000 미만, GOLD : 300,000 ~ 500,000 미만, VIP : 500,000 ~ 1,000,000 미만
+ * 구간 경계는 Users.Level 기준 금액에서 구한다.
+ */
+public class SyntheticDataGenerator {
+
+    private static final String[] NAMES = {"김지수", "홍길동", "강감찬", "이순신", "유관순"};
+    private static final String[] ADDRESSES = {"안산", "서울", "인천", "수원", "부산"};
+
+    private final long seed;
+    private final int[] bandFrom;
+    private final int[] bandTo;
+    private final int[] cumulativeWeights;
+    private final long personNameCardinality;
+
+    /**
+     * @param levelWeights          등급 구간별 비율, 없는 등급은 0
+     * @param personNameCardinality Person 이름 종류 수, 작을수록 중복 이름이 많아진다.
+     */
+    public SyntheticDataGenerator(long seed, Map<Users.Level, Integer> levelWeights, long personNameCardinality) {
+        this.seed = seed;
+        this.personNameCardinality = personNameCardinality;
+
+        TreeSet<Integer> thresholds = new TreeSet<>(Users.Level.levelUpThresholds().values());
+        int bands = thresholds.size() + 1;
+        this.bandFrom = new int[bands];
+        this.bandTo = new int[bands];
+        this.cumulativeWeights = new int[bands];
+
+        int index = 0;
+        int from = 0;
+        for (Integer threshold : thresholds) {
+            bandFrom[index] = from;
+            bandTo[index] = threshold;
+            from = threshold;
+            index++;
+        }
+        bandFrom[index] = from;
+        bandTo[index] = from * 2;
+
+        int sum = 0;
+        for (int i = 0; i < bands; i++) {
+            sum += levelWeights.getOrDefault(Users.Level.getNextLevel(bandFrom[i]), 0);
+            cumulativeWeights[i] = sum;
+        }
+
+        if (sum <= 0) {
+            throw new IllegalArgumentException("등급 비율의 합은 0보다 커야 합니다. " + levelWeights);
+        }
+    }
+
+    /**
+     * "NORMAL:70,SILVER:15,GOLD:10,VIP:5" 형식의 등급 비율을 읽는다.
+     */
+    public static Map<Users.Level, Integer> parseLevelWeights(String levelWeights) {
+        Map<Users.Level, Integer> weights = new EnumMap<>(Users.Level.class);
+
+        for (String token : levelWeights.split(",")) {
+            String[] pair = token.trim().split(":");
+            weights.put(Users.Level.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+
+        return weights;
+    }
+
+    public Users users(long index) {
+        long hash = mix(seed ^ index);
+        int totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+        int pick = (int) ((hash >>> 1) % totalWeight);
+
+        int band = 0;
+        while (pick >= cumulativeWeights[band]) {
+            band++;
+        }
+
+        int amount = bandFrom[band] + (int) ((mix(hash) >>> 1) % (bandTo[band] - bandFrom[band]));
+
+        return Users.builder()
+                .username("test username" + index)
+                .totalAmount(amount)
+                .build();
+    }
+
+    public Person person(long index) {
+        long hash = mix(~seed ^ index);
+        long nameIndex = (hash >>> 1) % personNameCardinality;
+
+        return new Person(
+                NAMES[(int) (nameIndex % NAMES.length)] + nameIndex,
+                String.valueOf(1 + (mix(hash) >>> 1) % 99),
+                ADDRESSES[(int) ((hash >>> 33) % ADDRESSES.length)]);
+    }
+
+    /**
+     * SplitMix64의 섞는 함수, 객체를 만들지 않고 인덱스로부터 고르게 퍼진 값을 얻는다.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,21 +1,42 @@
 package study.spring.batch.springbatchstudy.part4;
 
+import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.item.ItemProcessor;
-import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JpaPagingItemReader;
-import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.spring.batch.springbatchstudy.part3.AdaptiveCompletionPolicy;
+import study.spring.batch.springbatchstudy.part3.JpaKeysetPagingItemReader;
+import study.spring.batch.springbatchstudy.part3.PrefetchItemReader;
+import study.spring.batch.springbatchstudy.part3.ProjectionItemReaderBuilder;
 
 import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 
 @Configuration
 @Slf4j
@@ -26,14 +47,32 @@ public class UserConfiguration {
     private final StepBuilderFactory stepBuilderFactory;
     private final UserRepository userRepository;
     private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final JobExplorer jobExplorer;
 
+    /**
+     * mode=partition 잡 파라미터를 주면 userLevelUpStep을 id 범위로 나눠서 멀티 스레드로 실행한다.
+     * mode=sql 잡 파라미터를 주면 회원을 읽지 않고 DB에서 update 문으로 등급을 올린다.
+     * 파라미터가 없으면 기존처럼 userLevelUpStep 하나로 실행한다.
+     * incremental=true 잡 파라미터를 주면 어느 모드든 마지막으로 성공한 실행 이후 바뀐 회원만 처리한다.
+     * 어느 모드든 등급 변경이 끝나면 userExportStep이 회원 목록을 파일로 남긴다.
+     */
     @Bean
     public Job userJob() throws Exception {
+        LevelUpModeDecider levelUpModeDecider = new LevelUpModeDecider();
+
         return this.jobBuilderFactory.get("userJob")
                 .incrementer(new RunIdIncrementer())
                 .start(this.saveUserStep())
-                .next(this.userLevelUpStep())
-                .listener(new LevelUpJobExecutionListener(userRepository))
+                .next(levelUpModeDecider)
+                .on(LevelUpModeDecider.PARTITION).to(this.userLevelUpPartitionStep()).next(this.userExportStep())
+                .from(levelUpModeDecider)
+                .on(LevelUpModeDecider.SQL).to(this.userLevelUpSqlStep()).next(this.userExportStep())
+                .from(levelUpModeDecider)
+                .on("*").to(this.userLevelUpStep()).next(this.userExportStep())
+                .end()
+                .listener(new LevelUpJobExecutionListener(this.levelRuleEngine()))
+                .listener(new LevelUpWatermarkListener(jobExplorer))
                 .build();
     }
 
@@ -46,24 +85,177 @@ public class UserConfiguration {
 
     @Bean
     public Step userLevelUpStep() throws Exception {
+        AdaptiveCompletionPolicy completionPolicy = this.userLevelUpCompletionPolicy(null, null, null, null);
+
         return this.stepBuilderFactory.get("userLevelUpStep")
-                .<Users, Users>chunk(100)
-                .reader(itemReader())
+                .<Users, Users>chunk(completionPolicy)
+                .reader(this.userLevelUpItemReader(null))
                 .processor(itemProcessor())
                 .writer(itemWriter())
+                .listener((ItemWriteListener<Object>) completionPolicy)
+                .listener((ChunkListener) completionPolicy)
+                .listener((StepExecutionListener) this.levelUpStatistics())
+                .listener((ChunkListener) this.levelUpStatistics())
+                .build();
+    }
+
+    /**
+     * chunkSize          : 처음 청크 크기 (기본 100)
+     * minChunkSize       : 청크 크기 하한 (기본 chunkSize)
+     * maxChunkSize       : 청크 크기 상한 (기본 chunkSize), 하한과 다르면 처리량을 보면서 청크 크기를 바꾼다.
+     * targetCommitMillis : 평균 커밋 시간이 이보다 길면 청크 크기를 줄인다. (기본 0, 보지 않는다)
+     * 청크 크기가 바뀌면 userItemReader의 pageSize도 같이 바뀐다.
+     */
+    @Bean
+    @StepScope
+    public AdaptiveCompletionPolicy userLevelUpCompletionPolicy(@Value("#{jobParameters[chunkSize]}") String chunkSize,
+                                                                @Value("#{jobParameters[minChunkSize]}") String minChunkSize,
+                                                                @Value("#{jobParameters[maxChunkSize]}") String maxChunkSize,
+                                                                @Value("#{jobParameters[targetCommitMillis]}") String targetCommitMillis) {
+        int size = StringUtils.isNotEmpty(chunkSize) ? Integer.parseInt(chunkSize) : 100;
+
+        AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(size,
+                StringUtils.isNotEmpty(minChunkSize) ? Integer.parseInt(minChunkSize) : size,
+                StringUtils.isNotEmpty(maxChunkSize) ? Integer.parseInt(maxChunkSize) : size,
+                StringUtils.isNotEmpty(targetCommitMillis) ? Long.parseLong(targetCommitMillis) : 0L);
+        return completionPolicy;
+    }
+
+    /**
+     * 등급 기준이 금액 비교뿐이라 자바 로직이 필요 없을 때 쓰는 빠른 경로이다.
+     */
+    @Bean
+    public Step userLevelUpSqlStep() {
+        return this.stepBuilderFactory.get("userLevelUpSqlStep")
+                .tasklet(this.levelUpSqlTasklet(null, null, null))
+                .listener((StepExecutionListener) this.levelUpStatistics())
+                .listener((ChunkListener) this.levelUpStatistics())
+                .build();
+    }
+
+    /**
+     * windowSize : update 문 하나가 처리할 id 구간 크기, 구간마다 커밋된다.
+     */
+    @Bean
+    @StepScope
+    public LevelUpSqlTasklet levelUpSqlTasklet(@Value("#{jobParameters[windowSize]}") String windowSize,
+                                               @Value("#{jobParameters[incremental]}") String incremental,
+                                               @Value("#{jobExecutionContext['" + LevelUpWatermarkListener.FROM + "']}") String watermarkFrom) {
+        return new LevelUpSqlTasklet(dataSource,
+                StringUtils.isNotEmpty(windowSize) ? Integer.parseInt(windowSize) : 10_000,
+                watermark(incremental, watermarkFrom),
+                this.levelRuleEngine(),
+                this.levelUpStatistics());
+    }
+
+    /**
+     * 등급 기준을 컴파일해둔 엔진, level_rule 테이블의 기준을 잡이 시작할 때마다 다시 읽는다.
+     */
+    @Bean
+    public LevelRuleEngine levelRuleEngine() {
+        return new LevelRuleEngine(new JdbcLevelRuleLoader(dataSource));
+    }
+
+    /**
+     * 스텝 실행마다 새로 만들어지는 등급 변경 건수 집계, writer와 tasklet이 더하고 커밋된 청크의 건수만 스텝이 끝나면 JobExecution에 올린다.
+     */
+    @Bean
+    @StepScope
+    public LevelUpStatistics levelUpStatistics() {
+        return new LevelUpStatistics();
+    }
+
+    /**
+     * 파일로 옮기기만 하므로 엔티티 대신 UsersDto로 읽는다. 영속성 컨텍스트에 회원이 쌓이지 않는다.
+     */
+    @Bean
+    public Step userExportStep() throws Exception {
+        return this.stepBuilderFactory.get("userExportStep")
+                .<UsersDto, UsersDto>chunk(100)
+                .reader(new ProjectionItemReaderBuilder<>(UsersDto.class)
+                        .name("userExportItemReader")
+                        .select(UsersDto.COLUMNS)
+                        .from("users")
+                        .orderBy("id")
+                        .fetchSize(100)
+                        .rowMapper(UsersDto::mapRow)
+                        .buildJdbc(dataSource))
+                .writer(this.userExportItemWriter())
                 .build();
     }
 
+    private FlatFileItemWriter<UsersDto> userExportItemWriter() throws Exception {
+        DelimitedLineAggregator<UsersDto> lineAggregator = new DelimitedLineAggregator<>();
+        lineAggregator.setDelimiter(",");
+        lineAggregator.setFieldExtractor(UsersDto.fieldExtractor());
+
+        FlatFileItemWriter<UsersDto> itemWriter = new FlatFileItemWriterBuilder<UsersDto>()
+                .name("userExportItemWriter")
+                .encoding("UTF-8")
+                .resource(new FileSystemResource("output/users-output.csv"))
+                .lineAggregator(lineAggregator)
+                .headerCallback(writer -> writer.write("id,username,level,totalAmount"))
+                .build();
+        itemWriter.afterPropertiesSet();
+
+        return itemWriter;
+    }
+
+    /**
+     * userLevelUpStep을 id 범위로 나눈 파티션마다 워커 스텝으로 실행하는 매니저 스텝이다.
+     * 파티션 개수와 스레드 수는 잡 파라미터로 받기 위해 @JobScope 빈인 partitionHandler에서 설정한다.
+     */
+    @Bean
+    public Step userLevelUpPartitionStep() throws Exception {
+        IdRangePartitioner partitioner = new IdRangePartitioner(
+                () -> Optional.ofNullable(userRepository.findMinId()).orElse(0L),
+                () -> Optional.ofNullable(userRepository.findMaxId()).orElse(-1L));
+
+        return this.stepBuilderFactory.get("userLevelUpPartitionStep")
+                .partitioner("userLevelUpStep", partitioner)
+                .partitionHandler(this.userLevelUpPartitionHandler(null))
+                .build();
+    }
+
+    /**
+     * gridSize : 파티션(id 범위) 개수, 워커 스텝인 userLevelUpStep이 파티션마다 실행된다.
+     */
+    @Bean
+    @JobScope
+    public TaskExecutorPartitionHandler userLevelUpPartitionHandler(@Value("#{jobParameters[gridSize]}") String gridSize) throws Exception {
+        TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+        partitionHandler.setStep(this.userLevelUpStep());
+        partitionHandler.setTaskExecutor(this.userLevelUpTaskExecutor(null));
+        partitionHandler.setGridSize(StringUtils.isNotEmpty(gridSize) ? Integer.parseInt(gridSize) : 4);
+        return partitionHandler;
+    }
+
+    /**
+     * poolSize : 동시에 실행할 워커 스레드 수, 보통 코어 수와 DB 커넥션 수를 넘지 않게 준다.
+     * @JobScope 빈이라 잡이 끝나면 스레드풀도 같이 종료된다.
+     */
+    @Bean
+    @JobScope
+    public ThreadPoolTaskExecutor userLevelUpTaskExecutor(@Value("#{jobParameters[poolSize]}") String poolSize) {
+        int size = StringUtils.isNotEmpty(poolSize) ? Integer.parseInt(poolSize) : 4;
+
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(size);
+        taskExecutor.setMaxPoolSize(size);
+        taskExecutor.setThreadNamePrefix("user-level-up-");
+        taskExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        return taskExecutor;
+    }
+
     private ItemWriter<? super Users> itemWriter() {
-        return users -> users.forEach(x -> {
-            x.levelUp();
-            userRepository.save(x);
-        });
+        return new LevelUpItemWriter(dataSource, this.levelRuleEngine(), this.levelUpStatistics());
     }
 
     private ItemProcessor<? super Users, ? extends Users> itemProcessor() {
+        LevelRuleEngine levelRuleEngine = this.levelRuleEngine();
+
         return user -> {
-            if (user.availableLevelUp()) {
+            if (levelRuleEngine.availableLevelUp(user.getLevel(), user.getTotalAmount())) {
                 return user;
             }
 
@@ -71,14 +263,77 @@ public class UserConfiguration {
         };
     }
 
-    private ItemReader<? extends Users> itemReader() throws Exception {
-        JpaPagingItemReader<Users> itemReader = new JpaPagingItemReaderBuilder<Users>()
-                .queryString("select u from Users u")
-                .entityManagerFactory(entityManagerFactory)
-                .pageSize(100) //보통 페이지 사이즈는 정크 사이즈와 똑같게 한다.
-                .name("userItemReader")
-                .build();
-        itemReader.afterPropertiesSet();
+    /**
+     * prefetch 잡 파라미터를 주면 writer가 청크를 쓰는 동안 별도 스레드가 다음 회원을 prefetch 건까지 미리 읽는다.
+     * 파티션으로 실행되면 워커 스텝마다 따로 만들어진다.
+     */
+    @Bean
+    @StepScope
+    public ItemStreamReader<Users> userLevelUpItemReader(@Value("#{jobParameters[prefetch]}") String prefetch) {
+        ItemStreamReader<Users> itemReader = this.userItemReader(null, null, null, null, null);
+
+        if (StringUtils.isEmpty(prefetch)) {
+            return itemReader;
+        }
+        return new PrefetchItemReader<>(itemReader, Integer.parseInt(prefetch));
+    }
+
+    /**
+     * OFFSET 페이징은 뒤 페이지로 갈수록 느려지므로 마지막으로 읽은 id 다음부터 읽는 keyset 페이징을 사용한다.
+     * 파티션으로 실행되면 stepExecutionContext에 담긴 minId ~ maxId 범위만 읽는다.
+     * 파티션 없이 실행되면 minId, maxId가 null이므로 전체를 읽는다.
+     * eligibleOnly=true 잡 파라미터를 주면 등급 상향 대상인 회원만 DB에서 조회한다.
+     * incremental=true 잡 파라미터를 주면 워터마크 이후 바뀐(modifiedDate) 회원만 조회한다.
+     */
+    @Bean
+    @StepScope
+    public JpaKeysetPagingItemReader<Users> userItemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
+                                                           @Value("#{stepExecutionContext[maxId]}") Long maxId,
+                                                           @Value("#{jobParameters[eligibleOnly]}") String eligibleOnly,
+                                                           @Value("#{jobParameters[incremental]}") String incremental,
+                                                           @Value("#{jobExecutionContext['" + LevelUpWatermarkListener.FROM + "']}") String watermarkFrom) {
+        StringBuilder where = new StringBuilder("u.id > :lastKey");
+        Map<String, Object> parameterValues = new HashMap<>();
+        long startKey = Long.MIN_VALUE;
+
+        if (minId != null && maxId != null) {
+            where.append(" and u.id <= :maxId");
+            parameterValues.put(IdRangePartitioner.MAX_ID, maxId);
+            startKey = minId - 1;
+        }
+
+        if (Boolean.parseBoolean(eligibleOnly)) {
+            where.append(" and (").append(LevelUpCondition.jpql("u", this.levelRuleEngine())).append(")");
+            parameterValues.putAll(LevelUpCondition.parameterValues(this.levelRuleEngine()));
+        }
+
+        LocalDateTime watermark = watermark(incremental, watermarkFrom);
+        if (watermark != null) {
+            where.append(" and u.modifiedDate > :watermark");
+            parameterValues.put("watermark", watermark);
+        }
+
+        JpaKeysetPagingItemReader<Users> itemReader = new JpaKeysetPagingItemReader<>(
+                "userItemReader",
+                entityManagerFactory,
+                "select u from Users u where " + where + " order by u.id",
+                Users::getId,
+                startKey);
+        itemReader.setParameterValues(parameterValues);
+        AdaptiveCompletionPolicy completionPolicy = this.userLevelUpCompletionPolicy(null, null, null, null);
+        itemReader.setPageSize(completionPolicy.getChunkSize()); //보통 페이지 사이즈는 정크 사이즈와 똑같게 한다.
+        completionPolicy.addChunkSizeListener(itemReader::setPageSize);
         return itemReader;
     }
+
+    /**
+     * 증분 모드가 아니거나 이전에 성공한 실행이 없으면 null, 전체를 처리한다.
+     */
+    private static LocalDateTime watermark(String incremental, String watermarkFrom) {
+        if (!Boolean.parseBoolean(incremental) || StringUtils.isEmpty(watermarkFrom)) {
+            return null;
+        }
+
+        return LocalDateTime.parse(watermarkFrom);
+    }
 }
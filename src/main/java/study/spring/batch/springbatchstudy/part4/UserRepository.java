@@ -1,6 +1,7 @@
 package study.spring.batch.springbatchstudy.part4;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
@@ -8,4 +9,9 @@ import java.util.Collection;
 public interface UserRepository extends JpaRepository<Users, Long> {
     Collection<Users> findAllByUpdatedDate(LocalDateTime now);
 
+    @Query("select min(u.id) from Users u")
+    Long findMinId();
+
+    @Query("select max(u.id) from Users u")
+    Long findMaxId();
 }
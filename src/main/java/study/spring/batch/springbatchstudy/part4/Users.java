@@ -6,11 +6,18 @@ import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Getter
 @Entity
 @NoArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_users_level_total_amount", columnList = "level, total_amount"),
+        @Index(name = "idx_users_modified_date", columnList = "modified_date")})
 public class Users {
 
     @Id
@@ -22,14 +29,30 @@ public class Users {
     @Enumerated(EnumType.STRING)
     private Level level = Level.NORMAL;
 
+    @Column(name = "total_amount")
     private int totalAmount;
 
     private LocalDateTime updatedDate;
 
+    // 회원 정보가 바뀐 시각, 증분 모드는 지난 실행 이후 바뀐 회원만 읽는다.
+    // 엔티티로 수정하면 onUpdate()가, update 문으로 수정하면 그 update 문이 같이 바꾼다.
+    @Column(name = "modified_date")
+    private LocalDateTime modifiedDate;
+
     @Builder
     public Users(String username, int totalAmount) {
         this.username = username;
         this.totalAmount = totalAmount;
+        this.modifiedDate = LocalDateTime.now();
+    }
+
+    public void updateTotalAmount(int totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        this.modifiedDate = LocalDateTime.now();
     }
 
     public boolean availableLevelUp() {
@@ -39,7 +62,7 @@ public class Users {
     public Level levelUp() {
         Level nextLevel = Level.getNextLevel(this.getTotalAmount());
 
-        this.level = level;
+        this.level = nextLevel;
         this.updatedDate = LocalDateTime.now();
 
         return nextLevel;
@@ -58,7 +81,36 @@ public class Users {
             this.nextLevel = nextLevel;
         }
 
-        private static boolean availableLevelUp(Level level, int totalAmount) {
+        /**
+         * 다음 등급이 있는 등급별로 등급 상향에 필요한 금액을 돌려준다.
+         * 등급 상향 대상만 DB에서 조회하는 조건을 만들 때 사용한다.
+         */
+        public static Map<Level, Integer> levelUpThresholds() {
+            Map<Level, Integer> thresholds = new EnumMap<>(Level.class);
+
+            for (Level level : values()) {
+                if (Objects.nonNull(level.nextLevel)) {
+                    thresholds.put(level, level.nextAmount);
+                }
+            }
+
+            return thresholds;
+        }
+
+        /**
+         * enum에 정의된 등급 기준, level_rule 테이블이 없을 때 LevelRuleEngine이 사용한다.
+         */
+        public static List<LevelRule> defaultRules() {
+            List<LevelRule> rules = new ArrayList<>();
+
+            for (Level level : values()) {
+                rules.add(new LevelRule(level, level.nextAmount, level.nextLevel));
+            }
+
+            return rules;
+        }
+
+        static boolean availableLevelUp(Level level, int totalAmount) {
             if (Objects.isNull(level)) {
                 return false;
             }
@@ -69,7 +121,7 @@ public class Users {
             return totalAmount >= level.nextAmount;
         }
 
-        private static Level getNextLevel(int totalAmount) {
+        static Level getNextLevel(int totalAmount) {
             if (totalAmount >= Level.VIP.nextAmount) {
                 return VIP;
             }
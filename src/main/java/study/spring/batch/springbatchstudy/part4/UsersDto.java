@@ -0,0 +1,45 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import lombok.Getter;
+import org.springframework.batch.item.file.transform.FieldExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Users를 읽기만 할 때 쓰는 불변 객체이다. 엔티티가 아니라서 영속성 컨텍스트, 스냅샷, 프록시가 없다.
+ *   JPQL : select new study.spring.batch.springbatchstudy.part4.UsersDto(u.id, u.username, u.level, u.totalAmount) from Users u
+ *   JDBC : select id, username, level, total_amount from users 를 mapRow로 매핑
+ */
+@Getter
+public class UsersDto {
+
+    public static final String[] COLUMNS = {"id", "username", "level", "total_amount"};
+
+    private final Long id;
+    private final String username;
+    private final Users.Level level;
+    private final int totalAmount;
+
+    public UsersDto(Long id, String username, Users.Level level, int totalAmount) {
+        this.id = id;
+        this.username = username;
+        this.level = level;
+        this.totalAmount = totalAmount;
+    }
+
+    /**
+     * COLUMNS 순서로 조회한 행을 인덱스로 읽는다. BeanPropertyRowMapper처럼 리플렉션으로 컬럼 이름을 찾지 않는다.
+     */
+    public static UsersDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+        String level = rs.getString(3);
+        return new UsersDto(rs.getLong(1), rs.getString(2), level == null ? null : Users.Level.valueOf(level), rs.getInt(4));
+    }
+
+    /**
+     * id, username, level, totalAmount 순서로 꺼낸다.
+     */
+    public static FieldExtractor<UsersDto> fieldExtractor() {
+        return users -> new Object[]{users.getId(), users.getUsername(), users.getLevel(), users.getTotalAmount()};
+    }
+}
@@ -0,0 +1,9 @@
+-- 없는 등급만 Users.Level의 기본 기준으로 넣는다. 이미 있는 행은 바꾸지 않으므로 update한 기준은 재시작해도 남는다.
+insert into level_rule (level, next_amount, next_level)
+select 'NORMAL', 200000, 'SILVER' from dual where not exists (select 1 from level_rule where level = 'NORMAL');
+insert into level_rule (level, next_amount, next_level)
+select 'SILVER', 300000, 'GOLD' from dual where not exists (select 1 from level_rule where level = 'SILVER');
+insert into level_rule (level, next_amount, next_level)
+select 'GOLD', 500000, 'VIP' from dual where not exists (select 1 from level_rule where level = 'GOLD');
+insert into level_rule (level, next_amount, next_level)
+select 'VIP', 500000, null from dual where not exists (select 1 from level_rule where level = 'VIP');
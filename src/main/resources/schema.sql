@@ -0,0 +1,7 @@
+-- 등급 상향 기준, JPA 엔티티가 아니므로 ddl-auto: create로 지워지지 않는다.
+create table if not exists level_rule
+(
+    level       varchar(255) not null primary key,
+    next_amount int          not null,
+    next_level  varchar(255)
+);
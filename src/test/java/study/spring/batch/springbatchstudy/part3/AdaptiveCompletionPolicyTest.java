@@ -0,0 +1,54 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class AdaptiveCompletionPolicyTest {
+
+    @Test
+    public void growsWhileThroughputImprovesAndTurnsBackWhenItDrops() {
+        AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(100, 10, 1_000, 0);
+        List<Integer> pageSizes = new ArrayList<>();
+        completionPolicy.addChunkSizeListener(pageSizes::add);
+
+        Assertions.assertThat(completionPolicy.adjust(1_000, 0)).isEqualTo(150);
+        Assertions.assertThat(completionPolicy.adjust(2_000, 0)).isEqualTo(225);
+        // 처리량이 떨어지면 반대로 줄인다.
+        Assertions.assertThat(completionPolicy.adjust(1_500, 0)).isEqualTo(150);
+
+        Assertions.assertThat(pageSizes).containsExactly(150, 225, 150);
+        Assertions.assertThat(completionPolicy.getChunkSize()).isEqualTo(150);
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(100, 10, 200, 0);
+
+        double throughput = 1_000;
+        for (int i = 0; i < 20; i++) {
+            throughput += 100;
+            completionPolicy.adjust(throughput, 0);
+            Assertions.assertThat(completionPolicy.getChunkSize()).isBetween(10, 200);
+        }
+    }
+
+    @Test
+    public void shrinksWhenCommitIsSlowerThanTarget() {
+        AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(100, 10, 1_000, 50);
+
+        Assertions.assertThat(completionPolicy.adjust(1_000, 80_000_000L)).isEqualTo(66);
+        // 처리량이 좋아져도 커밋이 느리면 계속 줄인다.
+        Assertions.assertThat(completionPolicy.adjust(5_000, 80_000_000L)).isEqualTo(44);
+    }
+
+    @Test
+    public void keepsFixedSizeWithoutRange() {
+        AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(100, 100, 100, 0);
+
+        Assertions.assertThat(completionPolicy.adjust(1_000, 0)).isEqualTo(100);
+        Assertions.assertThat(completionPolicy.adjust(2_000, 0)).isEqualTo(100);
+    }
+}
@@ -0,0 +1,123 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.separator.DefaultRecordSeparatorPolicy;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+class BgzfLineItemReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void readsInOrderAndRestartsFromVirtualOffset() throws Exception {
+        Path file = directory.resolve("person.csv.gz");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            lines.add("김지수" + i + "," + (i % 90) + ",안산");
+        }
+
+        try (OutputStream out = new BgzfOutputStream(Files.newOutputStream(file))) {
+            out.write("이름,나이,거주지\n".getBytes(StandardCharsets.UTF_8));
+            for (String line : lines) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        // 일반 gzip으로도 풀린다.
+        try (GZIPInputStream gzip = new GZIPInputStream(Files.newInputStream(file))) {
+            Assertions.assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8).split("\n")).hasSize(50_001);
+        }
+
+        ExecutionContext executionContext = new ExecutionContext();
+        List<String> read = new ArrayList<>();
+
+        BgzfLineItemReader<String> first = itemReader(file);
+        first.open(executionContext);
+        for (int i = 0; i < 30_000; i++) {
+            read.add(first.read());
+        }
+        first.update(executionContext);
+        first.close();
+
+        BgzfLineItemReader<String> restarted = itemReader(file);
+        restarted.open(executionContext);
+        for (String line = restarted.read(); line != null; line = restarted.read()) {
+            read.add(line);
+        }
+        restarted.close();
+
+        Assertions.assertThat(read).isEqualTo(lines);
+    }
+
+    @Test
+    public void readsQuotedNewlinesSameAsFlatFileItemReader() throws Exception {
+        StringBuilder csv = new StringBuilder("이름,나이,거주지\n");
+        for (int i = 0; i < 5_000; i++) {
+            csv.append("김지수").append(i).append(',').append(i % 90).append(",안산\n");
+            csv.append("\"여러\r\n줄").append(i).append("\",25,\"서울\n\"\"강남\"\"\"\n");
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        Path plainFile = directory.resolve("quoted.csv");
+        Files.write(plainFile, bytes);
+        Path bgzfFile = directory.resolve("quoted.csv.gz");
+        try (OutputStream out = new BgzfOutputStream(Files.newOutputStream(bgzfFile))) {
+            out.write(bytes);
+        }
+
+        DefaultLineMapper<String> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(new DelimitedLineTokenizer());
+        lineMapper.setFieldSetMapper(fieldSet -> String.join("|", fieldSet.getValues()));
+
+        FlatFileItemReader<String> flatFileItemReader = new FlatFileItemReaderBuilder<String>()
+                .name("csvFileItemReader")
+                .encoding("UTF-8")
+                .resource(new FileSystemResource(plainFile))
+                .linesToSkip(1)
+                .recordSeparatorPolicy(new DefaultRecordSeparatorPolicy())
+                .lineMapper(lineMapper)
+                .build();
+
+        BgzfLineItemReader<String> bgzfLineItemReader = new BgzfLineItemReader<>("bgzfLineItemReader",
+                new FileSystemResource(bgzfFile), lineMapper, 4);
+        bgzfLineItemReader.setLinesToSkip(1);
+
+        List<String> expected = readAll(flatFileItemReader);
+        Assertions.assertThat(expected).hasSize(10_000).contains("여러\n줄0|25|서울\n\"강남\"");
+        Assertions.assertThat(readAll(bgzfLineItemReader)).isEqualTo(expected);
+    }
+
+    private List<String> readAll(ItemStreamReader<String> itemReader) throws Exception {
+        List<String> read = new ArrayList<>();
+        itemReader.open(new ExecutionContext());
+        for (String item = itemReader.read(); item != null; item = itemReader.read()) {
+            read.add(item);
+        }
+        itemReader.close();
+        return read;
+    }
+
+    private BgzfLineItemReader<String> itemReader(Path file) {
+        BgzfLineItemReader<String> itemReader = new BgzfLineItemReader<>("bgzfLineItemReader",
+                new FileSystemResource(file), (line, lineNumber) -> line, 4);
+        itemReader.setLinesToSkip(1);
+        return itemReader;
+    }
+}
@@ -0,0 +1,137 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class BisectingChunkProcessorTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private EmbeddedDatabase dataSource;
+    private JobRepository jobRepository;
+    private DataSourceTransactionManager transactionManager;
+
+    private final List<Integer> written = new ArrayList<>();
+    private final List<Integer> skipped = new ArrayList<>();
+    private int writes;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(dataSource);
+
+        JobRepositoryFactoryBean factoryBean = new JobRepositoryFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setTransactionManager(transactionManager);
+        factoryBean.afterPropertiesSet();
+        jobRepository = factoryBean.getObject();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void findsFailedItemsWithLogarithmicWrites() throws Exception {
+        StepExecution stepExecution = execute(true, Set.of(37, 512), 10);
+
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteSkipCount()).isEqualTo(2);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(CHUNK_SIZE - 2);
+        Assertions.assertThat(written).hasSize(CHUNK_SIZE - 2).doesNotContain(37, 512).isSorted();
+        Assertions.assertThat(skipped).containsExactly(37, 512);
+        // 아이템마다 다시 쓰면 1,001번, 반씩 나누면 실패한 아이템마다 log2(1000)번 정도 쓴다.
+        Assertions.assertThat(writes).isLessThan(2 * 2 * 11);
+    }
+
+    @Test
+    public void writesOneItemPerTransactionWithoutBisection() throws Exception {
+        StepExecution stepExecution = execute(false, Set.of(37, 512), 10);
+
+        Assertions.assertThat(stepExecution.getWriteSkipCount()).isEqualTo(2);
+        Assertions.assertThat(written).hasSize(CHUNK_SIZE - 2);
+        Assertions.assertThat(skipped).containsExactly(37, 512);
+        Assertions.assertThat(writes).isEqualTo(CHUNK_SIZE + 1);
+    }
+
+    @Test
+    public void failsWhenSkipLimitIsExceeded() throws Exception {
+        StepExecution stepExecution = execute(true, Set.of(3, 500, 900), 2);
+
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+        Assertions.assertThat(stepExecution.getWriteSkipCount()).isEqualTo(2);
+    }
+
+    private StepExecution execute(boolean bisect, Set<Integer> failedItems, int skipLimit) throws Exception {
+        ItemWriter<Integer> itemWriter = items -> {
+            writes++;
+            for (Integer item : items) {
+                if (failedItems.contains(item)) {
+                    throw new NotFoundNameException();
+                }
+            }
+            written.addAll(items);
+        };
+
+        SimpleStepBuilder<Integer, Integer> stepBuilder = new StepBuilder("bisectStep")
+                .repository(jobRepository)
+                .transactionManager(transactionManager)
+                .<Integer, Integer>chunk(CHUNK_SIZE)
+                .reader(new ListItemReader<>(IntStream.range(0, CHUNK_SIZE).boxed().collect(Collectors.toList())))
+                .writer(itemWriter);
+
+        Step step = (bisect ? new BisectingFaultTolerantStepBuilder<>(stepBuilder) : stepBuilder.faultTolerant())
+                .skip(NotFoundNameException.class)
+                .skipLimit(skipLimit)
+                .listener(new SkipListener<Integer, Integer>() {
+                    @Override
+                    public void onSkipInRead(Throwable t) {
+                    }
+
+                    @Override
+                    public void onSkipInWrite(Integer item, Throwable t) {
+                        skipped.add(item);
+                    }
+
+                    @Override
+                    public void onSkipInProcess(Integer item, Throwable t) {
+                    }
+                })
+                .build();
+
+        JobExecution jobExecution = jobRepository.createJobExecution("bisectJob", new JobParameters());
+        StepExecution stepExecution = jobExecution.createStepExecution(step.getName());
+        jobRepository.add(stepExecution);
+        step.execute(stepExecution);
+        return stepExecution;
+    }
+}
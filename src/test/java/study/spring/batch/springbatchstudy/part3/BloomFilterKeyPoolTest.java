@@ -0,0 +1,27 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterKeyPoolTest {
+
+    @Test
+    public void detectsDuplicatesAfterSpillToDisk() {
+        // 메모리 제한을 작게 줘서 key 대부분이 디스크 인덱스로 내보내지게 한다.
+        BloomFilterKeyPool keyPool = new BloomFilterKeyPool(10_000, 0.01, 10_000);
+
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                Assertions.assertThat(keyPool.add("name" + i)).isTrue();
+            }
+            for (int i = 0; i < 100_000; i += 7) {
+                Assertions.assertThat(keyPool.add("name" + i)).isFalse();
+            }
+
+            Assertions.assertThat(keyPool.size()).isEqualTo(100_000);
+            Assertions.assertThat(keyPool.falsePositiveRate()).isGreaterThan(0);
+        } finally {
+            keyPool.close();
+        }
+    }
+}
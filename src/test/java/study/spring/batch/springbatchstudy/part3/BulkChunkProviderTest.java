@@ -0,0 +1,122 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.batch.repeat.support.RepeatTemplate;
+import study.spring.batch.springbatchstudy.part4.GeneratedItemReader;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class BulkChunkProviderTest {
+
+    private static List<Integer> items(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    private static BulkChunkProvider<Integer> chunkProvider(ItemReader<Integer> itemReader, int chunkSize) {
+        RepeatTemplate repeatTemplate = new RepeatTemplate();
+        repeatTemplate.setCompletionPolicy(new SimpleCompletionPolicy(chunkSize));
+        return new BulkChunkProvider<>(itemReader, repeatTemplate, chunkSize);
+    }
+
+    private static List<List<Integer>> provideAll(BulkChunkProvider<Integer> chunkProvider, StepContribution contribution)
+            throws Exception {
+        List<List<Integer>> chunks = new ArrayList<>();
+
+        while (true) {
+            Chunk<Integer> chunk = chunkProvider.provide(contribution);
+            if (!chunk.isEmpty()) {
+                chunks.add(new ArrayList<>(chunk.getItems()));
+            }
+            if (chunk.isEnd()) {
+                return chunks;
+            }
+        }
+    }
+
+    private static StepContribution contribution() {
+        return new StepExecution("bulkStep", new JobExecution(new JobInstance(1L, "bulkJob"), new JobParameters())).createStepContribution();
+    }
+
+    @Test
+    public void fillsChunksFromBulkReader() throws Exception {
+        CustomItemReader<Integer> itemReader = new CustomItemReader<>(items(25));
+        itemReader.open(new ExecutionContext());
+        StepContribution contribution = contribution();
+
+        List<List<Integer>> chunks = provideAll(chunkProvider(itemReader, 10), contribution);
+
+        Assertions.assertThat(chunks).hasSize(3);
+        Assertions.assertThat(chunks.get(0)).containsExactlyElementsOf(items(10));
+        Assertions.assertThat(chunks.get(2)).containsExactly(20, 21, 22, 23, 24);
+        Assertions.assertThat(contribution.getReadCount()).isEqualTo(25);
+    }
+
+    @Test
+    public void fillsChunkAcrossPageBoundaries() throws Exception {
+        // 페이지가 청크보다 작으면 모자라는 만큼 다음 페이지에서 더 읽는다.
+        Iterator<Integer> source = items(23).iterator();
+        BulkItemReader<Integer> pagingReader = new BulkItemReader<Integer>() {
+            @Override
+            public List<Integer> readChunk(int max) {
+                List<Integer> page = new ArrayList<>();
+                while (page.size() < Math.min(max, 4) && source.hasNext()) {
+                    page.add(source.next());
+                }
+                return page;
+            }
+
+            @Override
+            public Integer read() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        List<List<Integer>> chunks = provideAll(chunkProvider(pagingReader, 10), contribution());
+
+        Assertions.assertThat(chunks).extracting(List::size).containsExactly(10, 10, 3);
+    }
+
+    @Test
+    public void fallsBackToItemReads() throws Exception {
+        Iterator<Integer> source = items(15).iterator();
+        ItemReader<Integer> itemReader = () -> source.hasNext() ? source.next() : null;
+        StepContribution contribution = contribution();
+
+        List<List<Integer>> chunks = provideAll(chunkProvider(itemReader, 10), contribution);
+
+        Assertions.assertThat(chunks).extracting(List::size).containsExactly(10, 5);
+        Assertions.assertThat(contribution.getReadCount()).isEqualTo(15);
+    }
+
+    @Test
+    public void bulkReadKeepsRestartPosition() throws Exception {
+        GeneratedItemReader<Integer> itemReader = new GeneratedItemReader<>("generated", 100, 199, index -> (int) index);
+        ExecutionContext executionContext = new ExecutionContext();
+        itemReader.open(executionContext);
+
+        Assertions.assertThat(itemReader.readChunk(30)).containsExactlyElementsOf(
+                IntStream.range(100, 130).boxed().collect(Collectors.toList()));
+        itemReader.update(executionContext);
+        itemReader.close();
+
+        GeneratedItemReader<Integer> restarted = new GeneratedItemReader<>("generated", 100, 199, index -> (int) index);
+        restarted.open(executionContext);
+        Assertions.assertThat(restarted.read()).isEqualTo(130);
+        Assertions.assertThat(restarted.readChunk(100)).hasSize(69);
+        Assertions.assertThat(restarted.readChunk(100)).isEmpty();
+    }
+}
@@ -0,0 +1,114 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class CustomItemReaderTest {
+
+    private static List<Integer> items(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void readsInOrderWithoutChangingList() {
+        List<Integer> source = items(5);
+        CustomItemReader<Integer> itemReader = new CustomItemReader<>(source);
+        itemReader.open(new ExecutionContext());
+
+        List<Integer> read = new ArrayList<>();
+        for (Integer item = itemReader.read(); item != null; item = itemReader.read()) {
+            read.add(item);
+        }
+
+        Assertions.assertThat(read).containsExactly(0, 1, 2, 3, 4);
+        Assertions.assertThat(source).hasSize(5);
+        Assertions.assertThat(itemReader.read()).isNull();
+    }
+
+    @Test
+    public void readsBulkAsViews() {
+        List<Integer> source = items(10);
+        CustomItemReader<Integer> itemReader = new CustomItemReader<>(source);
+        itemReader.open(new ExecutionContext());
+
+        Assertions.assertThat(itemReader.read(4)).containsExactly(0, 1, 2, 3);
+        Assertions.assertThat(itemReader.read()).isEqualTo(4);
+        Assertions.assertThat(itemReader.read(10)).containsExactly(5, 6, 7, 8, 9);
+        Assertions.assertThat(itemReader.read(10)).isEmpty();
+        Assertions.assertThat(itemReader.read()).isNull();
+    }
+
+    @Test
+    public void restartsFromSavedPosition() {
+        ExecutionContext executionContext = new ExecutionContext();
+
+        CustomItemReader<Integer> first = new CustomItemReader<>(items(10));
+        first.open(executionContext);
+        first.read(3);
+        first.update(executionContext);
+        first.close();
+
+        CustomItemReader<Integer> restarted = new CustomItemReader<>(items(10));
+        restarted.open(executionContext);
+        Assertions.assertThat(restarted.read()).isEqualTo(3);
+
+        // 저장된 위치가 없으면 같은 리더로 다시 실행해도 처음부터 읽는다.
+        restarted.open(new ExecutionContext());
+        Assertions.assertThat(restarted.read()).isEqualTo(0);
+    }
+
+    @Test
+    public void readsEachItemOnceAcrossThreads() throws Exception {
+        CustomItemReader<Integer> itemReader = new CustomItemReader<>(items(100_000));
+        itemReader.open(new ExecutionContext());
+
+        Set<Integer> read = ConcurrentHashMap.newKeySet();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> counts = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            boolean bulk = i % 2 == 0;
+            counts.add(executorService.submit(() -> {
+                int count = 0;
+                while (true) {
+                    if (bulk) {
+                        List<Integer> chunk = itemReader.read(7);
+                        if (chunk.isEmpty()) {
+                            return count;
+                        }
+                        read.addAll(chunk);
+                        count += chunk.size();
+                    } else {
+                        Integer item = itemReader.read();
+                        if (item == null) {
+                            return count;
+                        }
+                        read.add(item);
+                        count++;
+                    }
+                }
+            }));
+        }
+
+        int total = 0;
+        for (Future<Integer> count : counts) {
+            total += count.get(10, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+
+        Assertions.assertThat(total).isEqualTo(100_000);
+        Assertions.assertThat(read).hasSize(100_000);
+    }
+}
@@ -0,0 +1,302 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class DuplicateValidationProcessorTest {
+
+    @TempDir
+    Path checkpointDirectory;
+
+    @Test
+    public void restoresKeysFromCheckpointOnRestart() throws Exception {
+        ExecutionContext executionContext = new ExecutionContext();
+
+        DuplicateValidationProcessor<String> first = processor();
+        first.open(executionContext);
+        // 청크마다 체크포인트를 남겨서 세그먼트가 여러 번 합쳐지게 한다.
+        for (int i = 0; i < 1_000; i++) {
+            Assertions.assertThat(first.process("name" + i)).isNotNull();
+            if (i % 10 == 9) {
+                first.update(executionContext);
+            }
+        }
+        Assertions.assertThat(first.process("name0")).isNull();
+        first.close();
+
+        // 실패 후 재시작, 이전 실행의 key는 파일에서만 찾을 수 있다.
+        DuplicateValidationProcessor<String> restarted = processor();
+        restarted.open(executionContext);
+
+        for (int i = 0; i < 1_000; i++) {
+            Assertions.assertThat(restarted.process("name" + i)).isNull();
+        }
+        Assertions.assertThat(restarted.process("name1000")).isEqualTo("name1000");
+        Assertions.assertThat(restarted.process("name1000")).isNull();
+        restarted.close();
+    }
+
+    @Test
+    public void restoresKeysOfCompletedPartitionsOnRestart() throws Exception {
+        JobInstance jobInstance = new JobInstance(1L, "savePersonJob");
+        JobExecution firstJobExecution = new JobExecution(jobInstance, 1L, null, null);
+        StepExecution firstManager = stepExecution(firstJobExecution, "savePersonStep", 1L);
+
+        // 첫 실행, partition0은 COMPLETED 되고 partition1은 실패한다.
+        DuplicateValidationProcessor<String> first = processor();
+        first.beforeStep(firstManager);
+        StepExecution completedWorker = stepExecution(firstJobExecution, "savePersonWorkerStep:partition0", 2L);
+        runWorker(first, completedWorker, "partition0-name", BatchStatus.COMPLETED);
+        StepExecution failedWorker = stepExecution(firstJobExecution, "savePersonWorkerStep:partition1", 3L);
+        runWorker(first, failedWorker, "partition1-name", BatchStatus.FAILED);
+        firstManager.setStatus(BatchStatus.FAILED);
+        first.afterStep(firstManager);
+
+        // COMPLETED 된 워커의 파일도 매니저가 COMPLETED 될 때까지 남는다.
+        Assertions.assertThat(segmentFiles()).hasSize(2);
+
+        // 재시작하면 실패한 partition1만 다시 실행된다.
+        JobExplorer jobExplorer = Mockito.mock(JobExplorer.class);
+        Mockito.when(jobExplorer.getJobExecutions(jobInstance)).thenReturn(List.of(firstJobExecution));
+        JobExecution secondJobExecution = new JobExecution(jobInstance, 2L, null, null);
+        StepExecution secondManager = stepExecution(secondJobExecution, "savePersonStep", 4L);
+
+        DuplicateValidationProcessor<String> restarted = processor();
+        restarted.setJobExplorer(jobExplorer);
+        restarted.beforeStep(secondManager);
+
+        StepExecution restartedWorker = stepExecution(secondJobExecution, "savePersonWorkerStep:partition1", 5L);
+        restartedWorker.setExecutionContext(new ExecutionContext(failedWorker.getExecutionContext()));
+        StepSynchronizationManager.register(restartedWorker);
+        try {
+            // open() 하기 전에도 모든 파티션의 key를 찾는다.
+            Assertions.assertThat(restarted.process("partition0-name")).isNull();
+            restarted.open(restartedWorker.getExecutionContext());
+            Assertions.assertThat(restarted.process("partition0-name")).isNull();
+            Assertions.assertThat(restarted.process("partition1-name")).isNull();
+            Assertions.assertThat(restarted.process("partition1-other")).isEqualTo("partition1-other");
+            restarted.update(restartedWorker.getExecutionContext());
+            restartedWorker.setStatus(BatchStatus.COMPLETED);
+            restarted.close();
+        } finally {
+            StepSynchronizationManager.close();
+        }
+
+        secondManager.setStatus(BatchStatus.COMPLETED);
+        restarted.afterStep(secondManager);
+
+        Assertions.assertThat(segmentFiles()).isEmpty();
+    }
+
+    @Test
+    public void keepsMergedSegmentsUntilChunkCommits() throws Exception {
+        ExecutionContext executionContext = new ExecutionContext();
+        DuplicateValidationProcessor<String> processor = processor();
+        processor.open(executionContext);
+
+        for (int i = 0; i < 20; i++) {
+            processor.process("name" + i);
+            if (i % 10 == 9) {
+                processor.update(executionContext);
+            }
+        }
+        // 두 번째 체크포인트에서 두 세그먼트를 합쳤지만 청크가 커밋되기 전이라 이전 파일이 남아 있다.
+        Assertions.assertThat(executionContext.getString(DuplicateValidationProcessor.CHECKPOINT_SEGMENTS)).doesNotContain(",");
+        Assertions.assertThat(segmentFiles()).hasSize(3);
+
+        processor.afterChunk(new ChunkContext(new StepContext(new StepExecution("step", new JobExecution(1L)))));
+
+        Assertions.assertThat(segmentFiles()).hasSize(1);
+        processor.close();
+    }
+
+    @Test
+    public void passesItemAgainAfterRollback() throws Exception {
+        DuplicateValidationProcessor<String> processor = processor();
+        ChunkContext chunkContext = new ChunkContext(new StepContext(new StepExecution("step", new JobExecution(1L))));
+        String item = "name";
+
+        // 리더가 같은 인스턴스를 두 번 돌려줘도 하나만 통과한다.
+        Assertions.assertThat(processor.process(item)).isSameAs(item);
+        Assertions.assertThat(processor.process(item)).isNull();
+
+        // 청크가 롤백되어 같은 아이템을 다시 처리한다.
+        processor.afterChunkError(chunkContext);
+        Assertions.assertThat(processor.process(item)).isSameAs(item);
+        Assertions.assertThat(processor.process(item)).isNull();
+
+        chunkContext.setComplete();
+        processor.afterChunk(chunkContext);
+
+        Assertions.assertThat(processor.process(item)).isNull();
+    }
+
+    /**
+     * 쓰기에서 skip된 아이템의 이름이 뒤에 다시 나오면 중복이 아니므로 저장되어야 한다.
+     */
+    @Test
+    public void releasesKeyOfSkippedItem() throws Exception {
+        List<Person> items = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            items.add(new Person("name" + i, String.valueOf(i), "서울"));
+        }
+        items.set(3, new Person("name3", "3", "bad"));
+        items.add(new Person("name3", "30", "서울"));
+        items.add(new Person("name5", "50", "서울"));
+
+        EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        try {
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            JobRepositoryFactoryBean factoryBean = new JobRepositoryFactoryBean();
+            factoryBean.setDataSource(dataSource);
+            factoryBean.setTransactionManager(transactionManager);
+            factoryBean.afterPropertiesSet();
+            JobRepository jobRepository = factoryBean.getObject();
+
+            DuplicateValidationProcessor<Person> processor = new DuplicateValidationProcessor<>(
+                    Person::getName, false, new InMemoryKeyPool(), checkpointDirectory);
+            List<Person> written = new ArrayList<>();
+            ItemWriter<Person> itemWriter = persons -> {
+                for (Person person : persons) {
+                    if ("bad".equals(person.getAddress())) {
+                        throw new NotFoundNameException();
+                    }
+                }
+                written.addAll(persons);
+            };
+
+            Step step = new StepBuilder("dedupStep")
+                    .repository(jobRepository)
+                    .transactionManager(transactionManager)
+                    .<Person, Person>chunk(10)
+                    .reader(new ListItemReader<>(items))
+                    // StepExecutionListener로 등록되지 않게 해서 스텝이 끝나도 체크포인트 파일이 남게 한다.
+                    .processor((ItemProcessor<Person, Person>) processor::process)
+                    .writer(itemWriter)
+                    .faultTolerant()
+                    .skip(NotFoundNameException.class)
+                    .skipLimit(1)
+                    .listener((SkipListener<Person, Object>) processor)
+                    .stream(processor)
+                    .listener((ChunkListener) processor)
+                    .build();
+
+            JobExecution jobExecution = jobRepository.createJobExecution("dedupJob", new JobParameters());
+            StepExecution stepExecution = jobExecution.createStepExecution(step.getName());
+            jobRepository.add(stepExecution);
+            step.execute(stepExecution);
+
+            Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+            Assertions.assertThat(stepExecution.getWriteSkipCount()).isEqualTo(1);
+            Assertions.assertThat(stepExecution.getFilterCount()).isEqualTo(1);
+            Assertions.assertThat(written).extracting(Person::getAge)
+                    .hasSize(25)
+                    .contains("30")
+                    .doesNotContain("3", "50");
+
+            // 재시작할 때도 skip된 아이템의 key는 체크포인트에 없다.
+            DuplicateValidationProcessor<String> restarted = processor();
+            restarted.open(stepExecution.getExecutionContext());
+            Assertions.assertThat(restarted.process("name4")).isNull();
+            restarted.close();
+        } finally {
+            dataSource.shutdown();
+        }
+    }
+
+    @Test
+    public void keepsOneItemPerKeyAcrossThreads() throws Exception {
+        DuplicateValidationProcessor<String> processor = processor();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        AtomicInteger passed = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executorService.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    if (processor.process(new String("name" + i)) != null) {
+                        passed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        Assertions.assertThat(passed.get()).isEqualTo(1_000);
+    }
+
+    private void runWorker(DuplicateValidationProcessor<String> processor, StepExecution stepExecution, String key,
+                           BatchStatus status) throws Exception {
+        StepSynchronizationManager.register(stepExecution);
+        try {
+            processor.open(stepExecution.getExecutionContext());
+            Assertions.assertThat(processor.process(key)).isEqualTo(key);
+            processor.update(stepExecution.getExecutionContext());
+            stepExecution.setStatus(status);
+            processor.close();
+        } finally {
+            StepSynchronizationManager.close();
+        }
+    }
+
+    private StepExecution stepExecution(JobExecution jobExecution, String stepName, Long id) {
+        StepExecution stepExecution = jobExecution.createStepExecution(stepName);
+        stepExecution.setId(id);
+        return stepExecution;
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(checkpointDirectory)) {
+            return files.filter(file -> file.toString().endsWith(".keys")).collect(Collectors.toList());
+        }
+    }
+
+    private DuplicateValidationProcessor<String> processor() {
+        return new DuplicateValidationProcessor<>(Function.identity(), false, new InMemoryKeyPool(), checkpointDirectory);
+    }
+}
@@ -0,0 +1,121 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class FileRangePartitionerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void partitionsReadEveryLineExactlyOnce() throws Exception {
+        Path file = directory.resolve("person.csv");
+        List<String> lines = new ArrayList<>();
+        lines.add("name,age,address");
+        for (int i = 0; i < 1_000; i++) {
+            lines.add("name" + i + "," + (i % 90) + ",서울");
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+
+        FileSystemResource resource = new FileSystemResource(file);
+        Map<String, ExecutionContext> partitions = new FileRangePartitioner(resource, 1).partition(7);
+
+        List<String> read = new ArrayList<>();
+        for (ExecutionContext partition : partitions.values()) {
+            ByteRangeLineItemReader<String> itemReader = new ByteRangeLineItemReader<>("itemReader", resource,
+                    partition.getLong(FileRangePartitioner.START_OFFSET),
+                    partition.getLong(FileRangePartitioner.END_OFFSET),
+                    (line, lineNumber) -> line);
+            itemReader.open(new ExecutionContext());
+
+            for (String line = itemReader.read(); line != null; line = itemReader.read()) {
+                read.add(line);
+            }
+            itemReader.close();
+        }
+
+        Assertions.assertThat(partitions).hasSizeBetween(2, 7);
+        Assertions.assertThat(read).containsExactlyInAnyOrderElementsOf(lines.subList(1, lines.size()));
+    }
+
+    @Test
+    public void doesNotSplitQuotedRecordsAcrossPartitions() throws Exception {
+        List<String> names = new ArrayList<>();
+        FileSystemResource resource = quotedFile(names);
+        Map<String, ExecutionContext> partitions = new FileRangePartitioner(resource, 1).partition(13);
+
+        List<String> read = new ArrayList<>();
+        for (ExecutionContext partition : partitions.values()) {
+            MappedCsvItemReader<String> itemReader = new MappedCsvItemReader<>("itemReader", resource, 3,
+                    (row, rowNumber) -> row.readString(0));
+            itemReader.setRange(partition.getLong(FileRangePartitioner.START_OFFSET),
+                    partition.getLong(FileRangePartitioner.END_OFFSET));
+            itemReader.open(new ExecutionContext());
+
+            for (String name = itemReader.read(); name != null; name = itemReader.read()) {
+                read.add(name);
+            }
+            itemReader.close();
+        }
+
+        Assertions.assertThat(partitions).hasSizeBetween(2, 13);
+        Assertions.assertThat(read).containsExactlyInAnyOrderElementsOf(names);
+    }
+
+    @Test
+    public void byteRangeReaderKeepsQuotedNewlinesInOneRecord() throws Exception {
+        List<String> names = new ArrayList<>();
+        FileSystemResource resource = quotedFile(names);
+        Map<String, ExecutionContext> partitions = new FileRangePartitioner(resource, 1).partition(13);
+
+        DefaultLineMapper<String[]> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(new DelimitedLineTokenizer());
+        lineMapper.setFieldSetMapper(FieldSet::getValues);
+
+        List<String> read = new ArrayList<>();
+        for (ExecutionContext partition : partitions.values()) {
+            ByteRangeLineItemReader<String[]> itemReader = new ByteRangeLineItemReader<>("itemReader", resource,
+                    partition.getLong(FileRangePartitioner.START_OFFSET),
+                    partition.getLong(FileRangePartitioner.END_OFFSET),
+                    lineMapper);
+            itemReader.open(new ExecutionContext());
+
+            for (String[] fields = itemReader.read(); fields != null; fields = itemReader.read()) {
+                Assertions.assertThat(fields).hasSize(3);
+                Assertions.assertThat(fields[2]).isEqualTo("서울\n강남");
+                read.add(fields[0]);
+            }
+            itemReader.close();
+        }
+
+        Assertions.assertThat(partitions).hasSizeBetween(2, 13);
+        Assertions.assertThat(read).containsExactlyInAnyOrderElementsOf(names);
+    }
+
+    private FileSystemResource quotedFile(List<String> names) throws Exception {
+        Path file = directory.resolve("quoted.csv");
+        StringBuilder csv = new StringBuilder("name,age,address\n");
+        for (int i = 0; i < 1_000; i++) {
+            // 경계가 " 안의 줄바꿈에 걸리도록 여러 줄짜리 필드를 길게 만든다.
+            String name = "여러\n줄\n이름" + i;
+            names.add(name);
+            csv.append('"').append(name).append("\",").append(i % 90).append(",\"서울\r\n강남\"\n");
+        }
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+        return new FileSystemResource(file);
+    }
+}
@@ -0,0 +1,156 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.separator.DefaultRecordSeparatorPolicy;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.support.ListItemWriter;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class MappedCsvItemReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void readsSameAsFlatFileItemReaderForPersonCsv() throws Exception {
+        assertSameAsFlatFileItemReader(new ClassPathResource("person.csv"), 64 * 1024);
+    }
+
+    @Test
+    public void readsQuotedFieldsAndCrLfSameAsFlatFileItemReader() throws Exception {
+        Path file = directory.resolve("quoted.csv");
+        StringBuilder csv = new StringBuilder("이름,나이,거주지\r\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append(" 김지수").append(i).append(" ,").append(i % 90).append(",안산\r\n");
+            csv.append("\"홍, 길동").append(i).append("\",\" 30 \",\"서울 \"\"강남\"\"\"\r\n");
+            csv.append("\"여러\n줄").append(i).append("\",25,인천\n");
+        }
+        csv.append("마지막,1,부산");
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        // 윈도우를 작게 줘서 레코드가 윈도우 끝에 걸치는 경우도 확인한다.
+        assertSameAsFlatFileItemReader(new FileSystemResource(file), 100);
+    }
+
+    @Test
+    public void skipsMalformedRecordOnce() throws Exception {
+        Path file = directory.resolve("malformed.csv");
+        StringBuilder csv = new StringBuilder("이름,나이,거주지\n");
+        for (int i = 0; i < 30; i++) {
+            csv.append(i == 12 ? "필드가,부족" : "김지수" + i + "," + i + ",안산").append('\n');
+        }
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        MappedCsvItemReader<String> itemReader = new MappedCsvItemReader<>("mappedCsvItemReader",
+                new FileSystemResource(file), 3, (row, rowNumber) -> row.readString(0));
+        itemReader.setLinesToSkip(1);
+        ListItemWriter<String> itemWriter = new ListItemWriter<>();
+
+        EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        try {
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            JobRepositoryFactoryBean factoryBean = new JobRepositoryFactoryBean();
+            factoryBean.setDataSource(dataSource);
+            factoryBean.setTransactionManager(transactionManager);
+            factoryBean.afterPropertiesSet();
+            JobRepository jobRepository = factoryBean.getObject();
+
+            Step step = new StepBuilder("mappedCsvStep")
+                    .repository(jobRepository)
+                    .transactionManager(transactionManager)
+                    .<String, String>chunk(10)
+                    .reader(itemReader)
+                    .writer(itemWriter)
+                    .faultTolerant()
+                    .skip(FlatFileParseException.class)
+                    .skipLimit(1)
+                    .build();
+
+            JobExecution jobExecution = jobRepository.createJobExecution("mappedCsvJob", new JobParameters());
+            StepExecution stepExecution = jobExecution.createStepExecution(step.getName());
+            jobRepository.add(stepExecution);
+            step.execute(stepExecution);
+
+            Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+            Assertions.assertThat(stepExecution.getReadSkipCount()).isEqualTo(1);
+            List<String> written = new ArrayList<>(itemWriter.getWrittenItems());
+            Assertions.assertThat(written).hasSize(29).doesNotContain("필드가").contains("김지수13");
+        } finally {
+            dataSource.shutdown();
+        }
+    }
+
+    private void assertSameAsFlatFileItemReader(Resource resource, int windowSize) throws Exception {
+        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
+        DelimitedLineTokenizer lineTokenizer = new DelimitedLineTokenizer();
+        lineTokenizer.setNames("name", "age", "address");
+        lineMapper.setLineTokenizer(lineTokenizer);
+        lineMapper.setFieldSetMapper(fieldSet -> new Person(
+                fieldSet.readString(0),
+                fieldSet.readString(1),
+                fieldSet.readString(2)));
+
+        FlatFileItemReader<Person> flatFileItemReader = new FlatFileItemReaderBuilder<Person>()
+                .name("csvFileItemReader")
+                .encoding("UTF-8")
+                .resource(resource)
+                .linesToSkip(1)
+                .recordSeparatorPolicy(new DefaultRecordSeparatorPolicy()) //따옴표 안의 줄바꿈
+                .lineMapper(lineMapper)
+                .build();
+
+        MappedCsvItemReader<Person> mappedCsvItemReader = new MappedCsvItemReader<>("mappedCsvItemReader", resource, 3,
+                (row, rowNumber) -> new Person(row.readString(0), row.readString(1), row.readString(2)));
+        mappedCsvItemReader.setLinesToSkip(1);
+        mappedCsvItemReader.setWindowSize(windowSize);
+
+        List<String> expected = readAll(flatFileItemReader);
+        List<String> actual = readAll(mappedCsvItemReader);
+
+        Assertions.assertThat(actual).isNotEmpty().isEqualTo(expected);
+    }
+
+    private List<String> readAll(ItemStreamReader<Person> itemReader) throws Exception {
+        List<String> persons = new ArrayList<>();
+        itemReader.open(new ExecutionContext());
+
+        for (Person person = itemReader.read(); person != null; person = itemReader.read()) {
+            persons.add(person.getName() + "|" + person.getAge() + "|" + person.getAddress());
+        }
+
+        itemReader.close();
+        return persons;
+    }
+}
@@ -0,0 +1,102 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class PrefetchItemReaderTest {
+
+    @Test
+    public void readsAllItemsInOrder() throws Exception {
+        PrefetchItemReader<Integer> itemReader = new PrefetchItemReader<>(new CountingItemReader(100, -1), 8);
+        itemReader.open(new ExecutionContext());
+
+        List<Integer> items = new ArrayList<>();
+        for (Integer item = itemReader.read(); item != null; item = itemReader.read()) {
+            items.add(item);
+        }
+        itemReader.close();
+
+        Assertions.assertThat(items).hasSize(100);
+        Assertions.assertThat(items).isSorted();
+        Assertions.assertThat(items.get(0)).isEqualTo(0);
+    }
+
+    @Test
+    public void restartsFromLastConsumedItem() throws Exception {
+        ExecutionContext executionContext = new ExecutionContext();
+
+        PrefetchItemReader<Integer> first = new PrefetchItemReader<>(new CountingItemReader(100, -1), 32);
+        first.open(executionContext);
+        for (int i = 0; i < 10; i++) {
+            first.read();
+        }
+        // 미리 읽은 아이템은 저장하지 않는다.
+        Thread.sleep(50);
+        first.update(executionContext);
+        first.close();
+
+        Assertions.assertThat(executionContext.getInt("counting.read.count")).isEqualTo(10);
+
+        PrefetchItemReader<Integer> restarted = new PrefetchItemReader<>(new CountingItemReader(100, -1), 32);
+        restarted.open(executionContext);
+        Assertions.assertThat(restarted.read()).isEqualTo(10);
+        restarted.close();
+    }
+
+    @Test
+    public void rethrowsReadFailureInPlace() throws Exception {
+        PrefetchItemReader<Integer> itemReader = new PrefetchItemReader<>(new CountingItemReader(10, 3), 4);
+        itemReader.open(new ExecutionContext());
+
+        Assertions.assertThat(itemReader.read()).isEqualTo(0);
+        Assertions.assertThat(itemReader.read()).isEqualTo(1);
+        Assertions.assertThat(itemReader.read()).isEqualTo(2);
+        Assertions.assertThatThrownBy(itemReader::read).isInstanceOf(ParseException.class);
+        // skip 하면 다음 아이템부터 계속 읽는다.
+        Assertions.assertThat(itemReader.read()).isEqualTo(4);
+        itemReader.close();
+    }
+
+    /**
+     * 0부터 count - 1까지 돌려주고 failAt 번째 아이템에서는 예외를 던진다.
+     */
+    private static class CountingItemReader extends AbstractItemCountingItemStreamItemReader<Integer> {
+
+        private final int failAt;
+        private int next;
+
+        private CountingItemReader(int count, int failAt) {
+            setName("counting");
+            setMaxItemCount(count);
+            this.failAt = failAt;
+        }
+
+        @Override
+        protected Integer doRead() {
+            int item = next++;
+            if (item == failAt) {
+                throw new ParseException("읽을 수 없는 아이템 " + item);
+            }
+            return item;
+        }
+
+        @Override
+        protected void jumpToItem(int itemIndex) {
+            next = itemIndex;
+        }
+
+        @Override
+        protected void doOpen() {
+        }
+
+        @Override
+        protected void doClose() {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import study.spring.batch.springbatchstudy.part4.UserRepository;
+import study.spring.batch.springbatchstudy.part4.Users;
+import study.spring.batch.springbatchstudy.part4.UsersDto;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = {TestConfiguration.class, ProjectionItemReaderBuilderTest.UsersJpaConfiguration.class})
+class ProjectionItemReaderBuilderTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PersonRepository personRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        personRepository.saveAll(IntStream.range(0, 10)
+                .mapToObj(i -> new Person("김지수" + i, String.valueOf(15 + i), "안산"))
+                .collect(Collectors.toList()));
+        userRepository.saveAll(IntStream.range(0, 3)
+                .mapToObj(i -> Users.builder()
+                        .username("user" + i)
+                        .totalAmount(100_000 * i)
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        personRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private static <T> List<T> readAll(ItemStreamReader<T> itemReader) throws Exception {
+        itemReader.open(new ExecutionContext());
+
+        List<T> items = new ArrayList<>();
+        for (T item = itemReader.read(); item != null; item = itemReader.read()) {
+            items.add(item);
+        }
+        itemReader.close();
+
+        return items;
+    }
+
+    @Test
+    public void readsJpqlConstructorExpression() throws Exception {
+        List<PersonDto> items = readAll(new ProjectionItemReaderBuilder<>(PersonDto.class)
+                .name("jpqlProjectionItemReader")
+                .select("p.id", "p.name", "p.age", "p.address")
+                .from("Person p")
+                .where("p.name like :name")
+                .parameterValues(Map.of("name", "김지수%"))
+                .orderBy("p.id")
+                .fetchSize(3)
+                .buildJpa(entityManagerFactory));
+
+        Assertions.assertThat(items).hasSize(10).allMatch(item -> item.getClass() == PersonDto.class);
+        Assertions.assertThat(items.get(0).getName()).isEqualTo("김지수0");
+        Assertions.assertThat(items.get(9).getAge()).isEqualTo("24");
+    }
+
+    @Test
+    public void readsJdbcColumnList() throws Exception {
+        List<PersonDto> items = readAll(new ProjectionItemReaderBuilder<>(PersonDto.class)
+                .name("jdbcProjectionItemReader")
+                .select(PersonDto.COLUMNS)
+                .from("person")
+                .where("age >= :age and address = :address")
+                .parameterValues(Map.of("age", 20, "address", "안산"))
+                .orderBy("id")
+                .rowMapper(PersonDto::mapRow)
+                .buildJdbc(dataSource));
+
+        Assertions.assertThat(items).extracting(PersonDto::getName)
+                .containsExactly("김지수5", "김지수6", "김지수7", "김지수8", "김지수9");
+    }
+
+    @Test
+    public void readsUsersDtoWithJpqlAndJdbc() throws Exception {
+        List<UsersDto> jpql = readAll(new ProjectionItemReaderBuilder<>(UsersDto.class)
+                .name("jpqlUsersDtoItemReader")
+                .select("u.id", "u.username", "u.level", "u.totalAmount")
+                .from("Users u")
+                .orderBy("u.id")
+                .buildJpa(entityManagerFactory));
+        // userExportStep과 같은 리더
+        List<UsersDto> jdbc = readAll(new ProjectionItemReaderBuilder<>(UsersDto.class)
+                .name("jdbcUsersDtoItemReader")
+                .select(UsersDto.COLUMNS)
+                .from("users")
+                .orderBy("id")
+                .rowMapper(UsersDto::mapRow)
+                .buildJdbc(dataSource));
+
+        Assertions.assertThat(jpql).extracting(UsersDto::getUsername).containsExactly("user0", "user1", "user2");
+        Assertions.assertThat(jdbc).extracting(UsersDto::getTotalAmount).containsExactly(0, 100_000, 200_000);
+        Assertions.assertThat(jdbc).extracting(UsersDto::getLevel).containsOnly(Users.Level.NORMAL);
+        Assertions.assertThat(UsersDto.fieldExtractor().extract(jdbc.get(1)))
+                .containsExactly(jpql.get(1).getId(), "user1", Users.Level.NORMAL, 100_000);
+    }
+
+    @Test
+    public void rejectsSelectWithoutMatchingConstructor() {
+        Assertions.assertThatThrownBy(() -> new ProjectionItemReaderBuilder<>(PersonDto.class)
+                        .name("jpqlProjectionItemReader")
+                        .select("p.id", "p.name")
+                        .from("Person p")
+                        .buildJpa(entityManagerFactory))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void extractsFieldsFromEntityAndDto() {
+        Object[] expected = {1, "김지수", "27", "안산"};
+
+        Assertions.assertThat(PersonFields.fieldExtractor().extract(new Person(1, "김지수", "27", "안산"))).containsExactly(expected);
+        Assertions.assertThat(PersonFields.fieldExtractor().extract(new PersonDto(1, "김지수", "27", "안산"))).containsExactly(expected);
+    }
+
+    /**
+     * TestConfiguration은 part3의 엔티티만 찾으므로 part4의 Users도 등록한다.
+     */
+    @Configuration
+    @EntityScan(basePackageClasses = {Person.class, Users.class})
+    @EnableJpaRepositories(basePackageClasses = {PersonRepository.class, UserRepository.class})
+    static class UsersJpaConfiguration {
+    }
+}
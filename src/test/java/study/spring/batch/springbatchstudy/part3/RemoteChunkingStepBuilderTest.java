@@ -0,0 +1,251 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.integration.chunk.ChunkRequest;
+import org.springframework.batch.integration.chunk.ChunkResponse;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.PollableChannel;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class RemoteChunkingStepBuilderTest {
+
+    private static final int ITEMS = 1000;
+
+    private EmbeddedDatabase dataSource;
+    private JobRepository jobRepository;
+    private DataSourceTransactionManager transactionManager;
+
+    private final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(dataSource);
+
+        JobRepositoryFactoryBean factoryBean = new JobRepositoryFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setTransactionManager(transactionManager);
+        factoryBean.afterPropertiesSet();
+        jobRepository = factoryBean.getObject();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    public void processesChunksOnQueueWorkers() throws Exception {
+        StepExecution stepExecution = execute(ChunkChannel.local(ChunkChannel.QUEUE, 4), 8, Set.of(), 2);
+
+        assertAllWritten(stepExecution);
+    }
+
+    @Test
+    public void processesChunksOnSocketWorkers() throws Exception {
+        StepExecution stepExecution = execute(ChunkChannel.local(ChunkChannel.SOCKET, 4), 8, Set.of(), 2);
+
+        assertAllWritten(stepExecution);
+    }
+
+    @Test
+    public void skipsFailedItemsOnWorkers() throws Exception {
+        StepExecution stepExecution = execute(ChunkChannel.local(ChunkChannel.SOCKET, 4), 8, Set.of(37, 512), 2);
+
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteSkipCount()).isEqualTo(2);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(expectedWrites() - 2);
+        Assertions.assertThat(written).hasSize(expectedWrites() - 2).doesNotContain(37, 512);
+    }
+
+    @Test
+    public void failsWhenWorkerExceedsSkipLimit() throws Exception {
+        // 동시에 처리 중인 청크의 skip은 서로 모르므로 워커 하나로 차례대로 처리한다.
+        StepExecution stepExecution = execute(ChunkChannel.local(ChunkChannel.QUEUE, 1), 8, Set.of(3, 500, 900), 2);
+
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+        Assertions.assertThat(stepExecution.getExitStatus().getExitDescription()).contains("SkipLimitExceededException");
+    }
+
+    @Test
+    public void repliesFailureWhenWorkerThrows() throws Exception {
+        // 청크 처리 밖(역직렬화, StepSynchronizationManager 등)에서 나는 예외
+        ChunkWorker<Integer> worker = new ChunkWorker<Integer>((contribution, chunk) -> {
+        }, transactionManager, new DefaultTransactionDefinition()) {
+            @Override
+            public ChunkResponse handle(ChunkRequest<Integer> request) {
+                throw new OutOfMemoryError("worker failure");
+            }
+        };
+        StepExecution stepExecution = jobRepository.createJobExecution("remoteJob", new JobParameters())
+                .createStepExecution("remoteStep");
+
+        for (ChunkChannel channel : List.of(new QueueChunkChannel(worker, 1), SocketChunkChannel.local(worker, 1))) {
+            try {
+                channel.getRequestChannel().send(new GenericMessage<>(
+                        new ChunkRequest<>(3, List.of(1, 2), 7L, stepExecution.createStepContribution())));
+
+                // 결과를 보내지 않으면 매니저는 maxWaitTimeouts가 지날 때까지 기다린다.
+                Message<?> reply = channel.getReplyChannel().receive(10_000L);
+                Assertions.assertThat(reply).isNotNull();
+                ChunkResponse response = (ChunkResponse) reply.getPayload();
+                Assertions.assertThat(response.isSuccessful()).isFalse();
+                Assertions.assertThat(response.getSequence()).isEqualTo(3);
+                Assertions.assertThat(response.getJobId()).isEqualTo(7L);
+                Assertions.assertThat(response.getMessage()).contains("worker failure");
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    @Test
+    public void rejectsChunksAheadBelowOne() {
+        SimpleStepBuilder<Integer, Integer> stepBuilder = new StepBuilder("remoteStep")
+                .repository(jobRepository)
+                .transactionManager(transactionManager)
+                .chunk(10);
+
+        Assertions.assertThatThrownBy(() -> new RemoteChunkingStepBuilder<>(stepBuilder, ChunkChannel.local(ChunkChannel.QUEUE, 1))
+                        .chunksAhead(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void neverSendsMoreThanChunksAhead() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Function<ChunkWorker<Integer>, ChunkChannel> queue = ChunkChannel.local(ChunkChannel.QUEUE, 8);
+
+        // 보낸 청크에서 받은 결과를 뺀 개수를 센다.
+        Function<ChunkWorker<Integer>, ChunkChannel> counting = worker -> {
+            ChunkChannel channel = queue.apply(worker);
+            return new ChunkChannel() {
+                @Override
+                public MessageChannel getRequestChannel() {
+                    return (message, timeout) -> {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        return channel.getRequestChannel().send(message, timeout);
+                    };
+                }
+
+                @Override
+                public PollableChannel getReplyChannel() {
+                    return new PollableChannel() {
+                        @Override
+                        public Message<?> receive() {
+                            return received(channel.getReplyChannel().receive());
+                        }
+
+                        @Override
+                        public Message<?> receive(long timeout) {
+                            return received(channel.getReplyChannel().receive(timeout));
+                        }
+
+                        @Override
+                        public boolean send(Message<?> message, long timeout) {
+                            return channel.getReplyChannel().send(message, timeout);
+                        }
+
+                        private Message<?> received(Message<?> message) {
+                            if (message != null) {
+                                inFlight.decrementAndGet();
+                            }
+                            return message;
+                        }
+                    };
+                }
+
+                @Override
+                public void close() {
+                    channel.close();
+                }
+            };
+        };
+
+        StepExecution stepExecution = execute(counting, 2, Set.of(), 2);
+
+        assertAllWritten(stepExecution);
+        Assertions.assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    private void assertAllWritten(StepExecution stepExecution) {
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getReadCount()).isEqualTo(ITEMS);
+        Assertions.assertThat(stepExecution.getFilterCount()).isEqualTo(ITEMS - expectedWrites());
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(expectedWrites());
+        Assertions.assertThat(written).hasSize(expectedWrites()).doesNotHaveDuplicates();
+    }
+
+    private static int expectedWrites() {
+        // 7의 배수는 processor가 걸러낸다.
+        return ITEMS - (ITEMS + 6) / 7;
+    }
+
+    private StepExecution execute(Function<ChunkWorker<Integer>, ChunkChannel> channelFactory, int chunksAhead,
+                                  Set<Integer> failedItems, int skipLimit) throws Exception {
+        ItemWriter<Integer> itemWriter = items -> {
+            for (Integer item : items) {
+                if (failedItems.contains(item)) {
+                    throw new NotFoundNameException();
+                }
+            }
+            Thread.sleep(1);
+            written.addAll(items);
+        };
+
+        SimpleStepBuilder<Integer, Integer> stepBuilder = new StepBuilder("remoteStep")
+                .repository(jobRepository)
+                .transactionManager(transactionManager)
+                .<Integer, Integer>chunk(10)
+                .reader(new ListItemReader<>(IntStream.range(0, ITEMS).boxed().collect(Collectors.toList())))
+                .processor((ItemProcessor<Integer, Integer>) item -> item % 7 == 0 ? null : item)
+                .writer(itemWriter);
+
+        Step step = new RemoteChunkingStepBuilder<>(stepBuilder, channelFactory)
+                .chunksAhead(chunksAhead)
+                .skip(NotFoundNameException.class)
+                .skipLimit(skipLimit)
+                .build();
+
+        JobExecution jobExecution = jobRepository.createJobExecution("remoteJob", new JobParameters());
+        StepExecution stepExecution = jobExecution.createStepExecution(step.getName());
+        jobRepository.add(stepExecution);
+        step.execute(stepExecution);
+        return stepExecution;
+    }
+}
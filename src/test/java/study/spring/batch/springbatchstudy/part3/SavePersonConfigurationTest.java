@@ -3,7 +3,9 @@ package study.spring.batch.springbatchstudy.part3;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
@@ -14,6 +16,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 
 @RunWith(SpringRunner.class)
 @SpringBatchTest
@@ -58,6 +68,11 @@ class SavePersonConfigurationTest {
                 .sum())
                 .isEqualTo(personRepository.count())
                 .isEqualTo(3);
+
+        //dedupCheckpointDir를 주지 않으면 key 파일을 남기지 않는다.
+        Assertions.assertThat(jobExecution.getStepExecutions())
+                .noneMatch(stepExecution -> stepExecution.getExecutionContext()
+                        .containsKey(DuplicateValidationProcessor.CHECKPOINT_DIRECTORY));
     }
 
     @Test
@@ -78,4 +93,132 @@ class SavePersonConfigurationTest {
                 .isEqualTo(personRepository.count())
                 .isEqualTo(100);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test_bulk_load() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("allow_duplicate", "true")
+                .addString("bulkLoad", "true")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        Assertions.assertThat(jobExecution.getStepExecutions().stream()
+                        .mapToInt(StepExecution::getWriteCount)
+                        .sum())
+                .isEqualTo(personRepository.count())
+                .isEqualTo(100);
+    }
+
+    @Test
+    public void test_async_processor() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("allow_duplicate", "false")
+                .addString("processorThreads", "4")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        //중복으로 걸러진 아이템의 Future는 writeCount가 아니라 filterCount로 센다.
+        Assertions.assertThat(jobExecution.getStepExecutions().stream()
+                        .mapToInt(StepExecution::getWriteCount)
+                        .sum())
+                .isEqualTo(personRepository.count())
+                .isEqualTo(3);
+        Assertions.assertThat(jobExecution.getStepExecutions().stream()
+                        .mapToInt(StepExecution::getFilterCount)
+                        .sum())
+                .isEqualTo(97);
+    }
+
+    /**
+     * 검증은 processorThreads가 있어도 청크 스레드에서 하므로 이름이 빈 아이템은 쓰기 skip이 아니라 process skip이 된다.
+     * 쓰기가 실패하지 않으므로 bisectSkip과 상관없이 skip, 쓰기 건수와 트랜잭션 개수가 같아야 한다.
+     */
+    @Test
+    public void test_bisect_skip(@TempDir Path directory) throws Exception {
+        //given
+        Path inputFile = directory.resolve("person.csv");
+        List<String> lines = new ArrayList<>();
+        lines.add("name,age,address");
+        for (int i = 0; i < 40; i++) {
+            lines.add((i == 13 || i == 27 ? "" : "name" + i) + "," + (20 + i) + ",서울");
+        }
+        Files.write(inputFile, lines, StandardCharsets.UTF_8);
+
+        Map<Boolean, StepExecution> stepExecutions = new HashMap<>();
+        for (boolean bisectSkip : new boolean[]{true, false}) {
+            JobParameters jobParameters = new JobParametersBuilder()
+                    .addString("allow_duplicate", "true")
+                    .addString("inputFile", inputFile.toString())
+                    .addString("processorThreads", "4")
+                    .addString("bisectSkip", String.valueOf(bisectSkip))
+                    .toJobParameters();
+
+            //when
+            JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+            //then
+            Assertions.assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+            Assertions.assertThat(personRepository.count()).isEqualTo(38);
+            personRepository.deleteAll();
+            stepExecutions.put(bisectSkip, jobExecution.getStepExecutions().iterator().next());
+        }
+
+        StepExecution bisect = stepExecutions.get(true);
+        StepExecution scan = stepExecutions.get(false);
+        Assertions.assertThat(bisect.getProcessSkipCount()).isEqualTo(scan.getProcessSkipCount()).isEqualTo(2);
+        Assertions.assertThat(bisect.getWriteSkipCount()).isEqualTo(scan.getWriteSkipCount()).isEqualTo(0);
+        Assertions.assertThat(bisect.getWriteCount()).isEqualTo(scan.getWriteCount()).isEqualTo(38);
+        Assertions.assertThat(bisect.getCommitCount() + bisect.getRollbackCount())
+                .isEqualTo(scan.getCommitCount() + scan.getRollbackCount());
+    }
+
+    @Test
+    public void test_remote_chunking_queue() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("allow_duplicate", "false")
+                .addString("remoteChunking", "queue")
+                .addString("remoteWorkers", "4")
+                .addString("chunksAhead", "2")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        //쓰기 건수는 워커가 보낸 결과로 센다.
+        Assertions.assertThat(jobExecution.getStepExecutions().stream()
+                        .mapToInt(StepExecution::getWriteCount)
+                        .sum())
+                .isEqualTo(personRepository.count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void test_remote_chunking_socket() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("allow_duplicate", "true")
+                .addString("remoteChunking", "socket")
+                .addString("remoteWorkers", "4")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        Assertions.assertThat(jobExecution.getStepExecutions().stream()
+                        .mapToInt(StepExecution::getWriteCount)
+                        .sum())
+                .isEqualTo(personRepository.count())
+                .isEqualTo(100);
+    }
+}
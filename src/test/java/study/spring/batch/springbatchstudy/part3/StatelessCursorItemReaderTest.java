@@ -0,0 +1,96 @@
+package study.spring.batch.springbatchstudy.part3;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = TestConfiguration.class)
+class StatelessCursorItemReaderTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PersonRepository personRepository;
+
+    private List<Integer> ids;
+
+    @BeforeEach
+    public void setUp() {
+        ids = personRepository.saveAll(IntStream.range(0, 25)
+                        .mapToObj(i -> new Person("김지수" + i, String.valueOf(10 + i), "안산"))
+                        .collect(Collectors.toList()))
+                .stream()
+                .map(Person::getId)
+                .collect(Collectors.toList());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        personRepository.deleteAll();
+    }
+
+    private StatelessCursorItemReader<Person> itemReader(String queryString) {
+        StatelessCursorItemReader<Person> itemReader = new StatelessCursorItemReader<>(
+                "statelessCursorItemReader", entityManagerFactory, queryString, Person::getId, Integer.MIN_VALUE);
+        itemReader.setFetchSize(4);
+        return itemReader;
+    }
+
+    @Test
+    public void readsAllInKeyOrder() throws Exception {
+        StatelessCursorItemReader<Person> itemReader = itemReader("select p from Person p where p.id > :lastKey order by p.id");
+        itemReader.open(new ExecutionContext());
+
+        List<Integer> read = new ArrayList<>();
+        for (Person person = itemReader.read(); person != null; person = itemReader.read()) {
+            read.add(person.getId());
+        }
+        itemReader.close();
+
+        Assertions.assertThat(read).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    public void restartsAfterLastKey() throws Exception {
+        ExecutionContext executionContext = new ExecutionContext();
+
+        StatelessCursorItemReader<Person> first = itemReader("select p from Person p where p.id > :lastKey order by p.id");
+        first.open(executionContext);
+        Assertions.assertThat(first.readChunk(10)).extracting(Person::getId).containsExactlyElementsOf(ids.subList(0, 10));
+        first.update(executionContext);
+        first.close();
+
+        StatelessCursorItemReader<Person> restarted = itemReader("select p from Person p where p.id > :lastKey order by p.id");
+        restarted.open(executionContext);
+        Assertions.assertThat(restarted.readChunk(100)).extracting(Person::getId).containsExactlyElementsOf(ids.subList(10, 25));
+        Assertions.assertThat(restarted.readChunk(100)).isEmpty();
+        restarted.close();
+    }
+
+    @Test
+    public void bindsParameterValues() throws Exception {
+        StatelessCursorItemReader<Person> itemReader = itemReader(
+                "select p from Person p where p.id > :lastKey and p.name like :name order by p.id");
+        itemReader.setParameterValues(Map.of("name", "김지수1%"));
+        itemReader.open(new ExecutionContext());
+
+        Assertions.assertThat(itemReader.readChunk(100)).extracting(Person::getName)
+                .containsExactly("김지수1", "김지수10", "김지수11", "김지수12", "김지수13", "김지수14",
+                        "김지수15", "김지수16", "김지수17", "김지수18", "김지수19");
+        itemReader.close();
+    }
+}
@@ -0,0 +1,94 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import study.spring.batch.springbatchstudy.part3.Person;
+import study.spring.batch.springbatchstudy.part3.TestConfiguration;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {DataGeneratorConfiguration.class, TestConfiguration.class, DataGeneratorConfigurationTest.GeneratorJpaConfiguration.class})
+class DataGeneratorConfigurationTest {
+
+    private static final String LEVEL_WEIGHTS = "NORMAL:70,SILVER:15,GOLD:10,VIP:5";
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * 파티션으로 나눠 만들어도 같은 seed로 인덱스마다 만든 데이터와 등급 분포가 같아야 한다.
+     */
+    @Test
+    public void test_generates_users_and_person_with_level_weights() throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from users");
+        jdbcTemplate.update("delete from person");
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                .addString("userCount", "2000")
+                .addString("personCount", "500")
+                .addString("levelWeights", LEVEL_WEIGHTS)
+                .addString("personNames", "10")
+                .addString("gridSize", "4")
+                .addString("poolSize", "2")
+                .addString("seed", "7")
+                .toJobParameters());
+
+        Assertions.assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(workerSteps(jobExecution, "generateUsersWorkerStep:")).hasSize(4);
+        Assertions.assertThat(workerSteps(jobExecution, "generateUsersWorkerStep:").stream()
+                .mapToInt(StepExecution::getWriteCount)
+                .sum())
+                .isEqualTo(2_000);
+        Assertions.assertThat(workerSteps(jobExecution, "generatePersonWorkerStep:").stream()
+                .mapToInt(StepExecution::getWriteCount)
+                .sum())
+                .isEqualTo(500);
+
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(7L, SyntheticDataGenerator.parseLevelWeights(LEVEL_WEIGHTS), 10L);
+        Map<Users.Level, Long> expected = LongStream.range(0, 2_000)
+                .mapToObj(generator::users)
+                .collect(Collectors.groupingBy(user -> Users.Level.getNextLevel(user.getTotalAmount()),
+                        () -> new EnumMap<>(Users.Level.class), Collectors.counting()));
+        Map<Users.Level, Long> generated = jdbcTemplate.queryForList("select total_amount from users", Integer.class).stream()
+                .collect(Collectors.groupingBy(Users.Level::getNextLevel, () -> new EnumMap<>(Users.Level.class), Collectors.counting()));
+
+        Assertions.assertThat(generated).isEqualTo(expected);
+        // 비율 70:15:10:5를 따르므로 NORMAL 구간이 가장 많고 VIP 구간이 가장 적다.
+        Assertions.assertThat(generated.get(Users.Level.NORMAL)).isBetween(1_300L, 1_500L);
+        Assertions.assertThat(generated.get(Users.Level.VIP)).isBetween(50L, 150L);
+
+        Assertions.assertThat(jdbcTemplate.queryForObject("select count(*) from person", Long.class)).isEqualTo(500L);
+        Assertions.assertThat(jdbcTemplate.queryForObject("select count(distinct name) from person", Long.class)).isLessThanOrEqualTo(10L);
+    }
+
+    private static List<StepExecution> workerSteps(JobExecution jobExecution, String prefix) {
+        return jobExecution.getStepExecutions().stream()
+                .filter(x -> x.getStepName().startsWith(prefix))
+                .collect(Collectors.toList());
+    }
+
+    @Configuration
+    @EntityScan(basePackageClasses = {Users.class, Person.class})
+    static class GeneratorJpaConfiguration {
+    }
+}
@@ -0,0 +1,86 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.Arrays;
+import java.util.List;
+
+class LevelRuleEngineTest {
+
+    @Test
+    public void defaultRulesMatchEnumLogic() {
+        LevelRuleEngine levelRuleEngine = new LevelRuleEngine(Users.Level::defaultRules);
+        levelRuleEngine.reload();
+
+        for (int amount = -1; amount <= 1_000_000; amount += 1_000) {
+            for (int offset = -1; offset <= 1; offset++) {
+                int totalAmount = amount + offset;
+                Assertions.assertThat(levelRuleEngine.nextLevel(totalAmount))
+                        .isEqualTo(Users.Level.getNextLevel(totalAmount));
+
+                for (Users.Level level : Users.Level.values()) {
+                    Assertions.assertThat(levelRuleEngine.availableLevelUp(level, totalAmount))
+                            .isEqualTo(Users.Level.availableLevelUp(level, totalAmount));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reloadAppliesNewRules() {
+        List<LevelRule> rules = Arrays.asList(
+                new LevelRule(Users.Level.NORMAL, 100_000, Users.Level.SILVER),
+                new LevelRule(Users.Level.SILVER, 150_000, Users.Level.GOLD),
+                new LevelRule(Users.Level.GOLD, 400_000, Users.Level.VIP),
+                new LevelRule(Users.Level.VIP, 0, null));
+        LevelRuleEngine levelRuleEngine = new LevelRuleEngine(() -> rules);
+
+        Assertions.assertThat(levelRuleEngine.nextLevel(150_000)).isEqualTo(Users.Level.NORMAL);
+
+        levelRuleEngine.reload();
+
+        Assertions.assertThat(levelRuleEngine.nextLevel(99_999)).isEqualTo(Users.Level.NORMAL);
+        Assertions.assertThat(levelRuleEngine.nextLevel(150_000)).isEqualTo(Users.Level.GOLD);
+        Assertions.assertThat(levelRuleEngine.nextLevel(400_000)).isEqualTo(Users.Level.VIP);
+        Assertions.assertThat(levelRuleEngine.availableLevelUp(Users.Level.SILVER, 150_000)).isTrue();
+        Assertions.assertThat(levelRuleEngine.availableLevelUp(Users.Level.VIP, Integer.MAX_VALUE)).isFalse();
+    }
+
+    @Test
+    public void keepsUpdatedRulesWhenScriptsRunAgain() {
+        EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScripts("schema.sql", "data.sql")
+                .build();
+        try {
+            JdbcLevelRuleLoader ruleLoader = new JdbcLevelRuleLoader(dataSource);
+            Assertions.assertThat(ruleLoader.get())
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(Users.Level.defaultRules());
+
+            // 기준을 바꾸고 애플리케이션을 다시 시작한 것처럼 스크립트를 다시 실행한다.
+            new JdbcTemplate(dataSource).update("update level_rule set next_amount = 100000 where level = 'NORMAL'");
+            DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(
+                    new ClassPathResource("schema.sql"),
+                    new ClassPathResource("data.sql")), dataSource);
+
+            LevelRuleEngine levelRuleEngine = new LevelRuleEngine(ruleLoader);
+            levelRuleEngine.reload();
+
+            Assertions.assertThat(ruleLoader.get()).hasSize(4);
+            Assertions.assertThat(levelRuleEngine.availableLevelUp(Users.Level.NORMAL, 100_000)).isTrue();
+            Assertions.assertThat(levelRuleEngine.availableLevelUp(Users.Level.SILVER, 299_999)).isFalse();
+        } finally {
+            dataSource.shutdown();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import study.spring.batch.springbatchstudy.part3.TestConfiguration;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {UserConfiguration.class, TestConfiguration.class, UserIncrementalLevelUpTest.UserJpaConfiguration.class})
+class LevelUpItemWriterTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    /**
+     * 한 청크에 세 등급이 섞여 있어도 등급별로 묶은 update 문으로 모두 반영되어야 한다.
+     */
+    @Test
+    public void test_grouped_update_levels_up_mixed_chunk() throws Exception {
+        Assertions.assertThat(jobLauncherTestUtils.launchStep("saveUserStep").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("userLevelUpStep",
+                jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                        .addString("chunkSize", "400")
+                        .toJobParameters());
+
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(300);
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong("levelUp.NORMAL.SILVER")).isEqualTo(100L);
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong("levelUp.NORMAL.GOLD")).isEqualTo(100L);
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong("levelUp.NORMAL.VIP")).isEqualTo(100L);
+
+        Assertions.assertThat(levelCounts()).containsExactly(
+                Map.entry(Users.Level.VIP, 100L),
+                Map.entry(Users.Level.GOLD, 100L),
+                Map.entry(Users.Level.SILVER, 100L),
+                Map.entry(Users.Level.NORMAL, 100L));
+
+        // 올라간 회원만 updatedDate가 채워진다.
+        Assertions.assertThat(userRepository.findAll())
+                .allMatch(user -> (user.getLevel() != Users.Level.NORMAL) == (user.getUpdatedDate() != null));
+    }
+
+    /**
+     * 한 등급에 올라갈 회원이 in 절 제한(1,000개)보다 많으면 나눠서 실행해도 모두 반영되어야 한다.
+     */
+    @Test
+    public void test_grouped_update_splits_large_in_clause() throws Exception {
+        List<Users> users = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            users.add(Users.builder()
+                    .username("writer username" + i)
+                    .totalAmount(200_000)
+                    .build());
+        }
+        userRepository.saveAll(users);
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("userLevelUpStep",
+                jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                        .addString("chunkSize", "2500")
+                        .toJobParameters());
+
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(2_500);
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong("levelUp.NORMAL.SILVER")).isEqualTo(2_500L);
+        Assertions.assertThat(levelCounts()).containsExactly(Map.entry(Users.Level.SILVER, 2_500L));
+    }
+
+    private Map<Users.Level, Long> levelCounts() {
+        return userRepository.findAll().stream()
+                .collect(Collectors.groupingBy(Users::getLevel, () -> new EnumMap<>(Users.Level.class), Collectors.counting()));
+    }
+}
@@ -0,0 +1,76 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import study.spring.batch.springbatchstudy.part3.TestConfiguration;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {UserConfiguration.class, TestConfiguration.class, UserIncrementalLevelUpTest.UserJpaConfiguration.class})
+class LevelUpSqlTaskletTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    /**
+     * 400명의 id를 30개씩 나누면 14개 구간이 되고, 구간마다 update 문 하나가 한 트랜잭션으로 커밋된다.
+     */
+    @Test
+    public void test_sql_levels_up_users_window_by_window() throws Exception {
+        Assertions.assertThat(jobLauncherTestUtils.launchStep("saveUserStep").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("userLevelUpSqlStep",
+                jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                        .addString("windowSize", "30")
+                        .toJobParameters());
+
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(300);
+        Assertions.assertThat(stepExecution.getCommitCount()).isEqualTo(14);
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong(LevelUpStatistics.BULK_KEY)).isEqualTo(300L);
+
+        Map<Users.Level, Long> levelCounts = userRepository.findAll().stream()
+                .collect(Collectors.groupingBy(Users::getLevel, () -> new EnumMap<>(Users.Level.class), Collectors.counting()));
+        Assertions.assertThat(levelCounts).containsExactly(
+                Map.entry(Users.Level.VIP, 100L),
+                Map.entry(Users.Level.GOLD, 100L),
+                Map.entry(Users.Level.SILVER, 100L),
+                Map.entry(Users.Level.NORMAL, 100L));
+    }
+
+    /**
+     * 이미 올라간 회원은 조건에 걸리지 않으므로 다시 실행해도 바뀌는 회원이 없다.
+     */
+    @Test
+    public void test_sql_updates_nothing_when_run_again() throws Exception {
+        Assertions.assertThat(jobLauncherTestUtils.launchStep("saveUserStep").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(jobLauncherTestUtils.launchStep("userLevelUpSqlStep").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("userLevelUpSqlStep");
+
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(0);
+        Assertions.assertThat(jobExecution.getExecutionContext().containsKey(LevelUpStatistics.BULK_KEY)).isFalse();
+    }
+}
@@ -0,0 +1,35 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+class LevelUpStatisticsTest {
+
+    @Test
+    public void countsOnlyCommittedChunks() {
+        LevelUpStatistics levelUpStatistics = new LevelUpStatistics();
+
+        // 롤백된 청크를 스캔으로 다시 쓰면 같은 회원이 한 번 더 더해진다.
+        levelUpStatistics.beforeChunk(null);
+        levelUpStatistics.add(Users.Level.NORMAL, Users.Level.SILVER, 3);
+        levelUpStatistics.addBulk(5);
+        levelUpStatistics.afterChunkError(null);
+
+        levelUpStatistics.beforeChunk(null);
+        levelUpStatistics.add(Users.Level.NORMAL, Users.Level.SILVER, 2);
+        levelUpStatistics.afterChunk(null);
+
+        levelUpStatistics.beforeChunk(null);
+        levelUpStatistics.add(Users.Level.SILVER, Users.Level.GOLD, 1);
+        levelUpStatistics.afterChunk(null);
+
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        levelUpStatistics.afterStep(stepExecution);
+
+        Assertions.assertThat(stepExecution.getJobExecution().getExecutionContext().getLong("levelUp.NORMAL.SILVER")).isEqualTo(2L);
+        Assertions.assertThat(stepExecution.getJobExecution().getExecutionContext().getLong("levelUp.SILVER.GOLD")).isEqualTo(1L);
+        Assertions.assertThat(stepExecution.getJobExecution().getExecutionContext().containsKey(LevelUpStatistics.BULK_KEY)).isFalse();
+    }
+}
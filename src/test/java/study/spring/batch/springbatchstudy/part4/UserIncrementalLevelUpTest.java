@@ -0,0 +1,75 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ContextConfiguration;
+import study.spring.batch.springbatchstudy.part3.TestConfiguration;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {UserConfiguration.class, TestConfiguration.class, UserIncrementalLevelUpTest.UserJpaConfiguration.class})
+class UserIncrementalLevelUpTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    public void test_incremental_reads_updated_user() throws Exception {
+        assertUpdatedUserLevelsUp(null);
+    }
+
+    @Test
+    public void test_incremental_sql_updates_updated_user() throws Exception {
+        assertUpdatedUserLevelsUp("sql");
+    }
+
+    /**
+     * 첫 실행 전에 저장한 회원은 첫 실행의 워터마크보다 먼저 바뀌었으므로
+     * totalAmount를 바꾼 다음 실행에서 읽혀야 등급이 오른다.
+     */
+    private void assertUpdatedUserLevelsUp(String mode) throws Exception {
+        Users user = userRepository.save(Users.builder()
+                .username("incremental username")
+                .totalAmount(1_000)
+                .build());
+
+        Assertions.assertThat(launchIncremental(mode)).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(userRepository.findById(user.getId()).orElseThrow().getLevel()).isEqualTo(Users.Level.NORMAL);
+
+        Users saved = userRepository.findById(user.getId()).orElseThrow();
+        saved.updateTotalAmount(250_000);
+        userRepository.save(saved);
+
+        Assertions.assertThat(launchIncremental(mode)).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(userRepository.findById(user.getId()).orElseThrow().getLevel()).isEqualTo(Users.Level.SILVER);
+    }
+
+    /**
+     * @SpringBatchTest가 JobExecution을 돌려주는 메소드를 테스트용 JobExecution을 만드는 메소드로 보므로 상태만 돌려준다.
+     */
+    private BatchStatus launchIncremental(String mode) throws Exception {
+        JobParametersBuilder jobParametersBuilder = jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                .addString("incremental", "true");
+        if (mode != null) {
+            jobParametersBuilder.addString("mode", mode);
+        }
+
+        return jobLauncherTestUtils.launchJob(jobParametersBuilder.toJobParameters()).getStatus();
+    }
+
+    @Configuration
+    @EntityScan(basePackageClasses = Users.class)
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class)
+    static class UserJpaConfiguration {
+    }
+}
@@ -0,0 +1,85 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import study.spring.batch.springbatchstudy.part3.TestConfiguration;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {UserConfiguration.class, TestConfiguration.class, UserIncrementalLevelUpTest.UserJpaConfiguration.class})
+class UserKeysetPagingLevelUpTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void test_keyset_paging_reads_every_user() throws Exception {
+        Assertions.assertThat(jobLauncherTestUtils.launchStep("saveUserStep").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("userLevelUpStep",
+                jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                        .addString("chunkSize", "7")
+                        .toJobParameters());
+
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getReadCount()).isEqualTo(400);
+        Assertions.assertThat(stepExecution.getFilterCount()).isEqualTo(100);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(300);
+
+        assertLevelCounts();
+    }
+
+    /**
+     * 등급이 오른 회원은 조회 조건에서 빠지므로 OFFSET 페이징이면 다음 페이지가 밀려서 회원을 건너뛴다.
+     * 마지막으로 읽은 id 다음부터 읽으면 조건에 맞는 300명을 모두 읽는다.
+     */
+    @Test
+    public void test_keyset_paging_keeps_page_boundaries_while_updating_eligible_users() throws Exception {
+        Assertions.assertThat(jobLauncherTestUtils.launchStep("saveUserStep").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("userLevelUpStep",
+                jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                        .addString("chunkSize", "7")
+                        .addString("eligibleOnly", "true")
+                        .toJobParameters());
+
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getReadCount()).isEqualTo(300);
+        Assertions.assertThat(stepExecution.getFilterCount()).isEqualTo(0);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(300);
+
+        assertLevelCounts();
+    }
+
+    private void assertLevelCounts() {
+        Map<Users.Level, Long> levelCounts = userRepository.findAll().stream()
+                .collect(Collectors.groupingBy(Users::getLevel, () -> new EnumMap<>(Users.Level.class), Collectors.counting()));
+
+        Assertions.assertThat(levelCounts).containsExactly(
+                Map.entry(Users.Level.VIP, 100L),
+                Map.entry(Users.Level.GOLD, 100L),
+                Map.entry(Users.Level.SILVER, 100L),
+                Map.entry(Users.Level.NORMAL, 100L));
+    }
+}
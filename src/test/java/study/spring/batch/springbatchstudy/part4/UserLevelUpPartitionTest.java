@@ -0,0 +1,73 @@
+package study.spring.batch.springbatchstudy.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import study.spring.batch.springbatchstudy.part3.TestConfiguration;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {UserConfiguration.class, TestConfiguration.class, UserIncrementalLevelUpTest.UserJpaConfiguration.class})
+class UserLevelUpPartitionTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository.deleteAllInBatch();
+    }
+
+    /**
+     * SaveUserTasklet이 만든 400명 중 NORMAL 기준 금액을 넘는 300명이 파티션마다 나뉘어서 한 번씩만 올라가야 한다.
+     */
+    @Test
+    public void test_partition_levels_up_users_of_every_range() throws Exception {
+        Assertions.assertThat(jobLauncherTestUtils.launchStep("saveUserStep").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("userLevelUpPartitionStep",
+                jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                        .addString("gridSize", "4")
+                        .addString("poolSize", "2")
+                        .addString("chunkSize", "30")
+                        .toJobParameters());
+
+        Assertions.assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        List<StepExecution> workers = jobExecution.getStepExecutions().stream()
+                .filter(x -> x.getStepName().startsWith("userLevelUpStep:"))
+                .collect(Collectors.toList());
+        Assertions.assertThat(workers).hasSize(4);
+        Assertions.assertThat(workers.stream().mapToInt(StepExecution::getReadCount).sum()).isEqualTo(400);
+        Assertions.assertThat(workers.stream().mapToInt(StepExecution::getWriteCount).sum()).isEqualTo(300);
+
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong("levelUp.NORMAL.SILVER")).isEqualTo(100L);
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong("levelUp.NORMAL.GOLD")).isEqualTo(100L);
+        Assertions.assertThat(jobExecution.getExecutionContext().getLong("levelUp.NORMAL.VIP")).isEqualTo(100L);
+
+        Assertions.assertThat(levelCounts()).containsExactly(
+                Map.entry(Users.Level.VIP, 100L),
+                Map.entry(Users.Level.GOLD, 100L),
+                Map.entry(Users.Level.SILVER, 100L),
+                Map.entry(Users.Level.NORMAL, 100L));
+    }
+
+    private Map<Users.Level, Long> levelCounts() {
+        return userRepository.findAll().stream()
+                .collect(Collectors.groupingBy(Users::getLevel, () -> new EnumMap<>(Users.Level.class), Collectors.counting()));
+    }
+}